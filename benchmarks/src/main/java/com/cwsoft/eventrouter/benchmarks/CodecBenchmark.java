@@ -0,0 +1,53 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.GlobalEvent;
+import com.cwsoft.eventrouter.NamedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding and decoding global events across payload sizes. A new event is encoded on each invocation
+ * since {@link NamedEvent#encode()} caches its result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    int payloadSize;
+
+    private Payload payload;
+    private String encoded;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        payload = new Payload(1, payloadSize);
+        encoded = newGlobalEvent().encode();
+    }
+
+    @Benchmark
+    public String encode() throws JsonProcessingException {
+        return newGlobalEvent().encode();
+    }
+
+    @Benchmark
+    public NamedEvent decode() {
+        return NamedEvent.decode(encoded);
+    }
+
+    @Benchmark
+    public Object decodeWithSource() {
+        return ((GlobalEvent<?>) NamedEvent.decode(encoded)).getSource();
+    }
+
+    private GlobalEvent<?> newGlobalEvent() {
+        return GlobalEvent.toGlobalEvent(new Event<>(RouterFixture.EVENT_NAME, payload), RouterFixture.SERVICE_ID);
+    }
+}
@@ -0,0 +1,49 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.EventDispatcher;
+import com.cwsoft.eventrouter.GlobalEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the body of the global events consumer loop: consume (decode) an event and dispatch it to the local
+ * global handlers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsumeBenchmark {
+
+    @Param({"1", "10"})
+    int globalHandlers;
+
+    private EventDispatcher eventDispatcher;
+    private StubClosableConsumer consumer;
+
+    @Setup
+    public void setup() throws NoSuchMethodException, JsonProcessingException {
+        eventDispatcher = new RouterFixture(RouterFixture.INLINE_HANDLERS)
+                .withGlobalHandlers(globalHandlers, "onEvent")
+                .getEventDispatcher();
+
+        List<String> encodedEvents = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            encodedEvents.add(GlobalEvent.toGlobalEvent(new Event<>(RouterFixture.EVENT_NAME, new Payload(i, 256)), "remote-service").encode());
+        }
+        consumer = new StubClosableConsumer(encodedEvents);
+    }
+
+    @Benchmark
+    public void consumeAndDispatch() {
+        consumer.consume(Duration.ZERO).ifPresent(eventDispatcher::dispatchGlobalEventLocally);
+    }
+}
@@ -0,0 +1,57 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.DispatchNote;
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.EventDispatcher;
+import com.cwsoft.eventrouter.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link EventDispatcher#dispatchEvent} for a number of local handlers, optionally with remote handlers that
+ * publish to a stub producer. INLINE handlers measure the dispatch alone; QUEUED handlers, the default
+ * {@code ThreadLocalHandler}, measure the enqueue onto their mailboxes, held back by the handler threads once the
+ * mailboxes are full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"1", "10", "100"})
+    int localHandlers;
+
+    @Param({"0", "10"})
+    int remoteHandlers;
+
+    @Param({"INLINE", "QUEUED"})
+    ExecutionMode mode;
+
+    private RouterFixture fixture;
+    private EventDispatcher eventDispatcher;
+    private Event<Payload> event;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        fixture = new RouterFixture((mode == ExecutionMode.INLINE) ? RouterFixture.INLINE_HANDLERS : RouterFixture.QUEUED_HANDLERS)
+                .withLocalHandlers(localHandlers, "onEvent")
+                .withRemoteServices(remoteHandlers);
+        eventDispatcher = fixture.getEventDispatcher();
+        event = new Event<>(RouterFixture.EVENT_NAME, new Payload(1, 64));
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.getEventHandlers().unregisterAll(Duration.ZERO); // stops the handler threads
+    }
+
+    @Benchmark
+    public DispatchNote dispatchEvent() {
+        return eventDispatcher.dispatchEvent(event);
+    }
+}
@@ -0,0 +1,46 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.DispatchNote;
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.EventDispatcher;
+import com.cwsoft.eventrouter.global.BroadcastHandler;
+import com.cwsoft.eventrouter.global.GlobalHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link GlobalHandler} fan-out of one global event to N remote services, each publish going to a stub
+ * producer, against a single publish by a {@link BroadcastHandler}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    int services;
+
+    @Param({"false", "true"})
+    boolean broadcast;
+
+    private EventDispatcher eventDispatcher;
+    private Event<Payload> event;
+
+    @Setup
+    public void setup() {
+        eventDispatcher = new RouterFixture(RouterFixture.INLINE_HANDLERS)
+                .withRemoteServices(services)
+                .withBroadcast(broadcast ? 1 : 0)
+                .getEventDispatcher();
+        event = new Event<>(RouterFixture.EVENT_NAME, new Payload(1, 256));
+    }
+
+    @Benchmark
+    public DispatchNote fanOut() {
+        return eventDispatcher.dispatchEvent(event);
+    }
+}
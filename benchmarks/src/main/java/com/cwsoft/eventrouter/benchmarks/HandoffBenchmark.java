@@ -0,0 +1,38 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.DispatchResult;
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.EventDispatcher;
+import com.cwsoft.eventrouter.ThreadLocalHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency of handing an event to a {@link ThreadLocalHandler}: enqueue, wake-up of the handler thread,
+ * invocation and completion back to the dispatching thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandoffBenchmark {
+
+    private EventDispatcher eventDispatcher;
+    private Event<Payload> event;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        eventDispatcher = new RouterFixture(RouterFixture.QUEUED_HANDLERS)
+                .withLocalHandlers(1, "onEvent")
+                .getEventDispatcher();
+        event = new Event<>(RouterFixture.EVENT_NAME, new Payload(1, 64));
+    }
+
+    @Benchmark
+    public DispatchResult dispatchAndWait() {
+        return eventDispatcher.dispatchAsync(event).join();
+    }
+}
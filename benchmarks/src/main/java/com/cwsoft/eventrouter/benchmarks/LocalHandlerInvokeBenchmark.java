@@ -0,0 +1,58 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.LocalHandler;
+import com.cwsoft.eventrouter.NamedEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link LocalHandler#invoke} (the reflective call of the handler method) on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalHandlerInvokeBenchmark {
+
+    private InvokableHandler withEvent;
+    private InvokableHandler withoutEvent;
+    private Event<Payload> event;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        Sink sink = new Sink();
+        withEvent = new InvokableHandler(sink, Sink.class.getMethod("onEvent", Event.class), 1);
+        withoutEvent = new InvokableHandler(sink, Sink.class.getMethod("onEventNoArgs"), 0);
+        event = new Event<>(RouterFixture.EVENT_NAME, new Payload(1, 64));
+    }
+
+    @Benchmark
+    public void invokeWithEvent() {
+        withEvent.invokeNow(event);
+    }
+
+    @Benchmark
+    public void invokeWithoutEvent() {
+        withoutEvent.invokeNow(event);
+    }
+
+    static class InvokableHandler extends LocalHandler {
+        InvokableHandler(Object handlerObject, Method handlerMethod, int noOfParameters) {
+            super(handlerObject, handlerMethod, noOfParameters);
+        }
+
+        void invokeNow(NamedEvent event) {
+            invoke(event);
+        }
+
+        @Override
+        public <E extends NamedEvent> void handle(E e) {
+            invoke(e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.metrics.HandlerMetrics;
+import com.cwsoft.eventrouter.metrics.Histogram;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording router metrics on the hot path, single threaded and under contention from 4 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final RouterMetrics metrics = new RouterMetrics(false);
+    private final Histogram histogram = new Histogram();
+    private HandlerMetrics handlerMetrics;
+
+    @Setup
+    public void setup() {
+        handlerMetrics = metrics.registerHandler("benchmark", () -> 0);
+    }
+
+    @Benchmark
+    public void dispatchCount() {
+        metrics.dispatched(RouterFixture.EVENT_NAME);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void dispatchCountContended() {
+        metrics.dispatched(RouterFixture.EVENT_NAME);
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void histogramRecordContended() {
+        histogram.record(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+
+    @Benchmark
+    public void handlerInvoked() {
+        handlerMetrics.enqueued(3);
+        handlerMetrics.invoked(1_500, 250, false);
+    }
+}
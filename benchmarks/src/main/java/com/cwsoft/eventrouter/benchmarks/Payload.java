@@ -0,0 +1,21 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Event payload of a configurable size.
+ */
+public class Payload {
+    public long id;
+    public String data;
+
+    public Payload() {
+    }
+
+    public Payload(long id, int size) {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'x');
+        this.id = id;
+        this.data = new String(chars);
+    }
+}
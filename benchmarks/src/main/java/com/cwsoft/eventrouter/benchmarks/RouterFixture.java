@@ -0,0 +1,99 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.EventDispatcher;
+import com.cwsoft.eventrouter.EventHandlers;
+import com.cwsoft.eventrouter.InlineLocalHandler;
+import com.cwsoft.eventrouter.LocalHandlerFactory;
+import com.cwsoft.eventrouter.RemoteServiceEvent;
+import com.cwsoft.eventrouter.ThreadLocalHandlerFactory;
+import com.cwsoft.eventrouter.global.BroadcastHandler;
+import com.cwsoft.eventrouter.global.GlobalEventsProducer;
+import com.cwsoft.eventrouter.global.GlobalHandler;
+
+/**
+ * Wires an {@link EventDispatcher} and {@link EventHandlers} together the way the application context would, with
+ * the messaging layer replaced by a {@link StubProducer}.
+ */
+public class RouterFixture {
+    public static final String EVENT_NAME = "BenchmarkEvent";
+    public static final String SERVICE_ID = "benchmark-service";
+    public static final String SITE = "site.benchmark";
+
+    /**
+     * Runs handlers inline so that dispatch benchmarks are not limited by handler threads.
+     */
+    public static final LocalHandlerFactory INLINE_HANDLERS = subscriberEndPoint -> InlineLocalHandler.builder()
+            .handledEventName(subscriberEndPoint.getForEvent())
+            .handlerObject(subscriberEndPoint.getBean())
+            .handlerMethod(subscriberEndPoint.getMethod())
+            .noOfParameters(subscriberEndPoint.getParameterCount())
+            .invoker(subscriberEndPoint.getInvoker())
+            .build();
+
+    public static final LocalHandlerFactory QUEUED_HANDLERS = new ThreadLocalHandlerFactory();
+
+    private final EventHandlers eventHandlers = new EventHandlers();
+    private final EventDispatcher eventDispatcher = new EventDispatcher();
+    private final StubProducer<RemoteServiceEvent> producer = new StubProducer<>();
+    private final StubProducer<String> broadcastProducer = new StubProducer<>();
+
+    public RouterFixture(LocalHandlerFactory handlerFactory) {
+        eventHandlers.setHandlerFactory(handlerFactory);
+        eventDispatcher.setEventHandlers(eventHandlers);
+        GlobalEventsProducer globalEventsProducer = new GlobalEventsProducer(producer);
+        globalEventsProducer.setBroadcastProducer(broadcastProducer);
+        globalEventsProducer.init();
+    }
+
+    public RouterFixture withLocalHandlers(int noOfHandlers, String methodName) throws NoSuchMethodException {
+        for (int i = 0; i < noOfHandlers; i++) {
+            eventDispatcher.registerLocalHandler(new Sink(), methodName, EVENT_NAME);
+        }
+        return this;
+    }
+
+    public RouterFixture withGlobalHandlers(int noOfHandlers, String methodName) throws NoSuchMethodException {
+        for (int i = 0; i < noOfHandlers; i++) {
+            eventDispatcher.registerGlobalHandler(new Sink(), methodName, EVENT_NAME);
+        }
+        return this;
+    }
+
+    public RouterFixture withRemoteServices(int noOfServices) {
+        for (int i = 0; i < noOfServices; i++) {
+            eventHandlers.add(EVENT_NAME, GlobalHandler.builder()
+                    .fromServiceId(SERVICE_ID)
+                    .toServiceId("remote-service-" + i)
+                    .remoteServicesSite(SITE)
+                    .build());
+        }
+        return this;
+    }
+
+    /**
+     * @param threshold the number of remote services from which events are broadcast, 0 to never broadcast.
+     */
+    public RouterFixture withBroadcast(int threshold) {
+        eventHandlers.setBroadcast((threshold == 0) ? null : BroadcastHandler.builder()
+                .fromServiceId(SERVICE_ID)
+                .fromServiceSite(SITE)
+                .build(), threshold);
+        return this;
+    }
+
+    public EventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    public EventHandlers getEventHandlers() {
+        return eventHandlers;
+    }
+
+    public StubProducer<RemoteServiceEvent> getProducer() {
+        return producer;
+    }
+
+    public StubProducer<String> getBroadcastProducer() {
+        return broadcastProducer;
+    }
+}
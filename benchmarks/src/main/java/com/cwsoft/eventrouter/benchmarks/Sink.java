@@ -0,0 +1,18 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.Event;
+
+/**
+ * Handler bean whose methods do as little as possible so benchmarks measure the router rather than the handler.
+ */
+public class Sink {
+    public volatile long handled;
+
+    public void onEvent(Event<?> event) {
+        handled++;
+    }
+
+    public void onEventNoArgs() {
+        handled++;
+    }
+}
@@ -0,0 +1,124 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.EventHandler;
+import com.cwsoft.eventrouter.EventHandlers;
+import com.cwsoft.eventrouter.LocalHandler;
+import com.cwsoft.eventrouter.LocalHandlerFactory;
+import com.cwsoft.eventrouter.NamedEvent;
+import com.cwsoft.eventrouter.index.HandlerIndexes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cost of {@link EventHandlers#init} over a large synthetic bean graph: many instances of a few bean classes with
+ * class hierarchies, most of them without handlers, scanned sequentially or in parallel. The bean classes are
+ * indexed by the handler index processor when the benchmarks are built, so {@code useIndex=false} measures scanning.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+
+    /**
+     * Registers a handler that does nothing, so the benchmark measures finding the end points rather than creating
+     * handler threads and metrics.
+     */
+    private static final LocalHandlerFactory NO_OP_HANDLERS = subscriberEndPoint ->
+            new LocalHandler(subscriberEndPoint.getBean(), subscriberEndPoint.getMethod(), subscriberEndPoint.getParameterCount()) {
+                @Override
+                public <E extends NamedEvent> void handle(E e) {
+                }
+            };
+
+    private static final List<Supplier<Object>> BEAN_TYPES = List.of(
+            PlainBean::new, PlainBean::new, PlainBean::new, DeepPlainBean::new,
+            HandlerBean::new, DerivedHandlerBean::new, MultiHandlerBean::new);
+
+    @Param({"1000", "10000"})
+    public int noOfBeans;
+
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    @Param({"true", "false"})
+    public boolean useIndex;
+
+    private List<Object> beans;
+
+    @Setup
+    public void setup() {
+        beans = new ArrayList<>(noOfBeans);
+        for (int i = 0; i < noOfBeans; i++) {
+            beans.add(BEAN_TYPES.get(i % BEAN_TYPES.size()).get());
+        }
+        System.setProperty(HandlerIndexes.IGNORE_PROPERTY, String.valueOf(!useIndex));
+        System.setProperty(EventHandlers.PARALLEL_SCAN_PROPERTY, parallel ? "1" : String.valueOf(Integer.MAX_VALUE));
+
+        boolean indexed = HandlerIndexes.load(StartupBenchmark.class.getClassLoader()).covers(HandlerBean.class);
+        if (indexed != useIndex) {
+            throw new IllegalStateException(useIndex
+                    ? "The benchmark beans are not indexed, build the benchmarks with the handler index processor"
+                    : "The handler index is used although " + HandlerIndexes.IGNORE_PROPERTY + " is set");
+        }
+    }
+
+    @Benchmark
+    public EventHandlers init() {
+        EventHandlers eventHandlers = new EventHandlers();
+        eventHandlers.setHandlerFactory(NO_OP_HANDLERS);
+        eventHandlers.init(() -> beans);
+        return eventHandlers;
+    }
+
+    public static class Base {
+        public void lifecycle() {
+        }
+
+        public String describe() {
+            return toString();
+        }
+    }
+
+    public static class PlainBean extends Base {
+        public int compute(int x) {
+            return x * 2;
+        }
+    }
+
+    public static class DeepPlainBean extends PlainBean {
+        public int computeMore(int x) {
+            return compute(x) + 1;
+        }
+    }
+
+    public static class HandlerBean extends Base {
+        @EventHandler(name = "StartupEvent1")
+        public void onEvent(Event<?> event) {
+        }
+    }
+
+    public static class DerivedHandlerBean extends HandlerBean {
+        @EventHandler(name = {"StartupEvent2", "StartupEvent3"})
+        public void onOther(Event<?> event) {
+        }
+    }
+
+    public static class MultiHandlerBean extends DeepPlainBean {
+        @EventHandler(name = "StartupEvent4")
+        @EventHandler(name = "StartupEvent5", priority = com.cwsoft.eventrouter.Priority.HIGH)
+        public void onEvent(Event<?> event) {
+        }
+
+        @EventHandler(name = "StartupEvent6")
+        public void onNoArgs() {
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.NamedEvent;
+import com.cwsoft.messaging.ClosableConsumer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Consumer that decodes a fixed set of encoded global events round robin, standing in for the messaging layer.
+ */
+public class StubClosableConsumer implements ClosableConsumer<Event> {
+    private final List<String> encodedEvents;
+    private int next;
+
+    public StubClosableConsumer(List<String> encodedEvents) {
+        this.encodedEvents = encodedEvents;
+    }
+
+    @Override
+    public Optional<Event> consume(Duration timeout) {
+        String encoded = encodedEvents.get(next);
+        next = (next + 1) % encodedEvents.size();
+        return Optional.ofNullable((Event) NamedEvent.decode(encoded));
+    }
+
+    @Override
+    public void close() {
+    }
+}
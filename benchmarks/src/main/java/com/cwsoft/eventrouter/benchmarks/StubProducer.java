@@ -0,0 +1,21 @@
+package com.cwsoft.eventrouter.benchmarks;
+
+import com.cwsoft.messaging.Producer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Producer that only counts what it is given, standing in for the messaging layer.
+ */
+public class StubProducer<T> implements Producer<T> {
+    private final LongAdder produced = new LongAdder();
+
+    @Override
+    public void produce(T message) {
+        produced.increment();
+    }
+
+    public long getProduced() {
+        return produced.sum();
+    }
+}
@@ -0,0 +1,97 @@
+package com.cwsoft.eventrouter.benchmarks.soak;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of a soak run, given on the command line as {@code key=value} arguments, e.g.
+ * {@code services=8 rate=20000 duration=600 scenario=outage}. Unknown keys are rejected.
+ */
+public class SoakConfig {
+    public enum Scenario {
+        STEADY,   // constant load
+        OUTAGE,   // the broker is unavailable for outageSeconds from outageAt, then recovers
+        CHURN     // a remote service is restarted with different handlers every churnInterval
+    }
+
+    int services = 4;               // simulated services
+    int handlersPerService = 8;     // global handlers each service registers, on event names drawn from the distribution
+    int eventNames = 32;            // distinct event names
+    double zipfExponent = 1.0;      // skew of the event name distribution, 0 for uniform
+    int payloadBytes = 256;         // size of the payload data
+    List<String> sites = List.of("eu.west.1", "eu.west.2", "us.east.1"); // sites the services are spread over
+    int publishers = 2;             // publishing threads
+    int rate = 10_000;              // events published per second over all publishers, 0 for as fast as possible
+    Duration duration = Duration.ofSeconds(60);
+    Duration reportInterval = Duration.ofSeconds(5);
+    Duration brokerLatency = Duration.ZERO;
+    double brokerFailureRate = 0;
+    int broadcastThreshold = 0;     // remote subscribers from which events are broadcast, 0 to never broadcast
+    Scenario scenario = Scenario.STEADY;
+    Duration outageAt = Duration.ofSeconds(20);
+    Duration outageDuration = Duration.ofSeconds(10);
+    Duration churnInterval = Duration.ofSeconds(10);
+    long seed = 42;
+
+    public static SoakConfig fromArgs(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 1) throw new IllegalArgumentException("Expected key=value but got " + arg);
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        SoakConfig config = new SoakConfig();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "services" -> config.services = Integer.parseInt(value);
+                case "handlersPerService" -> config.handlersPerService = Integer.parseInt(value);
+                case "eventNames" -> config.eventNames = Integer.parseInt(value);
+                case "zipfExponent" -> config.zipfExponent = Double.parseDouble(value);
+                case "payloadBytes" -> config.payloadBytes = Integer.parseInt(value);
+                case "sites" -> config.sites = Arrays.asList(value.split(","));
+                case "publishers" -> config.publishers = Integer.parseInt(value);
+                case "rate" -> config.rate = Integer.parseInt(value);
+                case "duration" -> config.duration = Duration.ofSeconds(Long.parseLong(value));
+                case "report" -> config.reportInterval = Duration.ofSeconds(Long.parseLong(value));
+                case "brokerLatencyMicros" -> config.brokerLatency = Duration.ofNanos(Long.parseLong(value) * 1000);
+                case "brokerFailureRate" -> config.brokerFailureRate = Double.parseDouble(value);
+                case "broadcastThreshold" -> config.broadcastThreshold = Integer.parseInt(value);
+                case "scenario" -> config.scenario = Scenario.valueOf(value.toUpperCase());
+                case "outageAt" -> config.outageAt = Duration.ofSeconds(Long.parseLong(value));
+                case "outageSeconds" -> config.outageDuration = Duration.ofSeconds(Long.parseLong(value));
+                case "churnInterval" -> config.churnInterval = Duration.ofSeconds(Long.parseLong(value));
+                case "seed" -> config.seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown setting " + entry.getKey());
+            }
+        }
+
+        if (config.services < 2) throw new IllegalArgumentException("services must be at least 2");
+        if (config.eventNames < 1 || config.handlersPerService < 1 || config.publishers < 1)
+            throw new IllegalArgumentException("eventNames, handlersPerService and publishers must be at least 1");
+        if (config.sites.isEmpty()) throw new IllegalArgumentException("sites must not be empty");
+        return config;
+    }
+
+    String serviceId(int service) {
+        return "soak-service-" + service;
+    }
+
+    String siteOf(int service) {
+        return sites.get(service % sites.size());
+    }
+
+    @Override
+    public String toString() {
+        return "services=" + services + " handlersPerService=" + handlersPerService + " eventNames=" + eventNames +
+                " zipfExponent=" + zipfExponent + " payloadBytes=" + payloadBytes + " sites=" + String.join(",", sites) +
+                " publishers=" + publishers + " rate=" + rate + " duration=" + duration.toSeconds() + "s" +
+                " brokerLatency=" + brokerLatency.toNanos() / 1000 + "us brokerFailureRate=" + brokerFailureRate +
+                " broadcastThreshold=" + broadcastThreshold +
+                " scenario=" + scenario.name().toLowerCase();
+    }
+}
@@ -0,0 +1,199 @@
+package com.cwsoft.eventrouter.benchmarks.soak;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.EventDispatcher;
+import com.cwsoft.eventrouter.loopback.LoopbackBroker;
+import com.cwsoft.eventrouter.loopback.LoopbackService;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Soak and load harness: runs a number of simulated services in one JVM over a {@link LoopbackBroker}, publishes
+ * global events between them through {@link EventDispatcher#dispatchEvent} at a sustained rate, and reports
+ * throughput, end-to-end latency, queue depths, GC and heap as it goes. See {@link SoakConfig} for the settings.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.cwsoft.eventrouter.benchmarks.soak.SoakHarness services=8 rate=20000 scenario=churn
+ * </pre>
+ * Each service registers {@code handlersPerService} global handlers on event names drawn from a Zipf distribution,
+ * which are announced to the other services through their {@code HandlersRegistrar}s. Publishers dispatch events from
+ * a random service with names drawn from the same distribution, so popular events fan out to more services.
+ */
+public class SoakHarness {
+    private final SoakConfig config;
+    private final LoopbackBroker broker;
+    private final SoakReceiver receiver = new SoakReceiver();
+    private final AtomicReferenceArray<LoopbackService> services;
+    private final double[] cumulativeWeights;
+    private final String data;
+    private final LongAdder published = new LongAdder();
+    private final Random random;
+
+    private volatile boolean running = true;
+
+    public SoakHarness(SoakConfig config) {
+        this.config = config;
+        this.broker = LoopbackBroker.builder()
+                .partitions(4)
+                .latency(config.brokerLatency)
+                .failureRate(config.brokerFailureRate)
+                .build();
+        this.services = new AtomicReferenceArray<>(config.services);
+        this.cumulativeWeights = zipf(config.eventNames, config.zipfExponent);
+        this.data = SoakPayload.data(config.payloadBytes);
+        this.random = new Random(config.seed);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new SoakHarness(SoakConfig.fromArgs(args)).run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        SoakReport report = new SoakReport(System.out, broker, receiver);
+        report.header(config);
+
+        for (int i = 0; i < config.services; i++) {
+            services.set(i, startService(i));
+        }
+        Thread.sleep(1000); // let the services learn each other's handlers
+
+        List<Thread> publishers = new ArrayList<>();
+        for (int i = 0; i < config.publishers; i++) {
+            Thread publisher = new Thread(publisher(config.seed + i), "soak-publisher-" + i);
+            publisher.setDaemon(true);
+            publisher.start();
+            publishers.add(publisher);
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        long reportMillis = config.reportInterval.toMillis();
+        scheduler.scheduleAtFixedRate(() -> report.interval(published.sum()), reportMillis, reportMillis, TimeUnit.MILLISECONDS);
+        scheduleScenario(scheduler);
+
+        Thread.sleep(config.duration.toMillis());
+        running = false;
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+
+        report.summary(published.sum());
+        for (int i = 0; i < config.services; i++) {
+            services.get(i).stop();
+        }
+    }
+
+    private LoopbackService startService(int index) throws NoSuchMethodException {
+        LoopbackService service = LoopbackService.builder()
+                .serviceId(config.serviceId(index))
+                .site(config.siteOf(index))
+                .broker(broker)
+                .broadcastThreshold(config.broadcastThreshold)
+                .build();
+        service.start(List.of());
+
+        Set<String> eventNames = new LinkedHashSet<>();
+        synchronized (random) {
+            while (eventNames.size() < Math.min(config.handlersPerService, config.eventNames)) {
+                eventNames.add(eventName(random.nextDouble()));
+            }
+        }
+        for (String eventName : eventNames) {
+            service.getEventDispatcher().registerGlobalHandler(receiver, "onEvent", eventName);
+        }
+        return service;
+    }
+
+    private Runnable publisher(long seed) {
+        return () -> {
+            SplittableRandom random = new SplittableRandom(seed);
+            long intervalNanos = (config.rate == 0) ? 0 : 1_000_000_000L * config.publishers / config.rate;
+            long nextNanos = System.nanoTime();
+
+            while (running) {
+                if (intervalNanos > 0) {
+                    long waitNanos = nextNanos - System.nanoTime();
+                    if (waitNanos > 0) LockSupport.parkNanos(waitNanos);
+                }
+                long sentNanos = (intervalNanos > 0) ? nextNanos : System.nanoTime();
+                nextNanos += intervalNanos;
+
+                LoopbackService from = services.get(random.nextInt(config.services));
+                Event<SoakPayload> event = new Event<>(eventName(random.nextDouble()), new SoakPayload(sentNanos, data));
+                from.getEventDispatcher().dispatchEvent(event);
+                published.increment();
+            }
+        };
+    }
+
+    private void scheduleScenario(ScheduledExecutorService scheduler) {
+        switch (config.scenario) {
+            case STEADY -> {
+            }
+            case OUTAGE -> {
+                long outageAt = config.outageAt.toMillis();
+                scheduler.schedule(() -> broker.setAvailable(false), outageAt, TimeUnit.MILLISECONDS);
+                scheduler.schedule(() -> broker.setAvailable(true), outageAt + config.outageDuration.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            case CHURN -> {
+                long churnMillis = config.churnInterval.toMillis();
+                scheduler.scheduleWithFixedDelay(this::restartRandomService, churnMillis, churnMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /*
+     * replaces a service (never the first) by a new instance with different handlers, which the other services pick up
+     * from its announcement.
+     */
+    private void restartRandomService() {
+        int index;
+        synchronized (random) {
+            index = 1 + random.nextInt(config.services - 1);
+        }
+
+        try {
+            services.get(index).stop();
+            services.set(index, startService(index));
+            System.out.println("Restarted " + config.serviceId(index));
+        } catch (Exception e) {
+            System.err.println("Failed to restart " + config.serviceId(index) + ": " + e);
+        }
+    }
+
+    private String eventName(double uniform) {
+        int index = 0;
+        while (index < cumulativeWeights.length - 1 && cumulativeWeights[index] < uniform) {
+            index++;
+        }
+        return "SoakEvent" + index;
+    }
+
+    /*
+     * cumulative probabilities of a zipf distribution over n names, uniform for an exponent of 0.
+     */
+    private static double[] zipf(int n, double exponent) {
+        double[] weights = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            weights[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+}
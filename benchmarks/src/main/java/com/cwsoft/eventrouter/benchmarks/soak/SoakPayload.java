@@ -0,0 +1,26 @@
+package com.cwsoft.eventrouter.benchmarks.soak;
+
+import java.util.Arrays;
+
+/**
+ * Payload of the events published by the soak harness, stamped with the time it was due to be sent so that latency
+ * is measured from the intended send time and includes any time the publisher fell behind.
+ */
+public class SoakPayload {
+    public long sentNanos;
+    public String data;
+
+    public SoakPayload() {
+    }
+
+    public SoakPayload(long sentNanos, String data) {
+        this.sentNanos = sentNanos;
+        this.data = data;
+    }
+
+    static String data(int size) {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+}
@@ -0,0 +1,42 @@
+package com.cwsoft.eventrouter.benchmarks.soak;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.metrics.Histogram;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global event handler of the simulated services. Records the end-to-end latency, from the intended send time to the
+ * handler, of every event received by any service.
+ */
+public class SoakReceiver {
+    private final LongAdder received = new LongAdder();
+    private final Histogram total = new Histogram();
+    private final AtomicReference<Histogram> interval = new AtomicReference<>(new Histogram());
+
+    public void onEvent(Event<SoakPayload> event) {
+        SoakPayload payload = event.getSource();
+        if (payload == null) return;
+
+        long latencyNanos = System.nanoTime() - payload.sentNanos;
+        total.record(latencyNanos);
+        interval.get().record(latencyNanos);
+        received.increment();
+    }
+
+    long getReceived() {
+        return received.sum();
+    }
+
+    Histogram getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the latencies recorded since the previous call.
+     */
+    Histogram nextInterval() {
+        return interval.getAndSet(new Histogram());
+    }
+}
@@ -0,0 +1,105 @@
+package com.cwsoft.eventrouter.benchmarks.soak;
+
+import com.cwsoft.eventrouter.loopback.LoopbackBroker;
+import com.cwsoft.eventrouter.metrics.Histogram;
+import com.cwsoft.eventrouter.metrics.HistogramSnapshot;
+import com.cwsoft.eventrouter.metrics.MetricsSnapshot;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+/**
+ * Prints a line per report interval of a soak run, and a summary at the end. Latencies are in microseconds, rates per
+ * second over the interval, depths as sampled at the end of the interval, dropped and failed sends as totals so far, and
+ * GC as the collections and time spent collecting within the interval.
+ */
+class SoakReport {
+    private static final String HEADER = String.format("%8s %10s %10s %9s %9s %9s %9s %9s %9s %8s %8s %6s %7s %8s",
+            "time(s)", "publish/s", "deliver/s", "p50(us)", "p99(us)", "p999(us)", "max(us)",
+            "brokerQ", "mailboxQ", "dropped", "failed", "gc", "gc(ms)", "heap(MB)");
+
+    private final PrintStream out;
+    private final LoopbackBroker broker;
+    private final SoakReceiver receiver;
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final long startNanos = System.nanoTime();
+
+    private long lastNanos = startNanos;
+    private long lastPublished;
+    private long lastReceived;
+    private long lastGcCount = gcCount();
+    private long lastGcMillis = gcMillis();
+    private long maxHeapUsed;
+    private long maxBrokerDepth;
+    private long maxMailboxDepth;
+
+    SoakReport(PrintStream out, LoopbackBroker broker, SoakReceiver receiver) {
+        this.out = out;
+        this.broker = broker;
+        this.receiver = receiver;
+    }
+
+    void header(SoakConfig config) {
+        out.println("Soak run: " + config);
+        out.println(HEADER);
+    }
+
+    void interval(long published) {
+        long now = System.nanoTime();
+        double seconds = (now - lastNanos) / 1e9;
+        long received = receiver.getReceived();
+        HistogramSnapshot latency = receiver.nextInterval().snapshot();
+
+        MetricsSnapshot metrics = RouterMetrics.getInstance().snapshot();
+        long mailboxDepth = metrics.handlers().stream().mapToLong(MetricsSnapshot.Handler::queueDepth).sum();
+        long brokerDepth = broker.getDepth();
+        long heapUsed = memory.getHeapMemoryUsage().getUsed();
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+
+        out.println(String.format("%8.1f %10.0f %10.0f %9d %9d %9d %9d %9d %9d %8d %8d %6d %7d %8d",
+                (now - startNanos) / 1e9,
+                (published - lastPublished) / seconds,
+                (received - lastReceived) / seconds,
+                latency.getP50() / 1000, latency.getP99() / 1000, latency.getP999() / 1000, latency.getMax() / 1000,
+                brokerDepth, mailboxDepth, metrics.producer().dropped() + broker.getDropped(), broker.getFailed(),
+                gcCount - lastGcCount, gcMillis - lastGcMillis, heapUsed >> 20));
+
+        lastNanos = now;
+        lastPublished = published;
+        lastReceived = received;
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+        maxHeapUsed = Math.max(maxHeapUsed, heapUsed);
+        maxBrokerDepth = Math.max(maxBrokerDepth, brokerDepth);
+        maxMailboxDepth = Math.max(maxMailboxDepth, mailboxDepth);
+    }
+
+    void summary(long published) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        Histogram total = receiver.getTotal();
+
+        out.println();
+        out.println(String.format("Published %d (%.0f/s), delivered %d (%.0f/s) in %.1fs", published, published / seconds,
+                receiver.getReceived(), receiver.getReceived() / seconds, seconds));
+        out.println(String.format("Latency (us): p50 %d, p99 %d, p999 %d, max %d, mean %.1f",
+                total.getValueAtPercentile(50) / 1000, total.getValueAtPercentile(99) / 1000,
+                total.getValueAtPercentile(99.9) / 1000, total.getMax() / 1000, total.getMean() / 1000));
+        out.println(String.format("Broker: sent %d, failed %d, dropped %d; max depth broker %d, mailboxes %d",
+                broker.getSent(), broker.getFailed(), broker.getDropped(), maxBrokerDepth, maxMailboxDepth));
+        out.println(String.format("GC: %d collections, %dms; max heap used %dMB", gcCount(), gcMillis(), maxHeapUsed >> 20));
+    }
+
+    private long gcCount() {
+        return collectors.stream().mapToLong(collector -> Math.max(0, collector.getCollectionCount())).sum();
+    }
+
+    private long gcMillis() {
+        return collectors.stream().mapToLong(collector -> Math.max(0, collector.getCollectionTime())).sum();
+    }
+}
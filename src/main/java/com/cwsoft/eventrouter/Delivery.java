@@ -0,0 +1,43 @@
+package com.cwsoft.eventrouter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An event queued in the mailbox of a local handler, along with the future to complete once the handler has been
+ * invoked when the event was dispatched asynchronously. Warm up deliveries pass through the mailbox without invoking
+ * the handler.
+ */
+final class Delivery {
+    final NamedEvent event;
+    final CompletableFuture<Void> completion;
+    final long enqueuedNanos = System.nanoTime();
+    final boolean warmUp;
+
+    Delivery(NamedEvent event, CompletableFuture<Void> completion) {
+        this(event, completion, false);
+    }
+
+    private Delivery(NamedEvent event, CompletableFuture<Void> completion, boolean warmUp) {
+        this.event = event;
+        this.completion = completion;
+        this.warmUp = warmUp;
+    }
+
+    static Delivery warmUp(NamedEvent event, CompletableFuture<Void> completion) {
+        return new Delivery(event, completion, true);
+    }
+
+    static Delivery of(NamedEvent event) {
+        return new Delivery(event, null);
+    }
+
+    void complete(Throwable failure) {
+        if (completion == null) return;
+
+        if (failure == null) {
+            completion.complete(null);
+        } else {
+            completion.completeExceptionally(failure);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.cwsoft.eventrouter;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * The result of {@link EventDispatcher#dispatchAsync(NamedEvent)}, available once all matched local handlers have
+ * finished handling the event. Remote handlers are complete once the event has been handed to the producer.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class DispatchResult {
+    private final NamedEvent event;
+    private final List<HandlerOutcome> outcomes;
+
+    public boolean isSuccess() {
+        return outcomes.stream().allMatch(HandlerOutcome::isSuccess);
+    }
+
+    public List<HandlerOutcome> getFailures() {
+        return outcomes.stream().filter(outcome -> !outcome.isSuccess()).toList();
+    }
+}
@@ -0,0 +1,51 @@
+package com.cwsoft.eventrouter;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The traces of the events dispatched on the current thread. The copies of an event sent to several remote services
+ * in one dispatch share a trace, which is not kept on the event, so dispatching the same event again starts a new one.
+ */
+final class DispatchTraces {
+    private static final ThreadLocal<DispatchTraces> CURRENT = new ThreadLocal<>();
+
+    private Map<NamedEvent, TraceContext> traces; // created on the first event sent to a remote service
+
+    private DispatchTraces() {
+    }
+
+    /**
+     * Starts a dispatch on the current thread.
+     *
+     * @return the traces of the enclosing dispatch, if any, to be given to {@link #end(DispatchTraces)}.
+     */
+    static DispatchTraces begin() {
+        DispatchTraces enclosing = CURRENT.get();
+        CURRENT.set(new DispatchTraces());
+        return enclosing;
+    }
+
+    static void end(DispatchTraces enclosing) {
+        if (enclosing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(enclosing);
+        }
+    }
+
+    /**
+     * @return the trace the event arrived with from a remote service, otherwise the trace started for it in the
+     * current dispatch, or a new trace outside a dispatch.
+     */
+    static TraceContext of(NamedEvent e) {
+        TraceContext trace = e.getTrace();
+        if (trace != null) return trace;
+
+        DispatchTraces current = CURRENT.get();
+        if (current == null) return TraceContext.start();
+
+        if (current.traces == null) current.traces = new IdentityHashMap<>();
+        return current.traces.computeIfAbsent(e, event -> TraceContext.start());
+    }
+}
@@ -27,12 +27,17 @@ public class Event<E> extends NamedEvent {
         this.source = source;
     }
 
+    public Event(String name, E source, Set <String> destinationServices, String siteInContext) {
+        this(name, source, destinationServices, siteInContext, null);
+    }
+
     @Builder
-    public Event(String name, E source, @Singular Set <String> destinationServices, String siteInContext) {
+    public Event(String name, E source, @Singular Set <String> destinationServices, String siteInContext, Priority priority) {
         super(name);
         this.source = source;
         this.destinationServices = destinationServices;
         this.siteInContext = (siteInContext == null)?"":siteInContext;
+        this.priority = priority;
     }
 
     /**
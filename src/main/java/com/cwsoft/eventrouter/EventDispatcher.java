@@ -1,5 +1,7 @@
 package com.cwsoft.eventrouter;
 
+import com.cwsoft.eventrouter.jfr.DispatchJfrEvent;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -7,6 +9,16 @@ import lombok.extern.slf4j.Slf4j;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 
 @Setter
@@ -16,6 +28,8 @@ public class EventDispatcher {
 
     private EventHandlers eventHandlers;
 
+    private final RouterMetrics metrics = RouterMetrics.getInstance();
+
     @Inject
     public void setEventHandlers(EventHandlers eventHandlers) {
         this.eventHandlers = eventHandlers;
@@ -47,13 +61,7 @@ public class EventDispatcher {
             throw new IllegalArgumentException("method name is null or empty");
         if (eventName == null || eventName.isEmpty()) throw new IllegalArgumentException("eventName is null or empty");
 
-        Method handlerMethod;
-        try {
-            handlerMethod = handlerBean.getClass().getMethod(methodName, Event.class);
-        } catch (NoSuchMethodException ex) {
-            // is there a handler for this event which does not have an argument
-            handlerMethod = handlerBean.getClass().getMethod(methodName);
-        }
+        Method handlerMethod = findHandlerMethod(handlerBean, methodName);
 
         SubscriberEndPoint.SubscriberEndPointBuilder subscriberEndPointBuilder =
                 SubscriberEndPoint
@@ -74,6 +82,92 @@ public class EventDispatcher {
         }
     }
 
+    /*
+     * the public method taking the event, otherwise taking a payload (see PayloadBinding), otherwise taking nothing.
+     * Overloads taking different payloads are ambiguous, as the order getMethods() returns them in is unspecified.
+     */
+    private static Method findHandlerMethod(Object handlerBean, String methodName) throws NoSuchMethodException {
+        try {
+            return handlerBean.getClass().getMethod(methodName, Event.class);
+        } catch (NoSuchMethodException ex) {
+            List<Method> candidates = Arrays.stream(handlerBean.getClass().getMethods())
+                    .filter(method -> method.getName().equals(methodName) && method.getParameterCount() == 1 && !method.isBridge())
+                    .toList();
+            if (candidates.size() > 1) {
+                throw new IllegalArgumentException(String.format("The handler method %s of class %s is ambiguous, it is overloaded for payloads %s",
+                        methodName, handlerBean.getClass(), candidates.stream().map(method -> method.getParameterTypes()[0].getSimpleName()).toList()));
+            }
+            if (candidates.size() == 1) return candidates.get(0);
+
+            // is there a handler for this event which does not have an argument
+            return handlerBean.getClass().getMethod(methodName);
+        }
+    }
+
+    /**
+     * Unregisters the handler of a bean's method for an event, as registered by {@link #registerLocalHandler} or
+     * {@link #registerGlobalHandler}, and closes it once the events already queued for it have been handled.
+     *
+     * @return true if the handler was registered.
+     */
+    public boolean unregisterHandler(Object handlerBean, String methodName, String eventName) throws NoSuchMethodException {
+        if (handlerBean == null) throw new NullPointerException("handlerObject is null");
+        if (methodName == null || methodName.isEmpty())
+            throw new IllegalArgumentException("method name is null or empty");
+        if (eventName == null || eventName.isEmpty()) throw new IllegalArgumentException("eventName is null or empty");
+
+        Method handlerMethod = findHandlerMethod(handlerBean, methodName);
+
+        Set<String> globalEventsHandled = eventHandlers.getGlobalEventsHandled();
+        boolean unregistered = eventHandlers.unregister(handlerBean, handlerMethod, eventName, EventHandlers.DEFAULT_DRAIN_TIMEOUT) > 0;
+        announceIfChanged(globalEventsHandled);
+        return unregistered;
+    }
+
+    /**
+     * Unregisters the handlers of all the methods of a bean, e.g. of a plugin being unloaded, and closes them once the
+     * events already queued for them have been handled.
+     *
+     * @return the number of handlers closed.
+     */
+    public int unregister(Object handlerBean) {
+        Set<String> globalEventsHandled = eventHandlers.getGlobalEventsHandled();
+        int closed = eventHandlers.unregister(handlerBean);
+        announceIfChanged(globalEventsHandled);
+        return closed;
+    }
+
+    /**
+     * Registers a handler built by the caller for each of the events, e.g. the subscription of a
+     * {@link FlowEventPublisher}, announcing the global events handled if they change.
+     */
+    void register(LocalHandler localHandler, Collection<String> eventNames, Set<Access> access) {
+        Set<String> globalEventsHandled = eventHandlers.getGlobalEventsHandled();
+        eventHandlers.register(localHandler, eventNames, access);
+        announceIfChanged(globalEventsHandled);
+    }
+
+    /**
+     * Unregisters a handler registered by {@link #register(LocalHandler, Collection, Set)} and closes it.
+     *
+     * @return true if the handler was registered.
+     */
+    boolean unregisterHandler(LocalHandler localHandler) {
+        Set<String> globalEventsHandled = eventHandlers.getGlobalEventsHandled();
+        boolean unregistered = eventHandlers.unregisterHandler(localHandler, EventHandlers.DEFAULT_DRAIN_TIMEOUT);
+        announceIfChanged(globalEventsHandled);
+        return unregistered;
+    }
+
+    /*
+     * the global events handled are announced to other services, so they stop sending those no longer handled.
+     */
+    private void announceIfChanged(Set<String> globalEventsHandledBefore) {
+        if (!eventHandlers.getGlobalEventsHandled().equals(globalEventsHandledBefore)) {
+            dispatchEvent(new NamedEvent("GlobalEventsHandledUpdated"));
+        }
+    }
+
     public DispatchNote generateDispatchNote(NamedEvent event) {
         var dispatchNoteBuilder = DispatchNote.builder();
 
@@ -92,22 +186,136 @@ public class EventDispatcher {
     }
 
     public DispatchNote dispatchEvent(NamedEvent event) {
+        DispatchJfrEvent jfrEvent = new DispatchJfrEvent();
+        jfrEvent.begin();
+
         var dispatchNoteBuilder = DispatchNote.builder();
+        metrics.dispatched(event.getName());
 
         if (eventHandlers != null) {
-            eventHandlers.get(event.getName())
-                    .stream()
-                    .filter(handler -> handlerInContext(handler, event))
-                    .forEach(handler -> {
-                                log.trace("dispatching event {} to handler {}", event, handler);
-                                handler.handle(event);
-                                fillInDispatchNote(handler, dispatchNoteBuilder);
-                            }
-                    );
+            DispatchTraces enclosing = DispatchTraces.begin();
+            try {
+                eventHandlers.get(event.getName())
+                        .stream()
+                        .filter(handler -> handlerInContext(handler, event))
+                        .forEach(handler -> {
+                                    log.trace("dispatching event {} to handler {}", event, handler);
+                                    handler.handle(event);
+                                    fillInDispatchNote(handler, dispatchNoteBuilder);
+                                }
+                        );
+            } finally {
+                DispatchTraces.end(enclosing);
+            }
             dispatchNoteBuilder.event(event);
         }
 
-        return dispatchNoteBuilder.build();
+        DispatchNote dispatchNote = dispatchNoteBuilder.build();
+
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.eventName = event.getName();
+            jfrEvent.handlers = dispatchNote.getLocalEndPoints().size() + dispatchNote.getRemoteServices().size();
+            jfrEvent.commit();
+        }
+
+        return dispatchNote;
+    }
+
+    /**
+     * Dispatches an event and returns a future that completes once all matched local handlers have finished handling
+     * it. The future never completes exceptionally, failures of individual handlers are reported in the
+     * {@link DispatchResult}. Remote handlers are complete once the event has been handed to the producer.
+     *
+     * @param event the event to dispatch.
+     * @return a future of the outcome of each matched handler.
+     */
+    public CompletableFuture<DispatchResult> dispatchAsync(NamedEvent event) {
+        List<CompletableFuture<HandlerOutcome>> outcomes = new ArrayList<>();
+        metrics.dispatched(event.getName());
+
+        if (eventHandlers != null) {
+            DispatchTraces enclosing = DispatchTraces.begin();
+            try {
+                for (Handler handler : eventHandlers.get(event.getName())) {
+                    if (!handlerInContext(handler, event)) continue;
+
+                    String handlerName = describe(handler);
+                    log.trace("dispatching event {} asynchronously to handler {}", event, handler);
+                    try {
+                        outcomes.add(handler.handleAsync(event)
+                                .handle((ignored, failure) -> new HandlerOutcome(handlerName, unwrap(failure))));
+                    } catch (RuntimeException ex) {
+                        log.error("Error dispatching event {} to handler {}", event, handler, ex);
+                        outcomes.add(CompletableFuture.completedFuture(new HandlerOutcome(handlerName, ex)));
+                    }
+                }
+            } finally {
+                DispatchTraces.end(enclosing);
+            }
+        }
+
+        return CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> new DispatchResult(event, outcomes.stream().map(CompletableFuture::join).toList()));
+    }
+
+    private static String describe(Handler handler) {
+        if (handler instanceof LocalHandler) return ((LocalHandler) handler).getLocalEndPoint();
+        if (handler instanceof RemoteHandler) return ((RemoteHandler) handler).getRemoteService();
+        return handler.toString();
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return (failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure;
+    }
+
+    /**
+     * Dispatches a batch of events. The handlers for each event name are looked up once, and each destination, a local
+     * handler or a remote service, is handed its events from the batch in the order they were given. Consecutive events
+     * going through the same handler are handed to it in one go; events of different names for the same remote service
+     * go through the global handler of each name in turn, so that the service receives them in order.
+     *
+     * @param events the events to dispatch.
+     * @return a dispatch note for each event, in the order of the events given.
+     */
+    public List<DispatchNote> dispatchAll(Collection<? extends NamedEvent> events) {
+        List<NamedEvent> eventList = new ArrayList<>(events);
+        List<DispatchNote.DispatchNoteBuilder> dispatchNoteBuilders = new ArrayList<>(eventList.size());
+
+        for (int i = 0; i < eventList.size(); i++) {
+            dispatchNoteBuilders.add(DispatchNote.builder());
+        }
+
+        if (eventHandlers != null) {
+            Map<String, List<Handler>> handlersByName = new HashMap<>();
+            Map<String, Integer> countsByName = new LinkedHashMap<>();
+            Map<Object, Batch> batches = new LinkedHashMap<>(); // by remote service, or by local handler
+
+            for (int i = 0; i < eventList.size(); i++) {
+                NamedEvent event = eventList.get(i);
+                countsByName.merge(event.getName(), 1, Integer::sum);
+
+                for (Handler handler : handlersByName.computeIfAbsent(event.getName(), name -> new ArrayList<>(eventHandlers.get(name)))) {
+                    if (handlerInContext(handler, event)) {
+                        fillInDispatchNote(handler, dispatchNoteBuilders.get(i));
+                        Object destination = (handler instanceof RemoteHandler remoteHandler) ? remoteHandler.getRemoteService() : handler;
+                        batches.computeIfAbsent(destination, key -> new Batch()).add(handler, event);
+                    }
+                }
+                dispatchNoteBuilders.get(i).event(event);
+            }
+
+            countsByName.forEach(metrics::dispatched);
+            DispatchTraces enclosing = DispatchTraces.begin();
+            try {
+                batches.values().forEach(Batch::dispatch);
+            } finally {
+                DispatchTraces.end(enclosing);
+            }
+        }
+
+        List<DispatchNote> dispatchNotes = new ArrayList<>(eventList.size());
+        dispatchNoteBuilders.forEach(builder -> dispatchNotes.add(builder.build()));
+        return dispatchNotes;
     }
 
     private boolean handlerInContext(Handler handler, NamedEvent namedEvent) {
@@ -142,4 +350,32 @@ public class EventDispatcher {
                     );
         }
     }
+
+    /*
+     * the events of a batch for one destination, in the order they were dispatched, with the handler each goes through.
+     */
+    private static final class Batch {
+        private final List<Handler> handlers = new ArrayList<>();
+        private final List<NamedEvent> events = new ArrayList<>();
+
+        void add(Handler handler, NamedEvent event) {
+            handlers.add(handler);
+            events.add(event);
+        }
+
+        /*
+         * hands each run of consecutive events going through the same handler to that handler in one go.
+         */
+        void dispatch() {
+            int runStart = 0;
+            for (int i = 1; i <= events.size(); i++) {
+                if (i == events.size() || handlers.get(i) != handlers.get(runStart)) {
+                    Handler handler = handlers.get(runStart);
+                    log.trace("dispatching {} events to handler {}", i - runStart, handler);
+                    handler.handleAll(events.subList(runStart, i));
+                    runStart = i;
+                }
+            }
+        }
+    }
 }
@@ -8,6 +8,8 @@ import java.lang.annotation.*;
 
 /*
  * Used to annotate methods that handle events published through the EventDispatcher instance.
+ * The method takes the event (e.g. Event or GlobalEvent), nothing, or the payload of the event as its declared type,
+ * e.g. onOrder(OrderCreated order), in which case the payload of a global event is decoded once for all its handlers.
  */
 public @interface EventHandler {
     /**
@@ -22,5 +24,36 @@ public @interface EventHandler {
      * @return false if the event(s) are local to this server/service, true if the event(s) originate from another server/service.
      */
     Access[] access() default {Access.LOCAL};
+
+    /**
+     * indicates the priority lane that events are queued on for this handler, unless the event itself carries a priority.
+     *
+     * @return the priority of the handler.
+     */
+    Priority priority() default Priority.NORMAL;
+
+    /**
+     * indicates how the handler is executed, either queued on its own thread or inline on the dispatching thread.
+     * INLINE should only be used for cheap handlers that never block.
+     *
+     * @return the execution mode of the handler.
+     */
+    ExecutionMode mode() default ExecutionMode.QUEUED;
+
+    /**
+     * indicates the number of queued workers (mailbox and thread) that events for this handler are spread across.
+     * When greater than 1 an {@link #orderingKey()} must be given, and the handler must not be INLINE.
+     *
+     * @return the number of workers.
+     */
+    int concurrency() default 1;
+
+    /**
+     * names the property of the event's source (payload) used to route events to workers when {@link #concurrency()}
+     * is greater than 1, and only then. Events with the same key are handled in order on the same worker.
+     *
+     * @return the name of the ordering key property.
+     */
+    String orderingKey() default "";
 }
 
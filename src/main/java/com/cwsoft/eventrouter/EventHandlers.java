@@ -1,24 +1,44 @@
 package com.cwsoft.eventrouter;
 
+import com.cwsoft.eventrouter.index.EventHandlerSpec;
+import com.cwsoft.eventrouter.index.HandlerIndexes;
+import com.cwsoft.eventrouter.index.HandlerMethod;
 import lombok.Builder;
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Thread-safe class to manage and maintain local and global event handlers for a service.
+ * <p>
+ * The handlers are held in an immutable snapshot that is replaced as a whole on each change, so dispatching never
+ * waits on registration and never sees a partly applied change.
+ * <p>
+ * Registering a bean's method for an event it is already registered for reuses the existing handler, and
+ * unregistering a bean closes its handlers, releasing their threads, mailboxes and metrics.
  */
 @Singleton
 @Slf4j
 public class EventHandlers {
     public final Class<? extends Annotation> END_POINT_ANNOTATION = EventHandler.class;
 
+    public static final String PARALLEL_SCAN_PROPERTY = "eventrouter.scan.parallelThreshold";
+    static final int DEFAULT_PARALLEL_SCAN_THRESHOLD = 256;
+
+    /**
+     * How long unregistered handlers carry on handling the events already queued, unless given otherwise
+     */
+    public static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(5);
+
     private LocalHandlerFactory handlerFactory;
 
     @Inject
@@ -27,20 +47,37 @@ public class EventHandlers {
     }
 
     /**
-     * Thread-safe map of event names to sets of handlers.
+     * The current snapshot of the registered handlers, read without locking when dispatching and replaced as a whole
+     * by {@link #apply(RegistryTransaction)}.
      */
-    private final Map<String, Set<Handler>> handlersMap = new ConcurrentHashMap<>();
+    private volatile HandlerRegistry registry = HandlerRegistry.EMPTY;
 
     /**
-     * Thread-safe set of global events handled by the service.
+     * Serialises changes to the registry, so that changes never overwrite each other.
      */
-    @Getter
-    private final Set<String> globalEventsHandled = ConcurrentHashMap.newKeySet();
+    private final Object registryWriteLock = new Object();
 
     /**
-     * Thread-safe map of global handlers.
+     * Serialises registering and unregistering subscribers, so that a handler is never created twice for the same
+     * bean method and event.
      */
-    private final Map<String, Set<LocalHandler>> globalHandlersMap = new ConcurrentHashMap<>();
+    private final Object registrationLock = new Object();
+
+    /**
+     * Handler methods of bean classes including their superclasses, and handler methods declared by each class, so
+     * each class is only scanned once however many beans there are of it.
+     */
+    private final Map<Class<?>, List<HandlerMethod>> handlerMethodsByClass = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<HandlerMethod>> declaredHandlerMethodsByClass = new ConcurrentHashMap<>();
+
+    private volatile HandlerIndexes indexes;
+
+    /**
+     * The handler sending events once to all remote services, used for events with at least broadcastThreshold remote
+     * subscribers; none if null.
+     */
+    private volatile Handler broadcastHandler;
+    private volatile int broadcastThreshold;
 
     /**
      * Retrieves all handlers for a given event.
@@ -49,7 +86,20 @@ public class EventHandlers {
      * @return a collection of handlers.
      */
     public Collection<Handler> get(String forEvent) {
-        return handlersMap.getOrDefault(forEvent, Collections.emptySet());
+        return registry.get(forEvent, broadcastHandler, broadcastThreshold);
+    }
+
+    /**
+     * Sends events subscribed to by at least {@code threshold} remote services through the broadcast handler, once,
+     * rather than through the remote handler of each service.
+     *
+     * @param broadcastHandler the broadcast handler, or null to send to each remote service.
+     * @param threshold        the number of remote subscribers from which an event is broadcast, at least 1.
+     */
+    public void setBroadcast(Handler broadcastHandler, int threshold) {
+        if (broadcastHandler != null && threshold < 1) throw new IllegalArgumentException("threshold must be at least 1");
+        this.broadcastThreshold = threshold;
+        this.broadcastHandler = broadcastHandler;
     }
 
     /**
@@ -60,29 +110,39 @@ public class EventHandlers {
      */
     public void add(String eventName, Handler handler) {
         log.trace("Adding handler for eventName = {}, handler = {}", eventName, handler);
-        handlersMap.computeIfAbsent(eventName, k -> ConcurrentHashMap.newKeySet()).add(handler);
+        apply(new RegistryTransaction().add(eventName, handler));
     }
 
     /**
-     * Adds a global handler for a given event.
+     * Retrieves all global handlers for a given event.
      *
-     * @param eventName    the event name.
-     * @param localHandler the local handler to add.
+     * @param forEvent the event name.
+     * @return a collection of global handlers.
      */
-    private void addGlobal(String eventName, LocalHandler localHandler) {
-        log.trace("Adding global handler for eventName = {}, localHandler = {}", eventName, localHandler);
-        globalHandlersMap.computeIfAbsent(eventName, k -> ConcurrentHashMap.newKeySet()).add(localHandler);
-        globalEventsHandled.add(eventName);
+    public Collection<LocalHandler> getGlobalHandler(String forEvent) {
+        return registry.getGlobal(forEvent);
     }
 
     /**
-     * Retrieves all global handlers for a given event.
+     * @return the global events handled by the service.
+     */
+    public Set<String> getGlobalEventsHandled() {
+        return registry.getGlobalEventsHandled();
+    }
+
+    /**
+     * Retrieves all the local handlers, for local and global events, each handler once.
      *
-     * @param forEvent the event name.
-     * @return a collection of global handlers.
+     * @return a collection of local handlers.
      */
-    public Collection<LocalHandler> getGlobalHandler(String forEvent) {
-        return globalHandlersMap.getOrDefault(forEvent, Collections.emptySet());
+    public Collection<LocalHandler> getLocalHandlers() {
+        HandlerRegistry current = registry;
+        Set<LocalHandler> localHandlers = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.allHandlers().forEach(handlers -> handlers.forEach(handler -> {
+            if (handler instanceof LocalHandler localHandler) localHandlers.add(localHandler);
+        }));
+        current.allGlobalHandlers().forEach(localHandlers::addAll);
+        return localHandlers;
     }
 
     /**
@@ -91,19 +151,42 @@ public class EventHandlers {
      * @param eventName the event name.
      * @param handler   the handler to remove.
      */
-    public synchronized void remove(String eventName, Handler handler) {
+    public void remove(String eventName, Handler handler) {
         log.trace("Removing handler for eventName = {}, handler = {}", eventName, handler);
-        Set<Handler> handlers = handlersMap.get(eventName);
-        if (handlers != null) {
-            handlers.remove(handler);
-            if (handlers.isEmpty()) {
-                handlersMap.remove(eventName);
+        apply(new RegistryTransaction().remove(eventName, handler));
+    }
+
+    /**
+     * Applies all the changes of a transaction by publishing a single new version of the registry. Dispatching
+     * carries on against the previous version while the new one is built.
+     *
+     * @param transaction the changes to apply.
+     * @return the version of the registry once the changes have been applied.
+     */
+    public long apply(RegistryTransaction transaction) {
+        if (transaction.isEmpty()) return registry.getVersion();
+
+        synchronized (registryWriteLock) {
+            HandlerRegistry current = registry;
+            HandlerRegistry updated = current.apply(transaction.changes());
+            if (updated != current) {
+                registry = updated;
+                log.trace("Applied {} handler changes, registry version is now {}", transaction.size(), updated.getVersion());
             }
+            return updated.getVersion();
         }
     }
 
     /**
-     * Initializes the event handlers by scanning for annotated subscriber end points.
+     * @return the version of the registry, incremented each time a change is applied.
+     */
+    public long getVersion() {
+        return registry.getVersion();
+    }
+
+    /**
+     * Initializes the event handlers by scanning for annotated subscriber end points. Classes covered by a handler
+     * index generated at compile time are looked up in the index instead of being scanned.
      *
      * @param beanSupplier the bean supplier.
      */
@@ -111,7 +194,16 @@ public class EventHandlers {
         try {
             log.info("Initializing EventDispatcher - scanning for subscriber end point handlers.");
 
-            getSubscribers(beanSupplier).forEach(this::registerSubscriber);
+            Collection<SubscriberEndPoint> subscribers = getSubscribers(beanSupplier);
+            synchronized (registrationLock) {
+                RegistryTransaction transaction = new RegistryTransaction();
+                Map<PendingHandlerKey, LocalHandler> pendingHandlers = new HashMap<>();
+                try {
+                    subscribers.forEach(subscriber -> registerSubscriber(subscriber, transaction, pendingHandlers));
+                } finally {
+                    apply(transaction);
+                }
+            }
         } catch (Exception ex) {
             log.error("Error while scanning for subscriber end points", ex);
         }
@@ -121,15 +213,18 @@ public class EventHandlers {
         Collection<SubscriberEndPoint> subscribers = new ArrayList<>();
 
         getAllEndPoints(beanSupplier).forEach(endPoint -> {
-            EventHandler[] eventHandlerAnnotations = endPoint.method.getAnnotationsByType(EventHandler.class);
-
-            for (EventHandler eventHandlerAnnotation : eventHandlerAnnotations) {
-                for (String event : eventHandlerAnnotation.name()) {
+            for (EventHandlerSpec spec : endPoint.handlerMethod.specs()) {
+                for (String event : spec.getNames()) {
                     subscribers.add(SubscriberEndPoint.builder()
                             .forEvent(event)
                             .bean(endPoint.bean)
-                            .method(endPoint.method)
-                            .accessSet(Arrays.asList(eventHandlerAnnotation.access()))
+                            .method(endPoint.handlerMethod.method())
+                            .invoker(endPoint.handlerMethod.invoker())
+                            .accessSet(spec.getAccess())
+                            .priority(spec.getPriority())
+                            .mode(spec.getMode())
+                            .concurrency(spec.getConcurrency())
+                            .orderingKey(spec.getOrderingKey())
                             .build());
                 }
             }
@@ -138,57 +233,250 @@ public class EventHandlers {
         return subscribers;
     }
 
+    /**
+     * Finds the end points of all beans. Beans are scanned in parallel on the fork/join common pool once there are at
+     * least as many as the system property {@value #PARALLEL_SCAN_PROPERTY} gives (default
+     * {@value #DEFAULT_PARALLEL_SCAN_THRESHOLD}).
+     */
     private Collection<EndPoint> getAllEndPoints(BeanSupplier beanSupplier) {
-        Collection<EndPoint> endPoints = new HashSet<>();
+        if (indexes == null) {
+            indexes = HandlerIndexes.load(classLoader());
+        }
 
-        beanSupplier.getAllBeans().forEach(bean ->
-                getAllMethods(bean.getClass()).forEach(method -> {
-                    if (method.isAnnotationPresent(END_POINT_ANNOTATION)) {
-                        endPoints.add(
-                                EndPoint.builder()
-                                        .bean(bean)
-                                        .method(method)
-                                        .build()
-                        );
-                    }
-                }));
+        List<Object> beans = new ArrayList<>(beanSupplier.getAllBeans());
+        Stream<Object> beanStream = (beans.size() >= parallelScanThreshold()) ? beans.parallelStream() : beans.stream();
 
-        return endPoints;
+        return beanStream
+                .flatMap(bean -> getHandlerMethods(bean.getClass()).stream()
+                        .map(handlerMethod -> EndPoint.builder()
+                                .bean(bean)
+                                .handlerMethod(handlerMethod)
+                                .build()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
     void registerSubscriber(SubscriberEndPoint subscriberEndPoint) {
-        LocalHandler localHandler = handlerFactory.newHandler(subscriberEndPoint);
+        synchronized (registrationLock) {
+            RegistryTransaction transaction = new RegistryTransaction();
+            registerSubscriber(subscriberEndPoint, transaction, new HashMap<>());
+            apply(transaction);
+        }
+    }
+
+    /**
+     * Registers a handler built by the caller, rather than by the handler factory for a bean's method, e.g. the
+     * subscription of a {@link FlowEventPublisher}, for each of the events.
+     */
+    void register(LocalHandler localHandler, Collection<String> eventNames, Set<Access> access) {
+        synchronized (registrationLock) {
+            RegistryTransaction transaction = new RegistryTransaction();
+            for (String eventName : eventNames) {
+                if (access.contains(Access.LOCAL)) transaction.add(eventName, localHandler);
+                if (access.contains(Access.GLOBAL)) transaction.addGlobal(eventName, localHandler);
+            }
+            apply(transaction);
+        }
+    }
+
+    /*
+     * called holding the registration lock. A subscriber already registered, or already added to the transaction,
+     * e.g. by another annotation of the same method naming the same event, keeps its handler, and gains any access it
+     * didn't have. The handlers added to the transaction are kept in pendingHandlers.
+     */
+    private void registerSubscriber(SubscriberEndPoint subscriberEndPoint, RegistryTransaction transaction,
+                                    Map<PendingHandlerKey, LocalHandler> pendingHandlers) {
+        subscriberEndPoint.validate();
+
+        PendingHandlerKey key = new PendingHandlerKey(subscriberEndPoint.getForEvent(), subscriberEndPoint.getBean(), subscriberEndPoint.getMethod());
+        LocalHandler localHandler = pendingHandlers.get(key);
+        if (localHandler == null) {
+            localHandler = registry.findLocal(subscriberEndPoint.getForEvent(), subscriberEndPoint.getBean(), subscriberEndPoint.getMethod());
+            if (localHandler != null) {
+                log.debug("{} is already registered for {}, keeping its handler", localHandler.getLocalEndPoint(), subscriberEndPoint.getForEvent());
+            } else {
+                localHandler = handlerFactory.newHandler(subscriberEndPoint);
+            }
+            pendingHandlers.put(key, localHandler);
+        }
 
         if (subscriberEndPoint.hasLocalAccess()) {
-            this.add(subscriberEndPoint.getForEvent(), localHandler);
+            transaction.add(subscriberEndPoint.getForEvent(), localHandler);
         }
 
         if (subscriberEndPoint.hasGlobalAccess()) {
-            this.addGlobal(subscriberEndPoint.getForEvent(), localHandler);
-            log.trace("Added global event {}, globalEventsHandled now contains {}", subscriberEndPoint.getForEvent(), globalEventsHandled);
+            log.trace("Adding global handler for eventName = {}, localHandler = {}", subscriberEndPoint.getForEvent(), localHandler);
+            transaction.addGlobal(subscriberEndPoint.getForEvent(), localHandler);
+        }
+    }
+
+    /**
+     * Unregisters the handlers of all the methods of a bean, for local and global events, and closes them.
+     *
+     * @param bean the bean, as registered.
+     * @return the number of handlers closed.
+     */
+    public int unregister(Object bean) {
+        return unregister(bean, DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    /**
+     * Unregisters the handlers of all the methods of a bean, for local and global events, and closes them.
+     *
+     * @param bean         the bean, as registered.
+     * @param drainTimeout how long the handlers, together, carry on handling the events already queued, zero to
+     *                     discard them.
+     * @return the number of handlers closed.
+     */
+    public int unregister(Object bean, Duration drainTimeout) {
+        if (bean == null) throw new IllegalArgumentException("bean must not be null");
+        return unregister(localHandler -> localHandler.getHandlerObject() == bean, drainTimeout);
+    }
+
+    /**
+     * Unregisters the handler of a bean's method for an event, local and global, and closes it.
+     *
+     * @return the number of handlers closed, 0 if the method wasn't registered for the event.
+     */
+    int unregister(Object bean, Method method, String eventName, Duration drainTimeout) {
+        HandlerRegistry current = registry;
+        LocalHandler registered = current.findLocal(eventName, bean, method);
+        return (registered == null) ? 0 : unregister(localHandler -> localHandler == registered, drainTimeout);
+    }
+
+    /**
+     * Unregisters a handler, for all its events, local and global, and closes it.
+     *
+     * @return true if the handler was registered.
+     */
+    boolean unregisterHandler(LocalHandler localHandler, Duration drainTimeout) {
+        return unregister(registered -> registered == localHandler, drainTimeout) > 0;
+    }
+
+    /**
+     * Unregisters and closes all the local handlers, e.g. when the service shuts down. Remote handlers are kept.
+     *
+     * @return the number of handlers closed.
+     */
+    public int unregisterAll(Duration drainTimeout) {
+        return unregister(localHandler -> true, drainTimeout);
+    }
+
+    /*
+     * handlers are closed once they are out of the registry, so that no new events are dispatched to them, and all
+     * drain within the one drainTimeout.
+     */
+    private int unregister(Predicate<LocalHandler> matching, Duration drainTimeout) {
+        Set<LocalHandler> removed;
+        synchronized (registrationLock) {
+            RegistryTransaction transaction = new RegistryTransaction();
+            removed = registry.removeLocal(matching, transaction);
+            apply(transaction);
+        }
+
+        long deadlineNanos = System.nanoTime() + drainTimeout.toNanos();
+        for (LocalHandler localHandler : removed) {
+            try {
+                localHandler.close(Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())));
+            } catch (RuntimeException ex) {
+                log.warn("Error closing handler {}", localHandler, ex);
+            }
         }
+
+        if (!removed.isEmpty()) log.info("Unregistered and closed {} handlers", removed.size());
+        return removed.size();
     }
 
-    private List<Method> getAllMethods(Class<?> forClass) throws FindEndPointException {
+    /**
+     * @return the handler methods of the class and its superclasses, cached per class.
+     */
+    private List<HandlerMethod> getHandlerMethods(Class<?> forClass) throws FindEndPointException {
+        List<HandlerMethod> cached = handlerMethodsByClass.get(forClass);
+        if (cached != null) return cached;
+
         try {
-            List<Method> allMethods = new ArrayList<>();
+            List<HandlerMethod> handlerMethods = new ArrayList<>();
             Class<?> clazz = forClass;
 
-            while (clazz != null) {
-                allMethods.addAll(Arrays.asList(clazz.getDeclaredMethods()));
+            while (clazz != null && clazz != Object.class) {
+                handlerMethods.addAll(declaredHandlerMethodsByClass.computeIfAbsent(clazz, this::getDeclaredHandlerMethods));
                 clazz = clazz.getSuperclass();
             }
 
-            return allMethods;
+            handlerMethodsByClass.putIfAbsent(forClass, List.copyOf(handlerMethods));
+            return handlerMethods;
         } catch (Exception | NoClassDefFoundError ex) {
             String msg = String.format("Failed to obtain methods of class %s", forClass);
             throw new FindEndPointException(msg, ex);
         }
     }
 
+    /**
+     * @return the handler methods declared by the class, from the index if it covers the class, otherwise by parsing
+     * the class's annotations.
+     */
+    private List<HandlerMethod> getDeclaredHandlerMethods(Class<?> clazz) {
+        if (indexes.covers(clazz)) {
+            return indexes.methodsOf(clazz);
+        }
+
+        List<HandlerMethod> handlerMethods = new ArrayList<>();
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(END_POINT_ANNOTATION) || method.isAnnotationPresent(Handlers.class)) {
+                List<EventHandlerSpec> specs = Arrays.stream(method.getAnnotationsByType(EventHandler.class))
+                        .map(EventHandlerSpec::of)
+                        .toList();
+                handlerMethods.add(new HandlerMethod(method, specs, null));
+            }
+        }
+        return handlerMethods.isEmpty() ? List.of() : List.copyOf(handlerMethods);
+    }
+
+    private static int parallelScanThreshold() {
+        return Integer.getInteger(PARALLEL_SCAN_PROPERTY, DEFAULT_PARALLEL_SCAN_THRESHOLD);
+    }
+
+    private static ClassLoader classLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return (classLoader == null) ? EventHandlers.class.getClassLoader() : classLoader;
+    }
+
+    /**
+     * A handler method of a bean. End points are equal if they are for the same bean instance and method, so a bean
+     * supplied more than once is only registered once.
+     */
     @Builder
     private static class EndPoint {
         private final Object bean;
-        private final Method method;
+        private final HandlerMethod handlerMethod;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EndPoint other)) return false;
+            return bean == other.bean && handlerMethod.method().equals(other.handlerMethod.method());
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(bean) + handlerMethod.method().hashCode();
+        }
+    }
+
+    /**
+     * The handler of a bean's method for an event within a transaction. Keys are equal if they are for the same bean
+     * instance, method and event.
+     */
+    private record PendingHandlerKey(String eventName, Object bean, Method method) {
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PendingHandlerKey other)) return false;
+            return bean == other.bean && method.equals(other.method) && eventName.equals(other.eventName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(bean) + method.hashCode()) + eventName.hashCode();
+        }
     }
 }
@@ -0,0 +1,15 @@
+package com.cwsoft.eventrouter;
+
+/**
+ * How a local handler is executed when an event is dispatched to it.
+ */
+public enum ExecutionMode {
+    /**
+     * the event is queued and the handler is invoked on its own thread (the default).
+     */
+    QUEUED,
+    /**
+     * the handler is invoked directly on the dispatching thread. Only suitable for cheap, non-blocking handlers.
+     */
+    INLINE
+}
@@ -0,0 +1,86 @@
+package com.cwsoft.eventrouter;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Publishes the events dispatched for the given event names, local and/or global as the access given, to reactive
+ * subscribers, with backpressure.
+ * <p>
+ * Each subscriber is registered as a handler of its own (see {@link FlowLocalHandler}) holding at most
+ * {@code bufferSize} events it has not requested yet. When its buffer is full, dispatching to it waits for the
+ * subscriber to request more, so the subscriber's demand holds back the handlers dispatching to it and, for global
+ * events, the fetching of the {@code GlobalEventsConsumer}. A subscriber that stops requesting holds back all the
+ * events dispatched on those threads, so one that requests nothing for {@code demandTimeout} while its buffer is full
+ * is failed with {@code onError}, the event it could not take dropped, and unregistered. For the same reason a
+ * subscriber must not dispatch the events it subscribes to from {@code onNext}.
+ * <pre>
+ * FlowEventPublisher.builder().eventName("OrderCreated").access(Access.GLOBAL).build().subscribe(subscriber);
+ * </pre>
+ * Subscriptions end when cancelled, and complete when unregistered, e.g. when the service stops.
+ */
+@Slf4j
+@Getter
+public class FlowEventPublisher implements Flow.Publisher<NamedEvent> {
+    public static final Duration DEFAULT_DEMAND_TIMEOUT = Duration.ofSeconds(10);
+
+    private final EventDispatcher eventDispatcher;
+    private final Set<String> eventNames;
+    private final Set<Access> accessSet;
+    private final int bufferSize;
+    private final Duration demandTimeout;
+    private final Executor executor;
+
+    /**
+     * @param eventDispatcher the dispatcher to register subscribers with, the {@link EventDispatcher} instance if null.
+     * @param access          local and/or global events, local only if none is given.
+     * @param bufferSize      events held per subscriber beyond those requested, {@link Flow#defaultBufferSize()} if null.
+     * @param demandTimeout   how long dispatching waits for a subscriber with a full buffer to request more before it
+     *                        is failed, {@link #DEFAULT_DEMAND_TIMEOUT} if null.
+     * @param executor        the executor subscribers are signalled on, the common fork/join pool if null.
+     */
+    @Builder
+    private FlowEventPublisher(EventDispatcher eventDispatcher, @Singular Set<String> eventNames,
+                               @Singular("access") Set<Access> accessSet, Integer bufferSize, Duration demandTimeout,
+                               Executor executor) {
+        this.eventDispatcher = (eventDispatcher != null) ? eventDispatcher : EventDispatcher.getInstanceOf();
+        this.eventNames = eventNames;
+        this.accessSet = accessSet.isEmpty() ? Set.of(Access.LOCAL) : accessSet;
+        this.bufferSize = (bufferSize == null) ? Flow.defaultBufferSize() : bufferSize;
+        this.demandTimeout = (demandTimeout == null) ? DEFAULT_DEMAND_TIMEOUT : demandTimeout;
+        this.executor = (executor != null) ? executor : ForkJoinPool.commonPool();
+
+        if (this.eventDispatcher == null) throw new IllegalArgumentException("eventDispatcher must be given, there is no EventDispatcher instance");
+        if (eventNames.isEmpty()) throw new IllegalArgumentException("at least one event name must be given");
+        if (this.bufferSize < 1) throw new IllegalArgumentException("bufferSize must be at least 1");
+        if (this.demandTimeout.isNegative()) throw new IllegalArgumentException("demandTimeout must not be negative");
+    }
+
+    /**
+     * Registers the subscriber for the events and signals it {@code onSubscribe} on the executor. Events dispatched
+     * from then on are buffered until requested.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super NamedEvent> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber is null");
+
+        FlowLocalHandler handler = new FlowLocalHandler(String.join(",", eventNames), subscriber, eventDispatcher, bufferSize, demandTimeout, executor);
+        try {
+            eventDispatcher.register(handler, eventNames, accessSet);
+            log.debug("Subscribed {} to {} events {}", subscriber, accessSet, eventNames);
+            handler.start();
+        } catch (RuntimeException ex) {
+            log.error("Failed to subscribe {} to events {}", subscriber, eventNames, ex);
+            handler.fail(ex);
+        }
+    }
+}
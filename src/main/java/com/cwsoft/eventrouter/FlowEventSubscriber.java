@@ -0,0 +1,119 @@
+package com.cwsoft.eventrouter;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatches the events of a reactive publisher, to the local handlers and, through the global handlers, to the
+ * services handling them, with backpressure.
+ * <p>
+ * At most {@code batchSize} events are requested ahead of those dispatched, more being requested as each half batch is
+ * dispatched. Dispatching waits while the mailboxes of the handlers are full, or while the events for other services
+ * are queued for retry and the retry queue is full, so the publisher is not asked for more than the router can take.
+ * <pre>
+ * orders.subscribe(FlowEventSubscriber.create());
+ * </pre>
+ * Not to be subscribed to more than one publisher.
+ */
+@Slf4j
+public class FlowEventSubscriber implements Flow.Subscriber<NamedEvent> {
+    private final EventDispatcher eventDispatcher;
+    private final int batchSize;
+    private final int replenishSize;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile Flow.Subscription subscription;
+    private int sinceRequested; // events dispatched since more were last requested, only touched in onNext
+
+    /**
+     * @param eventDispatcher the dispatcher to dispatch the events with, the {@link EventDispatcher} instance if null.
+     * @param batchSize       the events requested ahead of those dispatched, {@link Flow#defaultBufferSize()} if null.
+     */
+    @Builder
+    private FlowEventSubscriber(EventDispatcher eventDispatcher, Integer batchSize) {
+        this.eventDispatcher = (eventDispatcher != null) ? eventDispatcher : EventDispatcher.getInstanceOf();
+        this.batchSize = (batchSize == null) ? Flow.defaultBufferSize() : batchSize;
+        this.replenishSize = Math.max(1, this.batchSize / 2);
+
+        if (this.eventDispatcher == null) throw new IllegalArgumentException("eventDispatcher must be given, there is no EventDispatcher instance");
+        if (this.batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1");
+    }
+
+    public static FlowEventSubscriber create() {
+        return builder().build();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription is null");
+        if (this.subscription != null) {
+            log.warn("Already subscribed, cancelling the subscription {}", subscription);
+            subscription.cancel();
+            return;
+        }
+
+        this.subscription = subscription;
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public void onNext(NamedEvent event) {
+        Objects.requireNonNull(event, "event is null");
+
+        try {
+            eventDispatcher.dispatchEvent(event);
+            dispatched.increment();
+        } catch (RuntimeException ex) {
+            log.error("Error dispatching event {} from publisher", event, ex);
+            failed.increment();
+        }
+
+        if (++sinceRequested >= replenishSize) {
+            sinceRequested = 0;
+            subscription.request(replenishSize);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.error("Publisher of events failed after {} events were dispatched", dispatched.sum(), throwable);
+        completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        log.info("Publisher of events completed, {} events dispatched, {} failed", dispatched.sum(), failed.sum());
+        completion.complete(null);
+    }
+
+    /**
+     * Stops taking events from the publisher.
+     */
+    public void cancel() {
+        Flow.Subscription current = subscription;
+        if (current != null) current.cancel();
+        completion.complete(null);
+    }
+
+    /**
+     * @return a future completed once the publisher has completed, exceptionally if it failed.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+}
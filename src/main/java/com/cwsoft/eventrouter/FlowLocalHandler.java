@@ -0,0 +1,333 @@
+package com.cwsoft.eventrouter;
+
+import com.cwsoft.eventrouter.metrics.HandlerMetrics;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local handler that hands the events dispatched to it to a {@link Flow.Subscriber} as the subscriber requests them,
+ * the subscription of a {@link FlowEventPublisher}.
+ * <p>
+ * Events wait in a buffer of {@code bufferSize} until they are requested. Once the buffer is full,
+ * {@link #handle(NamedEvent)} blocks the dispatching thread until the subscriber requests more, so a queued handler
+ * dispatching to it stops taking from its mailbox, and for global events the {@code GlobalEventsConsumer} stops
+ * fetching. A subscriber that requests nothing for {@code demandTimeout} while the buffer is full is failed with
+ * {@code onError} and unregistered, so a stalled subscriber holds back dispatching for no longer than that.
+ * <p>
+ * The subscriber is signalled on the executor, one signal at a time, never on the dispatching thread. Each subscription
+ * is a handler of its own, equal only to itself, even for the same subscriber.
+ */
+@Slf4j
+final class FlowLocalHandler extends LocalHandler implements Flow.Subscription {
+    private static final Method ON_NEXT = onNextMethod();
+
+    private final Flow.Subscriber<? super NamedEvent> subscriber;
+    private final EventDispatcher eventDispatcher;
+    private final Executor executor;
+    private final String name;
+    private final HandlerMetrics metrics;
+    private final ArrayBlockingQueue<Delivery> buffer;
+    private final long demandTimeoutNanos;
+    private final Object drained = new Object(); // notified once closed and the buffer is empty, or on cancel
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger signals = new AtomicInteger(); // signals pending, delivered while more than 0
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile boolean closed;      // no longer accepting events, completes once the buffer is empty
+    private volatile boolean discarding;  // closed and past the drain timeout
+    private volatile Throwable failure;   // to signal with onError
+
+    // only touched while delivering signals
+    private boolean subscribed;
+    private boolean terminated;
+
+    FlowLocalHandler(String handledEventNames, Flow.Subscriber<? super NamedEvent> subscriber,
+                     EventDispatcher eventDispatcher, int bufferSize, Duration demandTimeout, Executor executor) {
+        super(subscriber, ON_NEXT, 1);
+        this.subscriber = subscriber;
+        this.eventDispatcher = eventDispatcher;
+        this.executor = executor;
+        this.name = handlerName(handledEventNames);
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.demandTimeoutNanos = demandTimeout.toNanos();
+        this.metrics = RouterMetrics.getInstance().registerHandler(name, buffer::size);
+    }
+
+    /**
+     * Signals {@code onSubscribe}, once the handler has been registered.
+     */
+    void start() {
+        signal();
+    }
+
+    /**
+     * Signals {@code onError} rather than any more events, e.g. if the handler could not be registered.
+     */
+    void fail(Throwable failure) {
+        this.failure = failure;
+        signal();
+    }
+
+    @Override
+    public <E extends NamedEvent> void handle(E e) {
+        handle(Delivery.of(e));
+    }
+
+    @Override
+    public CompletableFuture<Void> handleAsync(NamedEvent e) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        handle(new Delivery(e, completion));
+        return completion;
+    }
+
+    /*
+     * identity, rather than the subscriber and method compared by LocalHandler, so that the registry keeps each
+     * subscription of a subscriber, and removes only the one unregistered.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public CompletableFuture<Void> warmUp(int iterations) {
+        return CompletableFuture.completedFuture(null); // nothing to prepare, the subscriber is called directly
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            failure = new IllegalArgumentException("Requested " + n + " events, must be positive");
+        } else {
+            requested.getAndUpdate(current -> (current + n < 0) ? Long.MAX_VALUE : current + n);
+        }
+        signal();
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled.compareAndSet(false, true)) return;
+
+        discard();
+        notifyDrained();
+        try {
+            executor.execute(this::unregister);
+        } catch (RejectedExecutionException ex) {
+            unregister();
+        }
+    }
+
+    /**
+     * Stops accepting events and carries on delivering those buffered, as they are requested, until the drain timeout.
+     * The subscriber is then completed, unless it has cancelled.
+     */
+    @Override
+    public void close(Duration drainTimeout) {
+        synchronized (drained) {
+            if (closed) return;
+            closed = true;
+            signal(); // completes the subscriber if nothing is buffered
+
+            long deadlineNanos = System.nanoTime() + drainTimeout.toNanos();
+            long remainingNanos;
+            try {
+                while (!buffer.isEmpty() && !cancelled.get() && (remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(drained, remainingNanos);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        discarding = true;
+        discard();
+        signal();
+        RouterMetrics.getInstance().unregisterHandler(metrics);
+    }
+
+    private void handle(Delivery delivery) {
+        if (closed || cancelled.get() || failure != null) {
+            log.debug("Discarding event {} dispatched to closed handler {}", delivery.event, name);
+            delivery.complete(new IllegalStateException("Handler " + name + " is closed"));
+            return;
+        }
+
+        try {
+            if (!buffer.offer(delivery)) {
+                log.trace("Handler {} is waiting for demand for event {}", name, delivery.event);
+                if (!buffer.offer(delivery, demandTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    overflow(delivery);
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted waiting for demand for event {} dispatched to {}", delivery.event, name);
+            delivery.complete(ex);
+            return;
+        }
+        metrics.enqueued(buffer.size());
+
+        if (discarding || cancelled.get()) discard();
+        signal();
+    }
+
+    /*
+     * the subscriber has requested nothing for the demand timeout, so it is failed rather than holding back the
+     * dispatching thread any longer.
+     */
+    private void overflow(Delivery delivery) {
+        IllegalStateException stalled = new IllegalStateException(String.format(
+                "Subscriber of %s requested no events for %dms with %d events buffered", name,
+                TimeUnit.NANOSECONDS.toMillis(demandTimeoutNanos), buffer.size()));
+        log.warn("Failing the subscription of {}, dropping event {}", name, delivery.event, stalled);
+        delivery.complete(stalled);
+        fail(stalled);
+    }
+
+    /*
+     * delivers the pending signals on the executor, serialized by the count of signals pending: only the caller that
+     * takes it from 0 starts delivering, and delivering carries on until it is back to 0.
+     */
+    private void signal() {
+        if (signals.getAndIncrement() != 0) return;
+
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException ex) {
+            log.error("Executor rejected delivering to subscriber of {}, cancelling the subscription", name, ex);
+            signals.set(0);
+            cancel();
+        }
+    }
+
+    private void deliver() {
+        int missed = 1;
+        do {
+            if (!terminated && !cancelled.get()) {
+                deliverSignals();
+            }
+            missed = signals.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void deliverSignals() {
+        if (!subscribed) {
+            subscribed = true;
+            try {
+                subscriber.onSubscribe(this);
+            } catch (RuntimeException ex) {
+                log.error("Subscriber of {} failed on subscribe, cancelling the subscription", name, ex);
+                cancel();
+                return;
+            }
+        }
+
+        Throwable error = failure;
+        if (error != null) {
+            terminate(error);
+            return;
+        }
+
+        long demand = requested.get();
+        long delivered = 0;
+        Delivery delivery;
+        while (delivered < demand && !cancelled.get() && (delivery = buffer.poll()) != null) {
+            if (!onNext(delivery)) return;
+            delivered++;
+        }
+        if (delivered > 0 && demand != Long.MAX_VALUE) {
+            requested.addAndGet(-delivered);
+        }
+
+        if (closed && buffer.isEmpty() && !cancelled.get()) {
+            notifyDrained();
+            terminate(null);
+        }
+    }
+
+    /**
+     * @return false if the subscriber failed, in which case its subscription is cancelled.
+     */
+    private boolean onNext(Delivery delivery) {
+        long invokedNanos = System.nanoTime();
+        Throwable thrown = null;
+        try {
+            subscriber.onNext(delivery.event);
+        } catch (RuntimeException ex) {
+            log.error("Subscriber of {} failed handling event {}, cancelling the subscription", name, delivery.event, ex);
+            thrown = ex;
+        }
+        long completedNanos = System.nanoTime();
+        metrics.invoked(invokedNanos - delivery.enqueuedNanos, completedNanos - invokedNanos, thrown != null);
+        recordTrace(delivery, invokedNanos, completedNanos);
+        delivery.complete(thrown);
+
+        if (thrown != null) cancel();
+        return thrown == null;
+    }
+
+    private void terminate(Throwable error) {
+        terminated = true;
+        try {
+            if (error == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(error);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Subscriber of {} failed on {}", name, (error == null) ? "complete" : "error", ex);
+        }
+
+        if (error != null) cancel();
+    }
+
+    /*
+     * unregistering closes the handler, which also has to be closed if it never was registered.
+     */
+    private void unregister() {
+        if (!eventDispatcher.unregisterHandler(this)) {
+            close(Duration.ZERO);
+        }
+    }
+
+    private void notifyDrained() {
+        synchronized (drained) {
+            drained.notifyAll();
+        }
+    }
+
+    private void discard() {
+        List<Delivery> discarded = new ArrayList<>();
+        buffer.drainTo(discarded);
+        discarded.forEach(delivery -> delivery.complete(new IllegalStateException("Handler " + name + " is closed")));
+        if (!discarded.isEmpty()) log.debug("Discarded {} events buffered for closed handler {}", discarded.size(), name);
+    }
+
+    private static Method onNextMethod() {
+        try {
+            return Flow.Subscriber.class.getMethod("onNext", Object.class);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
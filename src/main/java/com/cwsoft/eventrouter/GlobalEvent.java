@@ -1,53 +1,123 @@
 package com.cwsoft.eventrouter;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @ToString(callSuper = true, doNotUseGetters = true)
 public class GlobalEvent<E> extends Event<E> {
 
+    private static final long EVENT_ID_SEED = new SecureRandom().nextLong();
+    private static final AtomicLong EVENT_ID_SEQUENCE = new AtomicLong();
+    private static final Object NONE = new Object();
+
     @Getter
     private final String fromServiceId;
 
+    /**
+     * Unique ID of this copy of the event, kept when the producer retries it so that the receiving service can drop
+     * duplicates. 0 if not known, e.g. from a service that predates event IDs.
+     */
+    @Getter
+    private final long eventId;
+
     @Setter
     private String sourceJson;
     @Setter
     private Class sourceClass;
 
+    /**
+     * The source decoded from {@code sourceJson} as {@code sourceClass}, or NONE if it decodes to nothing. Decoded
+     * once, by the first handler to ask for it, and published safely to the handlers on other threads.
+     */
+    @ToString.Exclude
+    private volatile Object decodedSource;
+
+    /**
+     * The source decoded as other types, e.g. the parameterized type of a handler's payload parameter, once per type.
+     * Guarded by this.
+     */
+    @ToString.Exclude
+    private List<TypedSource> typedSources;
+
     @Override
     public E getSource(TypeReference<E> sourceTypeRef) {
-        if (this.source == null) {
-            try {
-                this.source = (E) getObjectMapper().readValue(sourceJson, sourceTypeRef);
-            } catch (JsonProcessingException e) {
-                log.error("Error decoding Event from JSON string {}", sourceJson, e);
-                return null;
-            }
+        JavaType type = getObjectMapper().getTypeFactory().constructType(sourceTypeRef);
+        return (E) getSource(type, readerFor(type));
+    }
+
+    public E getSource() {
+        if (sourceJson == null) return this.source;
+
+        Object decoded = decodedSource;
+        if (decoded == null) decoded = decodeSource();
+        return (decoded == NONE) ? null : (E) decoded;
+    }
+
+    /**
+     * Gets the source decoded as the given type, decoding it once for all the handlers asking for the same type. The
+     * source decoded as its own class is shared by all the handlers asking for that class or one of its supertypes.
+     *
+     * @param type   the type to decode the source as.
+     * @param reader the reader for the type, looked up once by the caller.
+     * @return the decoded source, or null if the event has no source or it fails to decode.
+     */
+    public Object getSource(JavaType type, ObjectReader reader) {
+        if (sourceJson == null) return this.source;
+        if (sourceClass != null && !type.hasGenericTypes() && type.getRawClass().isAssignableFrom(sourceClass)) {
+            return getSource();
+        }
+        return typedSource(type, reader);
+    }
+
+    private synchronized Object decodeSource() {
+        if (decodedSource == null) {
+            Object decoded = decodeWith(readerFor(sourceClass));
+            this.source = (decoded == NONE) ? null : (E) decoded;
+            decodedSource = decoded;
         }
+        return decodedSource;
+    }
 
-        return this.source;
+    private synchronized Object typedSource(JavaType type, ObjectReader reader) {
+        if (typedSources == null) typedSources = new ArrayList<>(1);
+
+        Object decoded = null;
+        for (TypedSource typedSource : typedSources) {
+            if (typedSource.type().equals(type)) decoded = typedSource.value();
+        }
+        if (decoded == null) {
+            decoded = decodeWith(reader);
+            typedSources.add(new TypedSource(type, decoded));
+        }
+        return (decoded == NONE) ? null : decoded;
     }
 
-    public E getSource() {
-        if (this.source == null && sourceJson != null) {
-            try {
-                this.source = (E) getObjectMapper().readValue(sourceJson, sourceClass);
-            } catch (JsonProcessingException e) {
-                log.error("Error decoding Event from JSON string {}", sourceJson, e);
-                return null;
-            }
+    private Object decodeWith(ObjectReader reader) {
+        try {
+            Object decoded = reader.readValue(sourceJson);
+            return (decoded == null) ? NONE : decoded;
+        } catch (IOException e) {
+            log.error("Error decoding Event from JSON string {}", sourceJson, e);
+            return NONE;
         }
+    }
 
-        return this.source;
+    private record TypedSource(JavaType type, Object value) {
     }
 
     public static GlobalEvent toGlobalEvent(NamedEvent e, String fromServiceId) {
@@ -63,14 +133,39 @@ public class GlobalEvent<E> extends Event<E> {
         }
 
         builder.fromServiceId(fromServiceId);
+        builder.eventId(nextEventId());
+        builder.priority(e.getPriority());
+        builder.trace(DispatchTraces.of(e).newSpan());
         return builder.build();
     }
 
+    /**
+     * @return a new event ID, never 0. IDs are distinct within the JVM and start from a random point in each JVM.
+     */
+    static long nextEventId() {
+        long id;
+        do {
+            id = mix(EVENT_ID_SEED + EVENT_ID_SEQUENCE.incrementAndGet() * 0x9E3779B97F4A7C15L);
+        } while (id == 0);
+        return id;
+    }
+
+    /*
+     * the SplitMix64 finalizer, a bijection, so distinct sequence numbers give distinct IDs.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     @Builder(builderMethodName = "globalBuilder")
-    GlobalEvent(String name, E source, Set<String> destinationServices, String fromServiceId, String sourceJson, Class sourceClass) {
-        super(name, source, destinationServices, null);
+    GlobalEvent(String name, E source, Set<String> destinationServices, String fromServiceId, long eventId, String sourceJson, Class sourceClass, Priority priority, TraceContext trace) {
+        super(name, source, destinationServices, null, priority);
+        this.trace = trace;
         this.sourceJson = sourceJson;
         this.sourceClass = sourceClass;
         this.fromServiceId = fromServiceId;
+        this.eventId = eventId;
     }
 }
@@ -1,5 +1,32 @@
 package com.cwsoft.eventrouter;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface Handler {
     <E extends NamedEvent> void handle(E e);
+
+    /**
+     * Handles a batch of events, in order. Implementations override this when they can hand over a batch more
+     * cheaply than one event at a time.
+     *
+     * @param events the events to handle.
+     */
+    default void handleAll(List<? extends NamedEvent> events) {
+        for (NamedEvent event : events) {
+            handle(event);
+        }
+    }
+
+    /**
+     * Handles the event, returning a future that completes once handling has finished. By default handling is
+     * considered finished once {@link #handle(NamedEvent)} returns.
+     *
+     * @param e the event to handle.
+     * @return a future completed normally, or exceptionally with the handler's exception.
+     */
+    default CompletableFuture<Void> handleAsync(NamedEvent e) {
+        handle(e);
+        return CompletableFuture.completedFuture(null);
+    }
 }
@@ -0,0 +1,20 @@
+package com.cwsoft.eventrouter;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The outcome of an asynchronously dispatched event for one handler.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class HandlerOutcome {
+    private final String handler;  // the local end point or the remote service
+    private final Throwable failure; // null if the handler completed normally
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,249 @@
+package com.cwsoft.eventrouter;
+
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Immutable, versioned snapshot of the handlers registered with {@link EventHandlers}. Dispatching reads the current
+ * snapshot without locking; changes build a new snapshot, copying only the handler sets of the events they touch.
+ * <p>
+ * Remote handlers are kept apart, as bitsets of interned remote services (see {@link RemoteSubscribers}), and are
+ * combined with the other handlers of an event when it is looked up, or replaced by a single broadcast handler when
+ * enough services subscribe to the event.
+ */
+final class HandlerRegistry {
+    static final HandlerRegistry EMPTY = new HandlerRegistry(0, Map.of(), Map.of(), RemoteSubscribers.EMPTY);
+
+    @Getter
+    private final long version;
+    private final Map<String, Set<Handler>> handlers;
+    private final Map<String, Set<LocalHandler>> globalHandlers;
+    @Getter
+    private final RemoteSubscribers remoteSubscribers;
+
+    private HandlerRegistry(long version, Map<String, Set<Handler>> handlers, Map<String, Set<LocalHandler>> globalHandlers,
+                            RemoteSubscribers remoteSubscribers) {
+        this.version = version;
+        this.handlers = handlers;
+        this.globalHandlers = globalHandlers;
+        this.remoteSubscribers = remoteSubscribers;
+    }
+
+    /**
+     * @param broadcastHandler   the handler that sends an event once to all remote services, or null for none.
+     * @param broadcastThreshold the number of remote services subscribing to an event from which it is sent through
+     *                           the broadcast handler rather than the remote handler of each service.
+     */
+    Collection<Handler> get(String forEvent, Handler broadcastHandler, int broadcastThreshold) {
+        Set<Handler> eventHandlers = handlers.getOrDefault(forEvent, Set.of());
+        long[] remoteServices = remoteSubscribers.subscribersOf(forEvent);
+        if (remoteServices == null) return eventHandlers;
+
+        if (broadcastHandler != null && RemoteSubscribers.count(remoteServices) >= broadcastThreshold) {
+            return new EventHandlersView(eventHandlers, new long[0], remoteSubscribers, broadcastHandler);
+        }
+        return new EventHandlersView(eventHandlers, remoteServices, remoteSubscribers, null);
+    }
+
+    /*
+     * the handlers of an event other than remote handlers.
+     */
+    private Set<Handler> getNonRemote(String forEvent) {
+        return handlers.getOrDefault(forEvent, Set.of());
+    }
+
+    Collection<LocalHandler> getGlobal(String forEvent) {
+        return globalHandlers.getOrDefault(forEvent, Set.of());
+    }
+
+    Set<String> getGlobalEventsHandled() {
+        return globalHandlers.keySet();
+    }
+
+    /*
+     * the handler sets of all events, other than remote handlers.
+     */
+    Collection<Set<Handler>> allHandlers() {
+        return handlers.values();
+    }
+
+    Collection<Set<LocalHandler>> allGlobalHandlers() {
+        return globalHandlers.values();
+    }
+
+    /**
+     * @return the local handler registered for the event, local or global, that invokes the given method of the given
+     * bean instance, or null if there is none.
+     */
+    LocalHandler findLocal(String forEvent, Object bean, Method method) {
+        for (Handler handler : getNonRemote(forEvent)) {
+            if (handler instanceof LocalHandler localHandler && invokes(localHandler, bean, method)) return localHandler;
+        }
+        for (LocalHandler localHandler : getGlobal(forEvent)) {
+            if (invokes(localHandler, bean, method)) return localHandler;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the removal of each matching local handler, from the local and the global handlers of every event, to the
+     * transaction.
+     *
+     * @return the matching handlers, each once.
+     */
+    Set<LocalHandler> removeLocal(Predicate<LocalHandler> matching, RegistryTransaction transaction) {
+        Set<LocalHandler> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        handlers.forEach((eventName, handlerSet) -> handlerSet.forEach(handler -> {
+            if (handler instanceof LocalHandler localHandler && matching.test(localHandler)) {
+                transaction.remove(eventName, localHandler);
+                removed.add(localHandler);
+            }
+        }));
+        globalHandlers.forEach((eventName, handlerSet) -> handlerSet.forEach(localHandler -> {
+            if (matching.test(localHandler)) {
+                transaction.removeGlobal(eventName, localHandler);
+                removed.add(localHandler);
+            }
+        }));
+        return removed;
+    }
+
+    private static boolean invokes(LocalHandler localHandler, Object bean, Method method) {
+        return localHandler.getHandlerObject() == bean && localHandler.getHandlerMethod().equals(method);
+    }
+
+    /**
+     * @return a new snapshot with the changes applied, or this snapshot if the changes leave it as it is.
+     */
+    HandlerRegistry apply(List<RegistryTransaction.Change> changes) {
+        Map<String, Set<Handler>> newHandlers = null;
+        Map<String, Set<LocalHandler>> newGlobalHandlers = null;
+        Map<String, Set<Handler>> copiedHandlerSets = new HashMap<>();
+        Map<String, Set<LocalHandler>> copiedGlobalSets = new HashMap<>();
+        RemoteSubscribers.Editor remoteEditor = remoteSubscribers.edit();
+
+        for (RegistryTransaction.Change change : changes) {
+            switch (change.kind()) {
+                case ADD -> {
+                    if (change.handler() instanceof RemoteHandler remoteHandler) {
+                        remoteEditor.add(change.eventName(), remoteHandler);
+                        continue;
+                    }
+                    if (getNonRemote(change.eventName()).contains(change.handler()) && !copiedHandlerSets.containsKey(change.eventName())) continue;
+                    copiedHandlerSets.computeIfAbsent(change.eventName(), name -> new LinkedHashSet<>(getNonRemote(name))).add(change.handler());
+                }
+                case REMOVE -> {
+                    if (change.handler() instanceof RemoteHandler remoteHandler) {
+                        remoteEditor.remove(change.eventName(), remoteHandler);
+                        continue;
+                    }
+                    if (!getNonRemote(change.eventName()).contains(change.handler()) && !copiedHandlerSets.containsKey(change.eventName())) continue;
+                    copiedHandlerSets.computeIfAbsent(change.eventName(), name -> new LinkedHashSet<>(getNonRemote(name))).remove(change.handler());
+                }
+                case ADD_GLOBAL -> {
+                    LocalHandler localHandler = (LocalHandler) change.handler();
+                    if (getGlobal(change.eventName()).contains(localHandler) && !copiedGlobalSets.containsKey(change.eventName())) continue;
+                    copiedGlobalSets.computeIfAbsent(change.eventName(), name -> new LinkedHashSet<>(getGlobal(name))).add(localHandler);
+                }
+                case REMOVE_GLOBAL -> {
+                    LocalHandler localHandler = (LocalHandler) change.handler();
+                    if (!getGlobal(change.eventName()).contains(localHandler) && !copiedGlobalSets.containsKey(change.eventName())) continue;
+                    copiedGlobalSets.computeIfAbsent(change.eventName(), name -> new LinkedHashSet<>(getGlobal(name))).remove(localHandler);
+                }
+            }
+        }
+
+        RemoteSubscribers newRemoteSubscribers = remoteEditor.build();
+        if (copiedHandlerSets.isEmpty() && copiedGlobalSets.isEmpty() && newRemoteSubscribers == remoteSubscribers) return this;
+
+        if (!copiedHandlerSets.isEmpty()) {
+            newHandlers = new HashMap<>(handlers);
+            merge(newHandlers, copiedHandlerSets);
+        }
+
+        if (!copiedGlobalSets.isEmpty()) {
+            newGlobalHandlers = new HashMap<>(globalHandlers);
+            merge(newGlobalHandlers, copiedGlobalSets);
+        }
+
+        return new HandlerRegistry(version + 1,
+                (newHandlers == null) ? handlers : Collections.unmodifiableMap(newHandlers),
+                (newGlobalHandlers == null) ? globalHandlers : Collections.unmodifiableMap(newGlobalHandlers),
+                newRemoteSubscribers);
+    }
+
+    private static <H> void merge(Map<String, Set<H>> into, Map<String, Set<H>> changedSets) {
+        changedSets.forEach((eventName, handlerSet) -> {
+            if (handlerSet.isEmpty()) {
+                into.remove(eventName);
+            } else {
+                into.put(eventName, Collections.unmodifiableSet(handlerSet));
+            }
+        });
+    }
+
+    /**
+     * The handlers of an event: its local (and other) handlers followed by either the broadcast handler, or the remote
+     * handlers of the services set in the event's bitset, in service index order.
+     */
+    private static final class EventHandlersView extends AbstractCollection<Handler> {
+        private final Set<Handler> handlers;
+        private final long[] remoteServices;
+        private final RemoteSubscribers remoteSubscribers;
+        private final Handler broadcastHandler;
+
+        private EventHandlersView(Set<Handler> handlers, long[] remoteServices, RemoteSubscribers remoteSubscribers,
+                                  Handler broadcastHandler) {
+            this.handlers = handlers;
+            this.remoteServices = remoteServices;
+            this.remoteSubscribers = remoteSubscribers;
+            this.broadcastHandler = broadcastHandler;
+        }
+
+        @Override
+        public int size() {
+            return handlers.size() + RemoteSubscribers.count(remoteServices) + (broadcastHandler == null ? 0 : 1);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        @Override
+        public Iterator<Handler> iterator() {
+            return new Iterator<>() {
+                private final Iterator<Handler> handlerIterator = handlers.iterator();
+                private boolean broadcastPending = broadcastHandler != null;
+                private int wordIndex = 0;
+                private long word = remoteServices.length == 0 ? 0 : remoteServices[0];
+
+                @Override
+                public boolean hasNext() {
+                    if (handlerIterator.hasNext() || broadcastPending) return true;
+                    while (word == 0 && wordIndex < remoteServices.length - 1) {
+                        word = remoteServices[++wordIndex];
+                    }
+                    return word != 0;
+                }
+
+                @Override
+                public Handler next() {
+                    if (handlerIterator.hasNext()) return handlerIterator.next();
+                    if (broadcastPending) {
+                        broadcastPending = false;
+                        return broadcastHandler;
+                    }
+                    if (!hasNext()) throw new NoSuchElementException();
+
+                    int index = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    return remoteSubscribers.service(index);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.cwsoft.eventrouter;
+
+import com.cwsoft.eventrouter.index.HandlerInvoker;
+import com.cwsoft.eventrouter.jfr.InvokeJfrEvent;
+import com.cwsoft.eventrouter.metrics.HandlerMetrics;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Local handler that invokes the handler method on the thread calling {@link #handle(NamedEvent)}, avoiding the queue
+ * hand off and thread wake-up of a {@link ThreadLocalHandler}.
+ * <p>
+ * If a handler dispatches an event that leads back to itself, or inline handlers are nested more than
+ * {@link #MAX_INLINE_DEPTH} deep, the invocation is deferred and run on the same thread once the outermost inline
+ * handler has returned. This keeps the stack bounded and stops a handler from being re-entered.
+ */
+@Slf4j
+public class InlineLocalHandler extends LocalHandler {
+    static final int MAX_INLINE_DEPTH = 8;
+
+    private static final ThreadLocal<InlineFrames> FRAMES = ThreadLocal.withInitial(InlineFrames::new);
+
+    private final String name;
+    private final HandlerMetrics metrics;
+    private volatile boolean closed;
+
+    @Builder
+    private InlineLocalHandler(String handledEventName, Object handlerObject, Method handlerMethod, int noOfParameters, HandlerInvoker invoker) {
+        super(handlerObject, handlerMethod, noOfParameters, invoker);
+        this.name = handlerName(handledEventName);
+        this.metrics = RouterMetrics.getInstance().registerHandler(name, () -> 0);
+    }
+
+    @Override
+    public <E extends NamedEvent> void handle(E e) {
+        handle(e, null, System.nanoTime());
+    }
+
+    @Override
+    public CompletableFuture<Void> handleAsync(NamedEvent e) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        handle(e, completion, System.nanoTime());
+        return completion;
+    }
+
+    @Override
+    public void close(Duration drainTimeout) {
+        closed = true;
+        RouterMetrics.getInstance().unregisterHandler(metrics);
+    }
+
+    /*
+     * events are handled without being wrapped in a Delivery, which is only needed should the invocation be deferred.
+     */
+    private void handle(NamedEvent event, CompletableFuture<Void> completion, long dispatchedNanos) {
+        if (closed) {
+            log.debug("Discarding event {} dispatched to closed handler {}", event, name);
+            if (completion != null) completion.completeExceptionally(new IllegalStateException("Handler " + name + " is closed"));
+            return;
+        }
+
+        InlineFrames frames = FRAMES.get();
+
+        if (frames.depth >= MAX_INLINE_DEPTH || frames.isActive(this)) {
+            log.trace("deferring inline invocation of {} for event {}, depth is {}", this, event, frames.depth);
+            frames.deferred.add(new DeferredInvocation(this, new Delivery(event, completion)));
+            return;
+        }
+
+        run(frames, event, completion, dispatchedNanos);
+
+        if (frames.depth == 0) {
+            DeferredInvocation deferred;
+            while ((deferred = frames.deferred.poll()) != null) {
+                Delivery delivery = deferred.delivery;
+                deferred.handler.run(frames, delivery.event, delivery.completion, delivery.enqueuedNanos);
+            }
+        }
+    }
+
+    private void run(InlineFrames frames, NamedEvent event, CompletableFuture<Void> completion, long dispatchedNanos) {
+        frames.active[frames.depth++] = this;
+        InvokeJfrEvent jfrEvent = new InvokeJfrEvent();
+        jfrEvent.begin();
+        long invokedNanos = System.nanoTime();
+        Throwable failure;
+        try {
+            failure = invokeForOutcome(event);
+        } catch (RuntimeException ex) {
+            log.error("Error dispatching event {} to inline handler {}", event, this, ex);
+            failure = ex;
+        } finally {
+            frames.active[--frames.depth] = null;
+        }
+        long completedNanos = System.nanoTime();
+        metrics.invoked(invokedNanos - dispatchedNanos, completedNanos - invokedNanos, failure != null);
+        recordTrace(event, dispatchedNanos, invokedNanos, completedNanos);
+        if (completion != null) {
+            if (failure == null) {
+                completion.complete(null);
+            } else {
+                completion.completeExceptionally(failure);
+            }
+        }
+
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.eventName = event.getName();
+            jfrEvent.handler = name;
+            jfrEvent.waitTime = invokedNanos - dispatchedNanos;
+            jfrEvent.failed = failure != null;
+            jfrEvent.commit();
+        }
+    }
+
+    private static class InlineFrames {
+        private final InlineLocalHandler[] active = new InlineLocalHandler[MAX_INLINE_DEPTH];
+        private final Deque<DeferredInvocation> deferred = new ArrayDeque<>();
+        private int depth;
+
+        private boolean isActive(InlineLocalHandler handler) {
+            for (int i = 0; i < depth; i++) {
+                if (active[i] == handler) return true;
+            }
+            return false;
+        }
+    }
+
+    private record DeferredInvocation(InlineLocalHandler handler, Delivery delivery) {
+    }
+}
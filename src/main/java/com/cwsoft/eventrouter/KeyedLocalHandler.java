@@ -0,0 +1,113 @@
+package com.cwsoft.eventrouter;
+
+import com.cwsoft.eventrouter.index.HandlerInvoker;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Local handler that spreads events over a number of queued workers, each with its own mailbox and thread.
+ * The worker is chosen by the hash of the event's ordering key so events with the same key are handled in order,
+ * while events with different keys are handled in parallel. Events without a key all go to the first worker.
+ */
+@Getter
+@Slf4j
+public class KeyedLocalHandler extends LocalHandler {
+
+    private final String handledEventName;
+    private final String orderingKey;
+    private final ThreadLocalHandler[] workers;
+    private final OrderingKeyExtractor keyExtractor;
+
+    @Builder
+    private KeyedLocalHandler(String handledEventName, Object handlerObject, Method handlerMethod, int noOfParameters,
+                              HandlerInvoker invoker, Priority priority, int concurrency, String orderingKey) {
+        super(handlerObject, handlerMethod, noOfParameters, invoker);
+
+        if (concurrency < 2) {
+            throw new IllegalArgumentException(String.format("The concurrency of handler %s must be at least 2 but is %d", handlerMethod, concurrency));
+        }
+
+        if (orderingKey == null || orderingKey.isBlank()) {
+            throw new IllegalArgumentException(String.format("The handler %s has a concurrency of %d but no orderingKey", handlerMethod, concurrency));
+        }
+
+        this.handledEventName = handledEventName;
+        this.orderingKey = orderingKey;
+        this.keyExtractor = new OrderingKeyExtractor(orderingKey);
+        this.workers = new ThreadLocalHandler[concurrency];
+
+        for (int i = 0; i < concurrency; i++) {
+            workers[i] = ThreadLocalHandler.builder()
+                    .handledEventName(handledEventName)
+                    .handlerObject(handlerObject)
+                    .handlerMethod(handlerMethod)
+                    .noOfParameters(noOfParameters)
+                    .invoker(invoker)
+                    .priority(priority)
+                    .workerIndex(i)
+                    .build();
+        }
+    }
+
+    @Override
+    public <E extends NamedEvent> void handle(E e) {
+        workers[workerFor(e)].handle(e);
+    }
+
+    @Override
+    public CompletableFuture<Void> handleAsync(NamedEvent e) {
+        return workers[workerFor(e)].handleAsync(e);
+    }
+
+    @Override
+    public void handleAll(List<? extends NamedEvent> events) {
+        List<List<NamedEvent>> batches = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            batches.add(new ArrayList<>());
+        }
+
+        for (NamedEvent e : events) {
+            batches.get(workerFor(e)).add(e);
+        }
+
+        for (int i = 0; i < workers.length; i++) {
+            if (!batches.get(i).isEmpty()) workers[i].handleAll(batches.get(i));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> warmUp(int iterations) {
+        super.warmUp(iterations);
+        CompletableFuture<?>[] warmUps = new CompletableFuture<?>[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            warmUps[i] = workers[i].warmUp(iterations);
+        }
+        return CompletableFuture.allOf(warmUps);
+    }
+
+    /**
+     * Closes the workers, all of them draining their mailboxes within the one {@code drainTimeout}.
+     */
+    @Override
+    public void close(Duration drainTimeout) {
+        long deadlineNanos = System.nanoTime() + drainTimeout.toNanos();
+        for (ThreadLocalHandler worker : workers) {
+            worker.close(Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())));
+        }
+    }
+
+    int workerFor(NamedEvent e) {
+        Object key = keyExtractor.keyOf(e);
+        if (key == null) return 0;
+
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), workers.length);
+    }
+}
@@ -1,11 +1,17 @@
 package com.cwsoft.eventrouter;
 
+import com.cwsoft.eventrouter.index.HandlerInvoker;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 @EqualsAndHashCode
 @ToString(of = {"handlerObject", "handlerMethod"})
@@ -15,32 +21,153 @@ public abstract class LocalHandler implements Handler {
     final Object handlerObject;
     final Method handlerMethod;
     int noOfParameters;
+    @EqualsAndHashCode.Exclude
+    final HandlerInvoker invoker;
+    @EqualsAndHashCode.Exclude
+    private volatile boolean accessible;
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    private final PayloadBinding payloadBinding; // null if the handler method takes the event, or nothing
 
     public LocalHandler(Object handlerObject, Method handlerMethod, int noOfParameters) {
+        this(handlerObject, handlerMethod, noOfParameters, null);
+    }
+
+    /**
+     * @param invoker calls the handler method without reflection, generated by the handler index. May be null.
+     */
+    public LocalHandler(Object handlerObject, Method handlerMethod, int noOfParameters, HandlerInvoker invoker) {
         this.handlerObject = handlerObject;
         this.handlerMethod = handlerMethod;
         this.noOfParameters = noOfParameters;
+        this.invoker = invoker;
 
         if (noOfParameters > 1) {
             throw new IllegalArgumentException(String.format("The handle event method %s of class %s has too many parameters", handlerMethod, handlerObject.getClass()));
         }
+        this.payloadBinding = (noOfParameters == 0) ? null : PayloadBinding.of(handlerMethod);
     }
 
     public String getLocalEndPoint() {
         return this.handlerObject.getClass().getSimpleName() + '.' + this.handlerMethod;
     }
 
+    /**
+     * @return the name used for the metrics (and threads) of this handler handling the given event.
+     */
+    protected String handlerName(String handledEventName) {
+        return handledEventName + ":" + handlerObject.getClass().getSimpleName() + "." + handlerMethod.getName();
+    }
+
+    /**
+     * Records the per hop latency of a global event that carries a trace header once its handler has completed.
+     */
+    void recordTrace(Delivery delivery, long invokedNanos, long completedNanos) {
+        recordTrace(delivery.event, delivery.enqueuedNanos, invokedNanos, completedNanos);
+    }
+
+    void recordTrace(NamedEvent event, long enqueuedNanos, long invokedNanos, long completedNanos) {
+        TraceContext trace = event.getTrace();
+        if (trace == null || !trace.isConsumed()) return;
+
+        RouterMetrics.getInstance().getTrace().handled(
+                enqueuedNanos - trace.getConsumedNanos(),
+                invokedNanos - enqueuedNanos,
+                completedNanos - invokedNanos,
+                (TraceContext.nowMicros() - trace.getOriginMicros()) * 1_000);
+    }
+
+    /**
+     * Prepares the handler so that its first event is handled as fast as later ones, without invoking the handler
+     * method. Queued handlers also pass the given number of no-op deliveries through their mailbox.
+     *
+     * @param iterations the number of no-op deliveries.
+     * @return a future completed once the warm up deliveries have been taken from the mailbox.
+     */
+    public CompletableFuture<Void> warmUp(int iterations) {
+        if (invoker == null) {
+            try {
+                makeAccessible();
+            } catch (RuntimeException ex) {
+                log.warn("Failed to make handler method {} accessible", handlerMethod, ex);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Releases what the handler holds, e.g. its thread, mailbox and metrics, once it has been removed from
+     * {@link EventHandlers}. Events dispatched to a closed handler are discarded.
+     *
+     * @param drainTimeout how long to carry on handling the events already queued before discarding them.
+     */
+    public void close(Duration drainTimeout) {
+    }
+
+    private void makeAccessible() {
+        if (!accessible) {
+            handlerMethod.setAccessible(true);
+            accessible = true;
+        }
+    }
+
     protected void invoke(NamedEvent event) {
+        invokeForOutcome(event);
+    }
+
+    /**
+     * Invokes the handler method for the event.
+     *
+     * @param event the event being handled.
+     * @return null if the handler completed normally, otherwise the exception thrown by (or invoking) the handler.
+     */
+    protected Throwable invokeForOutcome(NamedEvent event) {
+        Object argument;
         try {
-            handlerMethod.setAccessible(true);
+            argument = argumentFor(event);
+        } catch (RuntimeException ex) {
+            log.error("Error binding the payload of event {} for handler {}", event, this, ex);
+            return ex;
+        }
+
+        if (invoker != null) {
+            return invokeDirect(event, argument);
+        }
+
+        try {
+            makeAccessible();
 
             if (noOfParameters == 0) {
                 handlerMethod.invoke(handlerObject);
             } else {
-                handlerMethod.invoke(handlerObject, event);
+                handlerMethod.invoke(handlerObject, argument);
             }
+            return null;
+        } catch (InvocationTargetException ex) {
+            log.error("Error dispatching event {} to handler {}", event, this, ex);
+            return ex.getCause();
         } catch (Exception ex) {
             log.error("Error dispatching event {} to handler {}", event, this, ex);
+            return ex;
+        }
+    }
+
+    /*
+     * the event, or its payload if the handler method declares the payload type.
+     */
+    private Object argumentFor(NamedEvent event) {
+        return (payloadBinding == null) ? event : payloadBinding.bind(event);
+    }
+
+    private Throwable invokeDirect(NamedEvent event, Object argument) {
+        try {
+            invoker.invoke(handlerObject, argument);
+            return null;
+        } catch (VirtualMachineError error) {
+            throw error;
+        } catch (Throwable ex) {
+            log.error("Error dispatching event {} to handler {}", event, this, ex);
+            return ex;
         }
     }
 }
\ No newline at end of file
@@ -1,7 +1,11 @@
 package com.cwsoft.eventrouter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -16,7 +20,9 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @ToString (of = {"name"}, doNotUseGetters = true)
@@ -34,13 +40,19 @@ public class NamedEvent {
 
     protected String siteInContext;
 
+    @Getter
+    protected Priority priority; // null unless the publisher overrides the priority of the handlers
+
+    @Getter
+    protected volatile TraceContext trace; // set once the event is received from a remote service, or sent as a GlobalEvent
+
     public String getSiteInContext() {
         return (siteInContext == null)?"":siteInContext;
     }
 
 
-    private String encoded;
-    private byte[] encodedBytes;
+    private String encodedBody;       // the encoded event without its trace header, which changes as it is produced
+    private byte[] encodedBodyBytes;
 
     public NamedEvent(String name) {
         this.name = name;
@@ -54,15 +66,28 @@ public class NamedEvent {
         this.siteInContext = "";
     }
 
+    public NamedEvent(String name, boolean retryOnFailure, Set<String> destinationServices, String siteInContext) {
+        this(name, retryOnFailure, destinationServices, siteInContext, null);
+    }
+
     @Builder (builderMethodName = "namedBuilder")
-    public NamedEvent(String name, boolean retryOnFailure, @Singular Set<String> destinationServices, String siteInContext) {
+    public NamedEvent(String name, boolean retryOnFailure, @Singular Set<String> destinationServices, String siteInContext, Priority priority) {
         this.name = name;
         this.retryOnFailure = retryOnFailure;
         this.destinationServices = destinationServices;
         this.siteInContext = (siteInContext==null)?"":siteInContext;
+        this.priority = priority;
     }
 
-    private static ObjectMapper objectMapper;
+    private static volatile ObjectMapper objectMapper;
+
+    /**
+     * Readers and writers of event sources by source class, so that Jackson looks up (and builds) the deserializer and
+     * serializer of a source class once rather than on every decode and encode.
+     */
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+    private static final Map<JavaType, ObjectReader> TYPE_READERS = new ConcurrentHashMap<>();
 
     /**
      * Note. We create our own ObjectMapper instance as can't use RebasoftApplicationContext
@@ -72,14 +97,44 @@ public class NamedEvent {
      * @return ObjectMapper instance
      */
     static ObjectMapper getObjectMapper() {
-        if (objectMapper == null) objectMapper = JsonMapper.builder()
-                .addModule(new JavaTimeModule())
-                .addModule(new Jdk8Module())
-                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
-                .build();
+        if (objectMapper == null) {
+            synchronized (NamedEvent.class) {
+                if (objectMapper == null) objectMapper = JsonMapper.builder()
+                        .addModule(new JavaTimeModule())
+                        .addModule(new Jdk8Module())
+                        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                        .build();
+            }
+        }
         return objectMapper;
     }
 
+    static ObjectReader readerFor(Class<?> sourceClass) {
+        return READERS.computeIfAbsent(sourceClass, clazz -> getObjectMapper().readerFor(clazz));
+    }
+
+    /**
+     * @return the reader of sources of a, possibly parameterized, type, e.g. that of a handler's payload parameter.
+     */
+    static ObjectReader readerFor(JavaType sourceType) {
+        return TYPE_READERS.computeIfAbsent(sourceType, type -> getObjectMapper().readerFor(type));
+    }
+
+    static ObjectWriter writerFor(Class<?> sourceClass) {
+        return WRITERS.computeIfAbsent(sourceClass, clazz -> getObjectMapper().writerFor(clazz));
+    }
+
+    /**
+     * Builds the reader and writer used to decode and encode events with sources of the given class, so that the
+     * first event is not held up by Jackson introspecting the class.
+     *
+     * @param sourceClass the class of event sources (payloads).
+     */
+    public static void warmUpCodec(Class<?> sourceClass) {
+        readerFor(sourceClass);
+        writerFor(sourceClass);
+    }
+
     public static NamedEvent decode(String jsonEvent) {
         try {
             NamedEvent event;
@@ -97,12 +152,26 @@ public class NamedEvent {
             if (sourceJson == null && !objectNode.has("frm")) {
                 event = new NamedEvent(name);
             } else if (objectNode.has("frm")) {
-                event = GlobalEvent.globalBuilder().name(name).source(null).sourceJson(sourceJson).sourceClass(clazz).fromServiceId(objectNode.get("frm").asText()).build();
+                event = GlobalEvent.globalBuilder().name(name).source(null).sourceJson(sourceJson).sourceClass(clazz).fromServiceId(objectNode.get("frm").asText())
+                        .eventId(objectNode.has("eid") ? Long.parseUnsignedLong(objectNode.get("eid").asText(), 16) : 0).build();
             } else {
-                source = getObjectMapper().readValue(sourceJson, clazz);
+                source = readerFor(clazz).readValue(sourceJson);
                 event = Event.builder().name(name).source(source).build();
             }
 
+            if (objectNode.has("pri")) {
+                event.priority = priorityOf(objectNode.get("pri").asText(), name);
+            }
+
+            if (objectNode.has("trc")) {
+                JsonNode traceNode = objectNode.get("trc");
+                event.trace = new TraceContext(
+                        Long.parseUnsignedLong(traceNode.get("tid").asText(), 16),
+                        Long.parseUnsignedLong(traceNode.get("sid").asText(), 16),
+                        traceNode.get("org").asLong(),
+                        traceNode.path("prd").asLong());
+            }
+
             return event;
         } catch (IOException e) {
             log.error("Error decoding Event from JSON string {}", jsonEvent, e);
@@ -110,8 +179,41 @@ public class NamedEvent {
         }
     }
 
+    /*
+     * a priority unknown to this service, e.g. one added in a later version, is ignored so that the event is handled at
+     * the priority of its handlers rather than being dropped.
+     */
+    private static Priority priorityOf(String value, String eventName) {
+        try {
+            return Priority.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring unknown priority {} of event {}", value, eventName);
+            return null;
+        }
+    }
+
+    /**
+     * Encodes the event. The body is encoded once and cached, the trace header is written on each call so that a copy
+     * produced again, e.g. on a retry, carries the time it was last produced.
+     */
     public String encode() throws JsonProcessingException {
-        if (encoded != null) return encoded;
+        String body = encodeBody();
+        TraceContext currentTrace = trace;
+        if (currentTrace == null) return body;
+
+        // the body is a non-empty JSON object, the trace header is added as its last field
+        return new StringBuilder(body.length() + 96)
+                .append(body, 0, body.length() - 1)
+                .append(",\"trc\":{\"tid\":\"").append(currentTrace.getTraceIdHex())
+                .append("\",\"sid\":\"").append(currentTrace.getSpanIdHex())
+                .append("\",\"org\":").append(currentTrace.getOriginMicros())
+                .append(",\"prd\":").append(currentTrace.getProducedMicros())
+                .append("}}")
+                .toString();
+    }
+
+    private String encodeBody() throws JsonProcessingException {
+        if (encodedBody != null) return encodedBody;
 
         ObjectNode objectNode = getObjectMapper().createObjectNode();
         objectNode.put("nm", name);
@@ -121,7 +223,7 @@ public class NamedEvent {
             if (thisEvent.getSource() != null) {
                 String cls = getObjectMapper().writeValueAsString(thisEvent.getSource().getClass());
                 objectNode.put("cls", cls);
-                String src = getObjectMapper().writeValueAsString(thisEvent.getSource());
+                String src = writerFor(thisEvent.getSource().getClass()).writeValueAsString(thisEvent.getSource());
                 objectNode.put("src", src);
             }
         }
@@ -129,10 +231,17 @@ public class NamedEvent {
         if (this instanceof GlobalEvent) {
             GlobalEvent thisGlobalEvent = (GlobalEvent) this;
             objectNode.put("frm", thisGlobalEvent.getFromServiceId());
+            if (thisGlobalEvent.getEventId() != 0) {
+                objectNode.put("eid", String.format("%016x", thisGlobalEvent.getEventId()));
+            }
         }
 
-        encoded = objectNode.toString();
-        return encoded;
+        if (priority != null) {
+            objectNode.put("pri", priority.name());
+        }
+
+        encodedBody = objectNode.toString();
+        return encodedBody;
     }
 
     int getEncodedSize() throws JsonProcessingException, UnsupportedEncodingException {
@@ -140,8 +249,9 @@ public class NamedEvent {
     }
 
     private byte[] getEncodedBytes() throws JsonProcessingException, UnsupportedEncodingException {
-        if (encodedBytes != null) return encodedBytes;
-        encodedBytes = encode().getBytes("UTF8");
-        return encodedBytes;
+        if (trace != null) return encode().getBytes("UTF8");
+
+        if (encodedBodyBytes == null) encodedBodyBytes = encodeBody().getBytes("UTF8");
+        return encodedBodyBytes;
     }
 }
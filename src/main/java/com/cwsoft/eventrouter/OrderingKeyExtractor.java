@@ -0,0 +1,83 @@
+package com.cwsoft.eventrouter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Extracts the ordering key of an event, i.e. the named property of the event's source (payload).
+ * The property is looked up as an accessor method (record style or java bean getter) or a field, and the
+ * resolved accessor is cached per payload class. Map payloads, e.g. an undecoded JSON object, are looked up by key.
+ */
+@Slf4j
+class OrderingKeyExtractor {
+    private static final Function<Object, Object> NO_KEY = source -> null;
+
+    private final String property;
+    private final Map<Class<?>, Function<Object, Object>> accessors = new ConcurrentHashMap<>();
+
+    OrderingKeyExtractor(String property) {
+        if (property == null || property.isBlank()) throw new IllegalArgumentException("ordering key property is null or blank");
+        this.property = property;
+    }
+
+    /**
+     * @param event the event
+     * @return the value of the ordering key property of the event's source, or null if the event has no source or the
+     * source has no such property.
+     */
+    Object keyOf(NamedEvent event) {
+        if (!(event instanceof Event)) return null;
+
+        Object source = (event instanceof GlobalEvent) ? ((GlobalEvent<?>) event).getSource() : ((Event<?>) event).getSource();
+        if (source == null) return null;
+        if (source instanceof Map) return ((Map<?, ?>) source).get(property);
+
+        return accessors.computeIfAbsent(source.getClass(), this::resolveAccessor).apply(source);
+    }
+
+    private Function<Object, Object> resolveAccessor(Class<?> sourceClass) {
+        String capitalised = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+
+        for (String methodName : new String[]{property, "get" + capitalised, "is" + capitalised}) {
+            try {
+                Method method = sourceClass.getMethod(methodName);
+                method.setAccessible(true);
+                return source -> {
+                    try {
+                        return method.invoke(source);
+                    } catch (ReflectiveOperationException ex) {
+                        log.warn("Unable to read ordering key {} from {}", property, source, ex);
+                        return null;
+                    }
+                };
+            } catch (NoSuchMethodException | RuntimeException ignored) {
+                // try the next naming convention
+            }
+        }
+
+        for (Class<?> clazz = sourceClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            try {
+                Field field = clazz.getDeclaredField(property);
+                field.setAccessible(true);
+                return source -> {
+                    try {
+                        return field.get(source);
+                    } catch (IllegalAccessException ex) {
+                        log.warn("Unable to read ordering key {} from {}", property, source, ex);
+                        return null;
+                    }
+                };
+            } catch (NoSuchFieldException | RuntimeException ignored) {
+                // try the super class
+            }
+        }
+
+        log.warn("Payload class {} has no ordering key property {}, events will not be spread across workers", sourceClass, property);
+        return NO_KEY;
+    }
+}
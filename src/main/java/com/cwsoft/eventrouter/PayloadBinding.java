@@ -0,0 +1,90 @@
+package com.cwsoft.eventrouter;
+
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.AbstractDeserializer;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBase;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+
+import java.lang.reflect.Method;
+
+/**
+ * Binds the source (payload) of an event to the parameter of a handler method that declares the payload type rather
+ * than the event, e.g. {@code onOrder(OrderCreated order)} or {@code onOrders(List<Order> orders)}.
+ * <p>
+ * The type and its reader are looked up once, when the handler is created. The payload of a global event is decoded
+ * once for all the handlers binding the same type (see {@link GlobalEvent#getSource(JavaType, ObjectReader)}); the
+ * payload of a local event is passed as it is, or converted if it is not of the declared type, e.g. a map. The type
+ * must be one Jackson can build, e.g. not an interface without type information, even if only local events are handled.
+ */
+final class PayloadBinding {
+    private final JavaType payloadType;
+    private final ObjectReader reader;
+
+    private PayloadBinding(JavaType payloadType) {
+        this.payloadType = payloadType;
+        this.reader = NamedEvent.readerFor(payloadType);
+    }
+
+    /**
+     * @return the binding of the method's parameter, or null if the method has no parameter or takes the event.
+     * @throws IllegalArgumentException if Jackson can't decode payloads of the parameter's type.
+     */
+    static PayloadBinding of(Method method) {
+        if (method.getParameterCount() != 1) return null;
+
+        Class<?> parameterType = method.getParameterTypes()[0];
+        if (NamedEvent.class.isAssignableFrom(parameterType) || parameterType.isAssignableFrom(NamedEvent.class)) {
+            return null; // the event itself, e.g. Event, GlobalEvent or Object
+        }
+
+        JavaType payloadType = NamedEvent.getObjectMapper().getTypeFactory().constructType(method.getGenericParameterTypes()[0]);
+        checkDecodable(payloadType, method);
+        return new PayloadBinding(payloadType);
+    }
+
+    /*
+     * Jackson finds a deserializer for abstract types and for classes it has no way to construct, and only fails once
+     * it decodes one, so those are looked for here, as are the element types of containers.
+     */
+    private static void checkDecodable(JavaType type, Method method) {
+        ObjectMapper objectMapper = NamedEvent.getObjectMapper();
+        DeserializationContext context = ((DefaultDeserializationContext) objectMapper.getDeserializationContext())
+                .createDummyInstance(objectMapper.getDeserializationConfig());
+
+        for (JavaType current = type; current != null; current = current.getContentType()) {
+            JsonDeserializer<Object> deserializer;
+            try {
+                deserializer = context.findRootValueDeserializer(current);
+            } catch (JsonMappingException ex) {
+                throw new IllegalArgumentException(String.format("The payload type %s of handler %s can't be decoded: %s", current, method, ex.getOriginalMessage()), ex);
+            }
+
+            if (deserializer instanceof AbstractDeserializer
+                    || (deserializer instanceof BeanDeserializerBase bean && !bean.getValueInstantiator().canInstantiate())) {
+                throw new IllegalArgumentException(String.format("The payload type %s of handler %s can't be decoded, Jackson has no way to construct it", current, method));
+            }
+        }
+    }
+
+    /**
+     * @return the payload of the event as the bound type, null if the event has none.
+     * @throws IllegalArgumentException if the payload of a local event can't be converted to the bound type.
+     */
+    Object bind(NamedEvent event) {
+        if (event instanceof GlobalEvent<?> globalEvent) {
+            return globalEvent.getSource(payloadType, reader);
+        }
+        if (!(event instanceof Event<?> localEvent)) return null;
+
+        Object source = localEvent.getSource();
+        if (source == null || payloadType.getRawClass().isInstance(source)) {
+            return source;
+        }
+        return NamedEvent.getObjectMapper().convertValue(source, payloadType);
+    }
+}
@@ -0,0 +1,23 @@
+package com.cwsoft.eventrouter;
+
+/**
+ * Relative importance of an event or handler. Declared highest first so that the ordinal can be used as a lane index.
+ */
+public enum Priority {
+    HIGH(Thread.NORM_PRIORITY + 2),
+    NORMAL(Thread.NORM_PRIORITY),
+    LOW(Thread.NORM_PRIORITY - 2);
+
+    private final int threadPriority;
+
+    Priority(int threadPriority) {
+        this.threadPriority = threadPriority;
+    }
+
+    /**
+     * @return the java thread priority used for handler threads serving this priority.
+     */
+    public int getThreadPriority() {
+        return threadPriority;
+    }
+}
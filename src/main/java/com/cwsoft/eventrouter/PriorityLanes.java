@@ -0,0 +1,203 @@
+package com.cwsoft.eventrouter;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded mailbox with a separate FIFO lane per {@link Priority}, either each lane bounded on its own or all the lanes
+ * bounded together by {@link #withTotalCapacity(int)}. Items are taken from the highest priority lane first. To stop a busy higher lane from starving the lower ones, a non-empty lower lane that has been passed over
+ * {@code starvationLimit} times is served next regardless of the higher lanes.
+ *
+ * @param <T> the type of item held in the lanes
+ */
+public class PriorityLanes<T> {
+    public static final int DEFAULT_STARVATION_LIMIT = 10;
+
+    private static final int NO_OF_LANES = Priority.values().length;
+
+    private final BlockingQueue<T>[] lanes;
+    private final Semaphore available = new Semaphore(0);
+    private final Semaphore space; // room left across the lanes, null if each lane is bounded on its own
+    private final int starvationLimit;
+    private final int[] passedOver = new int[NO_OF_LANES];
+
+    public PriorityLanes(int capacityPerLane) {
+        this(capacityPerLane, DEFAULT_STARVATION_LIMIT);
+    }
+
+    /**
+     * @return lanes holding up to {@code totalCapacity} items between them, whatever their priorities, so that traffic
+     * of a single priority can use all of it.
+     */
+    public static <T> PriorityLanes<T> withTotalCapacity(int totalCapacity) {
+        if (totalCapacity < 1) throw new IllegalArgumentException("totalCapacity must be at least 1");
+        return new PriorityLanes<>(DEFAULT_STARVATION_LIMIT, new Semaphore(totalCapacity), LinkedBlockingQueue::new);
+    }
+
+    public PriorityLanes(int capacityPerLane, int starvationLimit) {
+        this(starvationLimit, null, () -> new ArrayBlockingQueue<>(capacityPerLane));
+    }
+
+    @SuppressWarnings("unchecked")
+    private PriorityLanes(int starvationLimit, Semaphore space, Supplier<BlockingQueue<T>> newLane) {
+        if (starvationLimit < 1) throw new IllegalArgumentException("starvationLimit must be at least 1");
+        this.starvationLimit = starvationLimit;
+        this.space = space;
+        this.lanes = new BlockingQueue[NO_OF_LANES];
+        for (int i = 0; i < NO_OF_LANES; i++) {
+            lanes[i] = newLane.get();
+        }
+    }
+
+    /**
+     * Adds an item to the lane for the given priority, waiting if there is no room for it.
+     */
+    public void put(T item, Priority priority) throws InterruptedException {
+        add(lanes[priority.ordinal()], item);
+        available.release();
+    }
+
+    /**
+     * Adds items to the lane for the given priority, in order, waiting whenever there is no room for them.
+     * Waiting consumers are signalled once per run of items rather than once per item.
+     */
+    public void putAll(Collection<? extends T> items, Priority priority) throws InterruptedException {
+        BlockingQueue<T> lane = lanes[priority.ordinal()];
+        int added = 0;
+        try {
+            for (T item : items) {
+                if (!tryAdd(lane, item)) {
+                    // make what has been added so far available before waiting for the consumer to make room
+                    available.release(added);
+                    added = 0;
+                    add(lane, item);
+                }
+                added++;
+            }
+        } finally {
+            available.release(added);
+        }
+    }
+
+    /**
+     * Adds an item to the lane for the given priority if there is room.
+     *
+     * @return true if the item was added, false if there is no room for it.
+     */
+    public boolean offer(T item, Priority priority) {
+        if (tryAdd(lanes[priority.ordinal()], item)) {
+            available.release();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the next item, waiting until one is available.
+     */
+    public T take() throws InterruptedException {
+        available.acquire();
+        return next();
+    }
+
+    /**
+     * Removes the next item, waiting up to the specified time for one to become available.
+     *
+     * @return the next item or null if the timeout elapsed.
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!available.tryAcquire(timeout, unit)) return null;
+        return next();
+    }
+
+    /**
+     * Removes all the items in the lanes without waiting, highest priority first.
+     *
+     * @return the number of items removed.
+     */
+    public int drainTo(Collection<? super T> items) {
+        int drained = 0;
+        while (available.tryAcquire()) {
+            items.add(next());
+            drained++;
+        }
+        return drained;
+    }
+
+    public int size() {
+        int size = 0;
+        for (BlockingQueue<T> lane : lanes) {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    public int size(Priority priority) {
+        return lanes[priority.ordinal()].size();
+    }
+
+    /**
+     * @return the number of items in the lanes without locking them, may briefly lag additions and removals.
+     */
+    public int approximateSize() {
+        return available.availablePermits();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private void add(BlockingQueue<T> lane, T item) throws InterruptedException {
+        if (space == null) {
+            lane.put(item);
+        } else {
+            space.acquire();
+            lane.add(item);
+        }
+    }
+
+    private boolean tryAdd(BlockingQueue<T> lane, T item) {
+        if (space == null) return lane.offer(item);
+        if (!space.tryAcquire()) return false;
+        lane.add(item);
+        return true;
+    }
+
+    /*
+     * Only called once a permit has been acquired so an item is guaranteed to be (or shortly be) in one of the lanes.
+     */
+    private T next() {
+        T item = nextInLanes();
+        if (space != null) space.release();
+        return item;
+    }
+
+    private synchronized T nextInLanes() {
+        while (true) {
+            for (int i = NO_OF_LANES - 1; i > 0; i--) {
+                if (passedOver[i] >= starvationLimit) {
+                    passedOver[i] = 0;
+                    T item = lanes[i].poll();
+                    if (item != null) return item;
+                }
+            }
+
+            for (int i = 0; i < NO_OF_LANES; i++) {
+                T item = lanes[i].poll();
+                if (item != null) {
+                    for (int lower = i + 1; lower < NO_OF_LANES; lower++) {
+                        if (!lanes[lower].isEmpty()) passedOver[lower]++;
+                    }
+                    return item;
+                }
+            }
+
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.cwsoft.eventrouter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of handler additions and removals applied to {@link EventHandlers} as one atomic change, see
+ * {@link EventHandlers#apply(RegistryTransaction)}. Dispatching sees either none or all of the changes.
+ * <p>
+ * A transaction is not thread-safe and is meant to be built and applied by a single thread.
+ */
+public class RegistryTransaction {
+
+    private final List<Change> changes = new ArrayList<>();
+
+    /**
+     * Adds a handler for a given event.
+     */
+    public RegistryTransaction add(String eventName, Handler handler) {
+        changes.add(new Change(Change.Kind.ADD, eventName, handler));
+        return this;
+    }
+
+    /**
+     * Removes a handler for a given event.
+     */
+    public RegistryTransaction remove(String eventName, Handler handler) {
+        changes.add(new Change(Change.Kind.REMOVE, eventName, handler));
+        return this;
+    }
+
+    /**
+     * Adds a local handler of a global event, i.e. an event originating from another service.
+     */
+    RegistryTransaction addGlobal(String eventName, LocalHandler localHandler) {
+        changes.add(new Change(Change.Kind.ADD_GLOBAL, eventName, localHandler));
+        return this;
+    }
+
+    /**
+     * Removes a local handler of a global event.
+     */
+    RegistryTransaction removeGlobal(String eventName, LocalHandler localHandler) {
+        changes.add(new Change(Change.Kind.REMOVE_GLOBAL, eventName, localHandler));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    List<Change> changes() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    record Change(Kind kind, String eventName, Handler handler) {
+        enum Kind {ADD, REMOVE, ADD_GLOBAL, REMOVE_GLOBAL}
+    }
+}
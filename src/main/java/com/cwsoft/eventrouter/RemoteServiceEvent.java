@@ -1,12 +1,13 @@
 package com.cwsoft.eventrouter;
 
+import com.cwsoft.eventrouter.global.BroadcastHeader;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
 /**
- * An event that needs to be sent to a remote service
+ * An event that needs to be sent to a remote service, or to all remote services if it has a broadcast header
  */
 @EqualsAndHashCode
 @ToString
@@ -15,9 +16,18 @@ import lombok.ToString;
 public class RemoteServiceEvent {
     private String remoteServiceId;
     private Event event;
+    private BroadcastHeader broadcastHeader; // null unless the event is broadcast
+
+    public boolean isBroadcast() {
+        return broadcastHeader != null;
+    }
 
     public boolean isRetryable() {
         return event.isRetryOnFailure();
     }
 
+    public Priority getPriority() {
+        return (event.getPriority() != null) ? event.getPriority() : Priority.NORMAL;
+    }
+
 }
@@ -0,0 +1,168 @@
+package com.cwsoft.eventrouter;
+
+import java.util.*;
+
+/**
+ * Immutable, compact record of the remote services subscribing to each event, part of a {@link HandlerRegistry}.
+ * <p>
+ * Each remote handler (i.e. remote service) is interned once, to a dense index, and each event keeps a bitset of the
+ * indexes of its subscribers. An (event, service) subscription costs a bit rather than a handler object, and fan-out
+ * walks the bitset in index order over a single array of handlers. The index of a service with no subscriptions left
+ * is freed and reused.
+ */
+final class RemoteSubscribers {
+    static final RemoteSubscribers EMPTY = new RemoteSubscribers(new RemoteHandler[0], new int[0], Map.of(), Map.of());
+
+    private final RemoteHandler[] services;
+    private final int[] subscriptions; // per service index, the number of events subscribed to
+    private final Map<RemoteHandler, Integer> indexes;
+    private final Map<String, long[]> subscribersByEvent;
+
+    private RemoteSubscribers(RemoteHandler[] services, int[] subscriptions, Map<RemoteHandler, Integer> indexes,
+                              Map<String, long[]> subscribersByEvent) {
+        this.services = services;
+        this.subscriptions = subscriptions;
+        this.indexes = indexes;
+        this.subscribersByEvent = subscribersByEvent;
+    }
+
+    /**
+     * @return the bitset of the indexes of services subscribing to the event, or null if there are none.
+     */
+    long[] subscribersOf(String eventName) {
+        return subscribersByEvent.get(eventName);
+    }
+
+    RemoteHandler service(int index) {
+        return services[index];
+    }
+
+    boolean contains(String eventName, RemoteHandler handler) {
+        Integer index = indexes.get(handler);
+        long[] bits = subscribersByEvent.get(eventName);
+        return index != null && bits != null && isSet(bits, index);
+    }
+
+    int serviceCount() {
+        return indexes.size();
+    }
+
+    int eventCount() {
+        return subscribersByEvent.size();
+    }
+
+    Editor edit() {
+        return new Editor();
+    }
+
+    static boolean isSet(long[] bits, int index) {
+        int word = index >>> 6;
+        return word < bits.length && (bits[word] & (1L << index)) != 0;
+    }
+
+    static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Applies changes to a copy of the subscribers, copying the tables and bitsets only once they are first changed.
+     */
+    final class Editor {
+        private RemoteHandler[] newServices;
+        private int[] newSubscriptions;
+        private Map<RemoteHandler, Integer> newIndexes;
+        private Map<String, long[]> newSubscribersByEvent;
+        private final Set<String> copiedEvents = new HashSet<>();
+
+        boolean add(String eventName, RemoteHandler handler) {
+            Integer index = indexes().get(handler);
+            long[] bits = subscribersByEvent().get(eventName);
+            if (index != null && bits != null && isSet(bits, index)) return false;
+
+            if (index == null) index = intern(handler);
+            bits = bitsForWrite(eventName, index);
+            bits[index >>> 6] |= 1L << index;
+            newSubscriptions[index]++;
+            return true;
+        }
+
+        boolean remove(String eventName, RemoteHandler handler) {
+            Integer index = indexes().get(handler);
+            long[] bits = subscribersByEvent().get(eventName);
+            if (index == null || bits == null || !isSet(bits, index)) return false;
+
+            bits = bitsForWrite(eventName, index);
+            bits[index >>> 6] &= ~(1L << index);
+            if (count(bits) == 0) {
+                newSubscribersByEvent.remove(eventName);
+            }
+
+            if (--newSubscriptions[index] == 0) {
+                newServices[index] = null;
+                newIndexes.remove(handler);
+            }
+            return true;
+        }
+
+        RemoteSubscribers build() {
+            if (newSubscribersByEvent == null) return RemoteSubscribers.this;
+            return new RemoteSubscribers(newServices, newSubscriptions, newIndexes, newSubscribersByEvent);
+        }
+
+        private Map<RemoteHandler, Integer> indexes() {
+            return (newIndexes == null) ? indexes : newIndexes;
+        }
+
+        private Map<String, long[]> subscribersByEvent() {
+            return (newSubscribersByEvent == null) ? subscribersByEvent : newSubscribersByEvent;
+        }
+
+        private void copyTables() {
+            if (newSubscribersByEvent != null) return;
+            newServices = services.clone();
+            newSubscriptions = subscriptions.clone();
+            newIndexes = new HashMap<>(indexes);
+            newSubscribersByEvent = new HashMap<>(subscribersByEvent);
+        }
+
+        private int intern(RemoteHandler handler) {
+            copyTables();
+
+            int index = 0;
+            while (index < newServices.length && newServices[index] != null) {
+                index++;
+            }
+
+            if (index == newServices.length) {
+                int capacity = Math.max(64, newServices.length * 2);
+                newServices = Arrays.copyOf(newServices, capacity);
+                newSubscriptions = Arrays.copyOf(newSubscriptions, capacity);
+            }
+
+            newServices[index] = handler;
+            newIndexes.put(handler, index);
+            return index;
+        }
+
+        private long[] bitsForWrite(String eventName, int index) {
+            copyTables();
+
+            long[] bits = newSubscribersByEvent.get(eventName);
+            int words = (index >>> 6) + 1;
+
+            if (bits == null) {
+                bits = new long[words];
+            } else if (!copiedEvents.contains(eventName) || bits.length < words) {
+                bits = Arrays.copyOf(bits, Math.max(bits.length, words));
+            }
+
+            copiedEvents.add(eventName);
+            newSubscribersByEvent.put(eventName, bits);
+            return bits;
+        }
+    }
+}
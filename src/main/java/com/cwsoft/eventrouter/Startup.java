@@ -11,18 +11,28 @@ public abstract class Startup {
 
     private final EventHandlers handlers;
     private final BeanSupplier beanSupplier;
+    private final WarmUp warmUp;
 
     public Startup(EventHandlers handlers, BeanSupplier beanSupplier) {
+        this(handlers, beanSupplier, null);
+    }
+
+    /**
+     * @param warmUp the warm up run before the service is marked ready, or null for none.
+     */
+    public Startup(EventHandlers handlers, BeanSupplier beanSupplier, WarmUp warmUp) {
         if (handlers == null || beanSupplier == null) {
             throw new IllegalArgumentException("handlers and beanSupplier must not be null");
         }
         this.handlers = handlers;
         this.beanSupplier = beanSupplier;
+        this.warmUp = warmUp;
     }
 
    /*
     * this should be called once the application context (BeanSupplier) has been initialised with all beans in the
     * service (application).  It sets up all the handlers based on beans that have methods annotated with @EventHandler.
+    * If a WarmUp was given it is run next.
     * Once initialisation is complete it dispatches the event todo: change name "RebasoftContextReady" as certain beans may want to be made aware of this.
     */
     public void start() {
@@ -36,6 +46,10 @@ public abstract class Startup {
         handlers.init(beanSupplier);
         log.info("EventRouter initialized successfully.");
 
+        if (warmUp != null) {
+            warmUp.run(handlers);
+        }
+
         NamedEvent contextReadyEvent = new NamedEvent("RebasoftContextReady");
         eventDispatcher.dispatchEvent(contextReadyEvent);
         log.info("Dispatched event: {}", contextReadyEvent.getName());
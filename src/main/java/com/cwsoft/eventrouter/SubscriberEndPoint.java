@@ -1,5 +1,6 @@
 package com.cwsoft.eventrouter;
 
+import com.cwsoft.eventrouter.index.HandlerInvoker;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -15,8 +16,16 @@ public class SubscriberEndPoint {
     private final String forEvent;
     private final Object bean;
     private final Method method;
+    private final HandlerInvoker invoker; // generated by the handler index, null if the method is invoked by reflection
     @Singular("access")
     private final Set<Access> accessSet;
+    @Builder.Default
+    private final Priority priority = Priority.NORMAL;
+    @Builder.Default
+    private final ExecutionMode mode = ExecutionMode.QUEUED;
+    @Builder.Default
+    private final int concurrency = 1;
+    private final String orderingKey;
 
     public int getParameterCount() {
         return method.getParameterCount();
@@ -29,4 +38,22 @@ public class SubscriberEndPoint {
     public boolean hasLocalAccess() {
         return accessSet.contains(Access.LOCAL);
     }
+
+    /**
+     * Rejects execution options that don't go together, when the handler is registered rather than when its events
+     * are dispatched.
+     */
+    void validate() {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(String.format("The concurrency of handler %s must be at least 1 but is %d", method, concurrency));
+        }
+
+        if (mode == ExecutionMode.INLINE && concurrency > 1) {
+            throw new IllegalArgumentException(String.format("The INLINE handler %s has a concurrency of %d, it can only run on the dispatching thread", method, concurrency));
+        }
+
+        if (orderingKey != null && !orderingKey.isBlank() && concurrency < 2) {
+            throw new IllegalArgumentException(String.format("The handler %s has an orderingKey but a concurrency of %d, the key only routes events across more than 1 worker", method, concurrency));
+        }
+    }
 }
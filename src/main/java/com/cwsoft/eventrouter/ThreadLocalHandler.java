@@ -1,59 +1,302 @@
 package com.cwsoft.eventrouter;
 
+import com.cwsoft.eventrouter.index.HandlerInvoker;
+import com.cwsoft.eventrouter.jfr.EnqueueJfrEvent;
+import com.cwsoft.eventrouter.jfr.InvokeJfrEvent;
+import com.cwsoft.eventrouter.metrics.HandlerMetrics;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Method;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Local handler that queues events in its own mailbox, and invokes the handler method on its own thread.
+ * <p>
+ * The thread is started when the handler is built, and runs until the handler is closed.
+ * <p>
+ * Events dispatched with {@link #handle(NamedEvent)} are queued as they are, only one in {@code WAIT_SAMPLE_RATE},
+ * and those whose trace is being recorded, being wrapped in a {@link Delivery} to time their wait in the mailbox.
+ */
 @Getter
 @Slf4j
 public class ThreadLocalHandler extends LocalHandler {
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(1);
+    private static final int MAILBOX_CAPACITY = 100_000; // events, across all the priority lanes
+    private static final int WAIT_SAMPLE_RATE = 16;       // plain events timed in the mailbox, one in this many
 
     private final String handledEventName;
-    private final BlockingQueue<NamedEvent> eventQueue = new ArrayBlockingQueue<>(10_0000);
+    private final Priority priority;
+    private final Integer workerIndex; // set when this is one of the workers of a KeyedLocalHandler
+    private final PriorityLanes<Object> mailbox = PriorityLanes.withTotalCapacity(MAILBOX_CAPACITY); // events or deliveries
+    private final String name;
+    private final HandlerMetrics metrics;
+    @Getter(AccessLevel.NONE)
+    private final Thread queueConsumerThread;
+    private volatile boolean closed;  // no longer accepting events
+    @Getter(AccessLevel.NONE)
+    private volatile boolean stopped; // the queue consumer thread is to finish
+    @Getter(AccessLevel.NONE)
+    private int dispatched;           // racy count of plain events, only used to sample their wait
 
     @Builder
-    private ThreadLocalHandler(String handledEventName, Object handlerObject, Method handlerMethod, int noOfParameters) {
-       super(handlerObject, handlerMethod, noOfParameters);
+    private ThreadLocalHandler(String handledEventName, Object handlerObject, Method handlerMethod, int noOfParameters, HandlerInvoker invoker, Priority priority, Integer workerIndex) {
+       super(handlerObject, handlerMethod, noOfParameters, invoker);
        this.handledEventName = handledEventName;
+       this.priority = (priority == null) ? Priority.NORMAL : priority;
+       this.workerIndex = workerIndex;
+       this.name = handlerName(handledEventName) + ((workerIndex == null) ? "" : "#" + workerIndex);
+       this.metrics = RouterMetrics.getInstance().registerHandler(name, mailbox::approximateSize);
 
         // now set up queue monitor thread to monitor the queue for events
-        Thread queueConsumerThread = new Thread(() -> runQueueConsumer());
+        queueConsumerThread = new Thread(() -> runQueueConsumer());
+        queueConsumerThread.setPriority(this.priority.getThreadPriority());
         queueConsumerThread.start();
     }
 
     private void runQueueConsumer() {
-        Thread.currentThread().setName("EVT-" + handledEventName + "-" + handlerMethod.getName());
+        Thread.currentThread().setName("EVT-" + handledEventName + "-" + handlerMethod.getName() + ((workerIndex == null) ? "" : "-" + workerIndex));
 
         var timeLastQueueSizeReport = System.currentTimeMillis();
 
-        while (!Thread.interrupted()) {
-            NamedEvent event = null;
+        while (!stopped && !Thread.interrupted()) {
+            Object queued = null;
             try {
-                event = eventQueue.take();
-                invoke(event);
+                queued = mailbox.take();
+                Delivery delivery = (queued instanceof Delivery d) ? d : null;
+                if (delivery != null && delivery.warmUp) {
+                    delivery.complete(null);
+                    continue;
+                }
+                NamedEvent event = (delivery != null) ? delivery.event : (NamedEvent) queued;
+
+                InvokeJfrEvent jfrEvent = new InvokeJfrEvent();
+                jfrEvent.begin();
+                long invokedNanos = System.nanoTime();
+                Throwable failure = invokeForOutcome(event);
+                long completedNanos = System.nanoTime();
+                long waitNanos = 0; // unknown for plain events
+                if (delivery != null) {
+                    waitNanos = invokedNanos - delivery.enqueuedNanos;
+                    metrics.invoked(waitNanos, completedNanos - invokedNanos, failure != null);
+                    recordTrace(delivery, invokedNanos, completedNanos);
+                    delivery.complete(failure);
+                } else {
+                    metrics.invoked(completedNanos - invokedNanos, failure != null);
+                }
+
+                if (jfrEvent.shouldCommit()) {
+                    jfrEvent.eventName = event.getName();
+                    jfrEvent.handler = name;
+                    jfrEvent.queueDepth = mailbox.approximateSize();
+                    jfrEvent.waitTime = waitNanos;
+                    jfrEvent.failed = failure != null;
+                    jfrEvent.commit();
+                }
 
-                if (eventQueue.size() > 10 && (System.currentTimeMillis() - timeLastQueueSizeReport) > 60_000) {
-                    log.info("event queue size is > 10, size is {}", eventQueue.size());
+                if (mailbox.size() > 10 && (System.currentTimeMillis() - timeLastQueueSizeReport) > 60_000) {
+                    log.info("event queue size is > 10, size is {} (high {}, normal {}, low {})", mailbox.size(),
+                            mailbox.size(Priority.HIGH), mailbox.size(Priority.NORMAL), mailbox.size(Priority.LOW));
                     timeLastQueueSizeReport = System.currentTimeMillis();
                 }
 
 
             } catch (InterruptedException e) {
+                break;
             } catch (Exception e) {
-                log.error ("error processing event from queue, {}", event);
+                log.error ("error processing event from queue, {}", (queued instanceof Delivery d) ? d.event : queued);
+                if (queued instanceof Delivery d) d.complete(e);
             }
         }
     }
 
+    /**
+     * Stops accepting events, handles those already queued for up to {@code drainTimeout}, then stops the thread and
+     * waits for it to finish. Events still queued are discarded, those dispatched asynchronously completing
+     * exceptionally. An event dispatched while the handler is being closed may be discarded.
+     */
+    @Override
+    public synchronized void close(Duration drainTimeout) {
+        if (closed) return;
+        closed = true;
+
+        boolean onOwnThread = Thread.currentThread() == queueConsumerThread;
+        long deadlineNanos = System.nanoTime() + drainTimeout.toNanos();
+        if (!onOwnThread) {
+            while (!mailbox.isEmpty() && System.nanoTime() < deadlineNanos) {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+
+        stopped = true;
+        discardQueued();
+        mailbox.offer(Delivery.warmUp(new NamedEvent(handledEventName), null), Priority.HIGH); // wakes up the thread
+
+        if (!onOwnThread) {
+            try {
+                queueConsumerThread.join(Math.max(STOP_TIMEOUT.toMillis(), (deadlineNanos - System.nanoTime()) / 1_000_000));
+                if (queueConsumerThread.isAlive()) {
+                    queueConsumerThread.interrupt();
+                    queueConsumerThread.join(STOP_TIMEOUT.toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (queueConsumerThread.isAlive()) {
+                log.warn("Handler {} thread {} did not stop, it is still handling an event", name, queueConsumerThread.getName());
+            }
+            discardQueued();
+        }
+
+        RouterMetrics.getInstance().unregisterHandler(metrics);
+        log.debug("Closed handler {}", name);
+    }
+
+    private void discardQueued() {
+        List<Object> queued = new ArrayList<>();
+        mailbox.drainTo(queued);
+        queued.forEach(this::discard);
+
+        long discarded = queued.stream().filter(entry -> !(entry instanceof Delivery d && d.warmUp)).count();
+        if (discarded > 0) log.warn("Discarded {} events queued for closed handler {}", discarded, name);
+    }
+
+    private void discard(Object queued) {
+        if (queued instanceof Delivery delivery) {
+            if (delivery.warmUp) {
+                delivery.complete(null);
+            } else {
+                log.debug("Discarding event {} dispatched to closed handler {}", delivery.event, name);
+                delivery.complete(new IllegalStateException("Handler " + name + " is closed"));
+            }
+        } else {
+            log.debug("Discarding event {} dispatched to closed handler {}", queued, name);
+        }
+    }
+
     @Override
     public <E extends NamedEvent> void handle(E e){
         try {
-             eventQueue.put(e);
+            enqueue(e, mailboxEntry(e));
+        } catch (InterruptedException interruptedException) {
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> handleAsync(NamedEvent e) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        try {
+            enqueue(e, new Delivery(e, completion));
         } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            completion.completeExceptionally(interruptedException);
         }
+        return completion;
+    }
+
+    @Override
+    public void handleAll(List<? extends NamedEvent> events) {
+        if (events.isEmpty()) return;
+        if (closed) {
+            events.forEach(this::discard);
+            return;
+        }
+
+        try {
+            Priority lane = laneFor(events.get(0));
+            if (events.stream().allMatch(e -> laneFor(e) == lane)) {
+                EnqueueJfrEvent jfrEvent = new EnqueueJfrEvent();
+                jfrEvent.begin();
+
+                mailbox.putAll(events.stream().map(this::mailboxEntry).toList(), lane);
+                int depth = mailbox.approximateSize();
+                metrics.enqueued(depth);
+
+                if (jfrEvent.shouldCommit()) {
+                    jfrEvent.eventName = events.get(0).getName();
+                    jfrEvent.handler = name;
+                    jfrEvent.priority = lane.name();
+                    jfrEvent.queueDepth = depth;
+                    jfrEvent.commit();
+                }
+            } else {
+                for (NamedEvent e : events) {
+                    enqueue(e, mailboxEntry(e));
+                }
+            }
+        } catch (InterruptedException interruptedException) {
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> warmUp(int iterations) {
+        super.warmUp(iterations);
+        if (iterations <= 0) return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        NamedEvent warmUpEvent = new NamedEvent(handledEventName);
+        try {
+            // bypasses enqueue() so that the warm up doesn't show in the metrics
+            for (int i = 1; i < iterations; i++) {
+                mailbox.put(Delivery.warmUp(warmUpEvent, null), Priority.LOW);
+            }
+            mailbox.put(Delivery.warmUp(warmUpEvent, completion), Priority.LOW);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            completion.completeExceptionally(interruptedException);
+        }
+        return completion;
+    }
+
+    /**
+     * @param entry the event itself, or the delivery wrapping it.
+     */
+    private void enqueue(NamedEvent e, Object entry) throws InterruptedException {
+        if (closed) {
+            discard(entry);
+            return;
+        }
+
+        EnqueueJfrEvent jfrEvent = new EnqueueJfrEvent();
+        jfrEvent.begin();
+
+        Priority lane = laneFor(e);
+        mailbox.put(entry, lane);
+        int depth = mailbox.approximateSize();
+        metrics.enqueued(depth);
+
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.eventName = e.getName();
+            jfrEvent.handler = name;
+            jfrEvent.priority = lane.name();
+            jfrEvent.queueDepth = depth;
+            jfrEvent.commit();
+        }
+    }
+
+    /*
+     * a plain event is queued as it is, unless its wait in the mailbox is to be timed: it is sampled for the wait time
+     * metric, or its trace is being recorded.
+     */
+    private Object mailboxEntry(NamedEvent e) {
+        TraceContext trace = e.getTrace();
+        if ((trace != null && trace.isConsumed()) || ++dispatched % WAIT_SAMPLE_RATE == 0) {
+            return new Delivery(e, null);
+        }
+        return e;
+    }
+
+    /*
+     * the priority carried by the event takes precedence over the priority of the handler.
+     */
+    private Priority laneFor(NamedEvent e) {
+        return (e.getPriority() != null) ? e.getPriority() : priority;
     }
 }
@@ -7,11 +7,36 @@ public class ThreadLocalHandlerFactory implements LocalHandlerFactory {
 
     @Override
     public LocalHandler newHandler(SubscriberEndPoint subscriberEndPoint) {
+        if (subscriberEndPoint.getMode() == ExecutionMode.INLINE) {
+            return InlineLocalHandler.builder()
+                    .handledEventName(subscriberEndPoint.getForEvent())
+                    .handlerObject(subscriberEndPoint.getBean())
+                    .handlerMethod(subscriberEndPoint.getMethod())
+                    .invoker(subscriberEndPoint.getInvoker())
+                    .noOfParameters(subscriberEndPoint.getParameterCount())
+                    .build();
+        }
+
+        if (subscriberEndPoint.getConcurrency() > 1) {
+            return KeyedLocalHandler.builder()
+                    .handledEventName(subscriberEndPoint.getForEvent())
+                    .handlerObject(subscriberEndPoint.getBean())
+                    .handlerMethod(subscriberEndPoint.getMethod())
+                    .invoker(subscriberEndPoint.getInvoker())
+                    .noOfParameters(subscriberEndPoint.getParameterCount())
+                    .priority(subscriberEndPoint.getPriority())
+                    .concurrency(subscriberEndPoint.getConcurrency())
+                    .orderingKey(subscriberEndPoint.getOrderingKey())
+                    .build();
+        }
+
         return ThreadLocalHandler.builder()
                 .handledEventName(subscriberEndPoint.getForEvent())
                 .handlerObject(subscriberEndPoint.getBean())
                 .handlerMethod(subscriberEndPoint.getMethod())
+                .invoker(subscriberEndPoint.getInvoker())
                 .noOfParameters(subscriberEndPoint.getParameterCount())
+                .priority(subscriberEndPoint.getPriority())
                 .build();
     }
 }
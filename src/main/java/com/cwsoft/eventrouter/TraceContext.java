@@ -0,0 +1,75 @@
+package com.cwsoft.eventrouter;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trace header carried by a global event from the service it was dispatched in to the services handling it.
+ * <p>
+ * All remote copies of one dispatched event share the trace id and origin timestamp, each copy has its own span id.
+ * The produce timestamp is stamped just before the event is handed to the messaging producer and the consume
+ * timestamp when the receiving service consumes it. Timestamps on the wire are wall clock microseconds since the
+ * epoch so hops between services are subject to clock skew between hosts, hops within a service use
+ * {@link System#nanoTime()}.
+ */
+@Getter
+@ToString
+public class TraceContext {
+    private final long traceId;
+    private final long spanId;
+    private final long originMicros;
+    private volatile long producedMicros;
+    private volatile long consumedMicros;
+    private volatile long consumedNanos; // local to the receiving service, not encoded
+
+    public TraceContext(long traceId, long spanId, long originMicros, long producedMicros) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.originMicros = originMicros;
+        this.producedMicros = producedMicros;
+    }
+
+    /**
+     * @return a new trace originating now.
+     */
+    public static TraceContext start() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new TraceContext(random.nextLong(), random.nextLong(), nowMicros(), 0);
+    }
+
+    /**
+     * @return a new span of this trace, e.g. for the copy of an event sent to one of several remote services.
+     */
+    public TraceContext newSpan() {
+        return new TraceContext(traceId, ThreadLocalRandom.current().nextLong(), originMicros, 0);
+    }
+
+    public void markProduced() {
+        producedMicros = nowMicros();
+    }
+
+    public void markConsumed() {
+        consumedMicros = nowMicros();
+        consumedNanos = System.nanoTime();
+    }
+
+    public boolean isConsumed() {
+        return consumedNanos != 0;
+    }
+
+    public static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000;
+    }
+
+    public String getTraceIdHex() {
+        return String.format("%016x", traceId);
+    }
+
+    public String getSpanIdHex() {
+        return String.format("%016x", spanId);
+    }
+}
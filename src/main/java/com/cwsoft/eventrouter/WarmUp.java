@@ -0,0 +1,97 @@
+package com.cwsoft.eventrouter;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Optional warm up run by {@link Startup} once the handlers have been registered and before the service is marked
+ * ready, so that the first events are handled about as fast as later ones.
+ * <ul>
+ *     <li>makes handler methods without a generated invoker accessible once, up front.</li>
+ *     <li>builds the codec readers and writers of the given payload types, and of the payload types of handler
+ *     methods declared as {@code Event<Payload>} unless {@code inferPayloadTypes} is false.</li>
+ *     <li>passes {@code iterations} no-op deliveries through the mailbox of each queued handler, which doesn't invoke
+ *     the handler method, and waits up to {@code timeout} for them.</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@Slf4j
+public class WarmUp {
+    @Singular
+    private final Set<Class<?>> payloadTypes;
+    @Builder.Default
+    private final boolean inferPayloadTypes = true;
+    @Builder.Default
+    private final int iterations = 0;
+    @Builder.Default
+    private final Duration timeout = Duration.ofSeconds(10);
+
+    public void run(EventHandlers handlers) {
+        long started = System.nanoTime();
+        Collection<LocalHandler> localHandlers = handlers.getLocalHandlers();
+
+        Set<Class<?>> codecTypes = new LinkedHashSet<>(payloadTypes);
+        if (inferPayloadTypes) {
+            localHandlers.forEach(handler -> payloadTypeOf(handler).ifPresent(codecTypes::add));
+        }
+
+        codecTypes.forEach(type -> {
+            try {
+                NamedEvent.warmUpCodec(type);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to warm up codec for payload type {}", type.getName(), ex);
+            }
+        });
+
+        try {
+            NamedEvent.decode(new NamedEvent("EventRouterWarmUp").encode());
+        } catch (Exception ex) {
+            log.warn("Failed to warm up event codec", ex);
+        }
+
+        List<CompletableFuture<Void>> warmUps = new ArrayList<>(localHandlers.size());
+        localHandlers.forEach(handler -> warmUps.add(handler.warmUp(iterations)));
+
+        try {
+            CompletableFuture.allOf(warmUps.toArray(new CompletableFuture<?>[0])).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            log.warn("Warm up of handlers did not complete within {}", timeout, ex);
+        }
+
+        log.info("Warmed up {} handlers and {} payload codecs in {} ms", localHandlers.size(), codecTypes.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /*
+     * the payload type of a handler method declared as e.g. onOrder(Event<Order> event).
+     */
+    private static Optional<Class<?>> payloadTypeOf(LocalHandler handler) {
+        Type[] parameterTypes = handler.getHandlerMethod().getGenericParameterTypes();
+        if (parameterTypes.length != 1 || !(parameterTypes[0] instanceof ParameterizedType parameterized)) {
+            return Optional.empty();
+        }
+
+        if (!(parameterized.getRawType() instanceof Class<?> rawType) || !NamedEvent.class.isAssignableFrom(rawType)) {
+            return Optional.empty();
+        }
+
+        Type[] arguments = parameterized.getActualTypeArguments();
+        return (arguments.length == 1 && arguments[0] instanceof Class<?> payloadType && payloadType != Object.class)
+                ? Optional.of(payloadType)
+                : Optional.empty();
+    }
+}
@@ -0,0 +1,82 @@
+package com.cwsoft.eventrouter.global;
+
+import com.cwsoft.eventrouter.NamedEvent;
+import com.cwsoft.eventrouter.RemoteServiceEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Wire format of broadcast events: a one line header, read by {@link #peek(String)} without decoding anything else,
+ * followed by the event encoded as usual.
+ * <pre>
+ * B1 US eventName US fromServiceId US fromServiceSite US siteInContext US destination RS destination ... LF encodedEvent
+ * </pre>
+ * where US and RS are the ASCII unit and record separators. The {@link GlobalEventsProducer} sends a
+ * {@link RemoteServiceEvent} for which {@link RemoteServiceEvent#isBroadcast()} is true as
+ * {@link #encode(RemoteServiceEvent)}, by its broadcast producer, to {@value #TOPIC}, which every service consumes.
+ */
+public final class BroadcastEnvelope {
+    public static final String TOPIC = "events.dispatch.events_broadcast";
+
+    private static final String VERSION = "B1";
+    private static final char FIELD_SEPARATOR = '\u001f';
+    private static final char DESTINATION_SEPARATOR = '\u001e';
+    private static final char HEADER_END = '\n';
+
+    private BroadcastEnvelope() {
+    }
+
+    public static String encode(RemoteServiceEvent remoteServiceEvent) {
+        BroadcastHeader header = remoteServiceEvent.getBroadcastHeader();
+        if (header == null) throw new IllegalArgumentException("Not a broadcast event: " + remoteServiceEvent);
+
+        String encodedEvent;
+        try {
+            encodedEvent = remoteServiceEvent.getEvent().encode();
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Failed to encode event " + header.eventName(), e);
+        }
+
+        StringBuilder envelope = new StringBuilder(encodedEvent.length() + 128)
+                .append(VERSION).append(FIELD_SEPARATOR)
+                .append(header.eventName()).append(FIELD_SEPARATOR)
+                .append(header.fromServiceId()).append(FIELD_SEPARATOR)
+                .append(header.fromServiceSite()).append(FIELD_SEPARATOR)
+                .append(header.siteInContext() == null ? "" : header.siteInContext()).append(FIELD_SEPARATOR);
+        if (header.destinationServices() != null) {
+            envelope.append(String.join(String.valueOf(DESTINATION_SEPARATOR), header.destinationServices()));
+        }
+        return envelope.append(HEADER_END).append(encodedEvent).toString();
+    }
+
+    /**
+     * Reads the header of a broadcast message.
+     *
+     * @return the header, or null if the message isn't a broadcast event.
+     */
+    public static BroadcastHeader peek(String message) {
+        int end = message.indexOf(HEADER_END);
+        if (end < 0 || !message.startsWith(VERSION + FIELD_SEPARATOR)) return null;
+
+        String[] fields = message.substring(VERSION.length() + 1, end).split(String.valueOf(FIELD_SEPARATOR), -1);
+        if (fields.length != 5) return null;
+
+        Set<String> destinationServices = fields[4].isEmpty()
+                ? Set.of()
+                : new LinkedHashSet<>(Arrays.asList(fields[4].split(String.valueOf(DESTINATION_SEPARATOR))));
+        return new BroadcastHeader(fields[0], fields[1], fields[2], fields[3], destinationServices);
+    }
+
+    /**
+     * Decodes the event of a broadcast message.
+     *
+     * @return the event, or null if it can't be decoded.
+     */
+    public static NamedEvent decode(String message) {
+        int end = message.indexOf(HEADER_END);
+        return (end < 0) ? null : NamedEvent.decode(message.substring(end + 1));
+    }
+}
@@ -0,0 +1,68 @@
+package com.cwsoft.eventrouter.global;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.messaging.ClosableConsumer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Consumer of the events on the broadcast topic that are for this service, for a second {@link GlobalEventsConsumer}.
+ * Messages are filtered on their header, and only those accepted are decoded.
+ */
+@Slf4j
+public class BroadcastEventsConsumer implements ClosableConsumer<Event> {
+    private final ClosableConsumer<String> consumer;
+    private final Predicate<BroadcastHeader> filter;
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * @param consumer consumer of the broadcast topic, {@value BroadcastEnvelope#TOPIC}, in a group of its own.
+     * @param filter   accepts the events for this service, typically a {@link BroadcastFilter}.
+     */
+    public BroadcastEventsConsumer(ClosableConsumer<String> consumer, Predicate<BroadcastHeader> filter) {
+        this.consumer = consumer;
+        this.filter = filter;
+    }
+
+    @Override
+    public Optional<Event> consume(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            Optional<String> message = consumer.consume(Duration.ofNanos(Math.max(0, remaining)));
+            if (message.isEmpty()) return Optional.empty();
+
+            BroadcastHeader header = BroadcastEnvelope.peek(message.get());
+            if (header == null) {
+                log.warn("Ignoring message on the broadcast topic that isn't a broadcast event");
+            } else if (filter.test(header)) {
+                return Optional.ofNullable((Event) BroadcastEnvelope.decode(message.get()));
+            } else {
+                skipped.increment();
+            }
+
+            if (remaining <= 0) return Optional.empty();
+        }
+    }
+
+    /**
+     * @return the number of broadcast events skipped as not for this service.
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    @Override
+    public void close() {
+        try {
+            consumer.close();
+        } catch (Exception e) {
+            log.warn("Error while closing broadcast consumer", e);
+        }
+    }
+}
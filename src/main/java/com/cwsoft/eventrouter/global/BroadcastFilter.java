@@ -0,0 +1,34 @@
+package com.cwsoft.eventrouter.global;
+
+import com.cwsoft.eventrouter.EventHandlers;
+import com.cwsoft.eventrouter.RemoteHandler;
+
+import java.util.function.Predicate;
+
+/**
+ * Picks out the broadcast events for a service: events from other services in the same site branch, that the service
+ * has global handlers for, and that are for this service and site if they are targeted. These are the events the
+ * sending service would have sent to this service had they not been broadcast.
+ */
+public class BroadcastFilter implements Predicate<BroadcastHeader> {
+    private final String serviceId;
+    private final String serviceSite;
+    private final EventHandlers eventHandlers;
+
+    public BroadcastFilter(String serviceId, String serviceSite, EventHandlers eventHandlers) {
+        this.serviceId = serviceId;
+        this.serviceSite = serviceSite;
+        this.eventHandlers = eventHandlers;
+    }
+
+    @Override
+    public boolean test(BroadcastHeader header) {
+        if (serviceId.equals(header.fromServiceId())) return false;
+        if (!eventHandlers.getGlobalEventsHandled().contains(header.eventName())) return false;
+        if (!RemoteHandler.sitesInSameBranch(serviceSite, header.fromServiceSite())) return false;
+
+        if (!header.destinationServices().isEmpty()) return header.destinationServices().contains(serviceId);
+        if (header.siteInContext() == null || header.siteInContext().isBlank()) return true;
+        return RemoteHandler.sitesInSameBranch(serviceSite, header.siteInContext());
+    }
+}
@@ -0,0 +1,75 @@
+package com.cwsoft.eventrouter.global;
+
+import com.cwsoft.eventrouter.GlobalEvent;
+import com.cwsoft.eventrouter.Handler;
+import com.cwsoft.eventrouter.NamedEvent;
+import com.cwsoft.eventrouter.RemoteServiceEvent;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends a global event once, to the broadcast topic, in place of a {@link GlobalHandler} for each subscribing remote
+ * service. Each service consuming the broadcast topic picks out the events for it by their {@link BroadcastHeader}.
+ */
+@Slf4j
+@ToString
+@Getter
+@Builder
+public class BroadcastHandler implements Handler {
+    /**
+     * The remote service ID of broadcast events.
+     */
+    public static final String BROADCAST_SERVICE_ID = "*";
+
+    private final String fromServiceId;
+    private final String fromServiceSite;
+    @ToString.Exclude
+    private final GlobalEventsProducer producer; // if null the GlobalEventsProducer instance is used
+
+    @Override
+    public <E extends NamedEvent> void handle(E e) {
+        try {
+            producer().publish(toBroadcast(e));
+        } catch (Exception ex) {
+            log.error("Error broadcasting Global event {}", e, ex);
+        }
+    }
+
+    @Override
+    public void handleAll(List<? extends NamedEvent> events) {
+        List<RemoteServiceEvent> remoteServiceEvents = new ArrayList<>(events.size());
+
+        for (NamedEvent e : events) {
+            try {
+                remoteServiceEvents.add(toBroadcast(e));
+            } catch (Exception ex) {
+                log.error("Error broadcasting Global event {}", e, ex);
+            }
+        }
+
+        if (!remoteServiceEvents.isEmpty()) {
+            producer().publishAll(remoteServiceEvents);
+        }
+    }
+
+    private RemoteServiceEvent toBroadcast(NamedEvent e) {
+        GlobalEvent globalEvent = GlobalEvent.toGlobalEvent(e, fromServiceId);
+        BroadcastHeader header = new BroadcastHeader(e.getName(), fromServiceId, fromServiceSite, e.getSiteInContext(),
+                globalEvent.getDestinationServices());
+        log.trace("Broadcasting event {}", e);
+        return RemoteServiceEvent.builder()
+                .event(globalEvent)
+                .remoteServiceId(BROADCAST_SERVICE_ID)
+                .broadcastHeader(header)
+                .build();
+    }
+
+    private GlobalEventsProducer producer() {
+        return (producer != null) ? producer : GlobalEventsProducer.getInstanceOf();
+    }
+}
@@ -0,0 +1,17 @@
+package com.cwsoft.eventrouter.global;
+
+import java.util.Set;
+
+/**
+ * What a service needs to know about a broadcast event to decide whether it is for it, carried ahead of the encoded
+ * event so that it can be read without decoding the event.
+ *
+ * @param eventName           the name of the event.
+ * @param fromServiceId       the service that sent it.
+ * @param fromServiceSite     the site of the service that sent it.
+ * @param siteInContext       the site the event is for, blank for any site.
+ * @param destinationServices the services the event is for, empty for any service.
+ */
+public record BroadcastHeader(String eventName, String fromServiceId, String fromServiceSite, String siteInContext,
+                              Set<String> destinationServices) {
+}
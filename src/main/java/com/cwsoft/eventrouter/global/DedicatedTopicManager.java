@@ -0,0 +1,201 @@
+package com.cwsoft.eventrouter.global;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.EventDispatcher;
+import com.cwsoft.eventrouter.EventHandler;
+import com.cwsoft.eventrouter.NamedEvent;
+import com.cwsoft.messaging.ClosableConsumer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Promotes the global event types this service receives at a high rate to dedicated topics of their own, so that
+ * they are consumed in parallel with, and independently of, the service's other global events.
+ * <p>
+ * The {@link GlobalEventsConsumer}s report each event consumed. Every {@code checkIntervalMillis} the rate of each
+ * event type is worked out; a type received at {@code promoteRate} events a second or more is promoted: a consumer
+ * of its dedicated topic is started and the type is advertised in the service's next announcement, after which
+ * other services send events of that type to the dedicated topic (see {@link DedicatedTopicRoutes}). A dedicated
+ * type received below {@code demoteRate} for {@code demoteAfterChecks} checks in a row is demoted: it is no longer
+ * advertised, and its consumer is kept for {@code drainMillis} to consume the events already sent to the dedicated
+ * topic before it is stopped and the topic cleaned up by the {@code topicCleaner}.
+ * <p>
+ * Events of a type being promoted or demoted may be consumed out of order while both topics carry them.
+ */
+@Slf4j
+@Singleton
+@RequiredArgsConstructor
+public class DedicatedTopicManager {
+    @NonNull
+    private final String serviceId;
+    @NonNull
+    private final EventDispatcher eventDispatcher;
+    /**
+     * Creates the consumer of the topic of a remote service ID, that of a dedicated topic here
+     */
+    @NonNull
+    private final Function<String, ClosableConsumer<Event>> consumerFactory;
+
+    @Setter
+    private double promoteRate = 1000;
+    @Setter
+    private double demoteRate = 100;
+    @Setter
+    private long checkIntervalMillis = 10_000;
+    @Setter
+    private int demoteAfterChecks = 6;
+    @Setter
+    private long drainMillis = 60_000;
+    /**
+     * Deletes the topic of a remote service ID once it is no longer used, if the messaging supports it
+     */
+    @Setter
+    private Consumer<String> topicCleaner = remoteServiceId -> {};
+
+    private final Map<String, LongAdder> consumedCounts = new ConcurrentHashMap<>();
+    private final Map<String, DedicatedTopic> dedicatedTopics = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private long lastCheckNanos;
+
+    @EventHandler(name = "onStartup")
+    public synchronized void init() {
+        if (promoteRate <= demoteRate) throw new IllegalArgumentException("promoteRate must be greater than demoteRate");
+        if (scheduler != null) return;
+
+        lastCheckNanos = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dedicated-topics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @EventHandler(name = "onShutdown")
+    public synchronized void onShutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        dedicatedTopics.values().forEach(dedicatedTopic -> dedicatedTopic.consumer.stop());
+        dedicatedTopics.clear();
+    }
+
+    /**
+     * Counts an event consumed by this service.
+     */
+    public void consumed(String eventName) {
+        LongAdder count = consumedCounts.get(eventName);
+        if (count == null) count = consumedCounts.computeIfAbsent(eventName, k -> new LongAdder());
+        count.increment();
+    }
+
+    /**
+     * @return the event types with dedicated topics, to be advertised.
+     */
+    public Set<String> getDedicatedEvents() {
+        Set<String> dedicatedEvents = new TreeSet<>();
+        dedicatedTopics.forEach((eventName, dedicatedTopic) -> {
+            if (dedicatedTopic.drainingSinceNanos == 0) dedicatedEvents.add(eventName);
+        });
+        return dedicatedEvents;
+    }
+
+    synchronized void check() {
+        try {
+            long now = System.nanoTime();
+            double seconds = Math.max(0.001, (now - lastCheckNanos) / 1e9);
+            lastCheckNanos = now;
+
+            Set<String> eventNames = new HashSet<>(consumedCounts.keySet());
+            eventNames.addAll(dedicatedTopics.keySet());
+            boolean changed = false;
+
+            for (String eventName : eventNames) {
+                LongAdder count = consumedCounts.get(eventName);
+                double rate = (count == null) ? 0 : count.sumThenReset() / seconds;
+                DedicatedTopic dedicatedTopic = dedicatedTopics.get(eventName);
+
+                if (dedicatedTopic == null) {
+                    if (rate >= promoteRate) changed |= promote(eventName, rate);
+                } else if (dedicatedTopic.drainingSinceNanos != 0) {
+                    if (rate >= promoteRate) {
+                        log.info("Event type {} is back at {}/s, keeping its dedicated topic", eventName, (long) rate);
+                        dedicatedTopic.drainingSinceNanos = 0;
+                        dedicatedTopic.quietChecks = 0;
+                        changed = true;
+                    } else if (now - dedicatedTopic.drainingSinceNanos >= TimeUnit.MILLISECONDS.toNanos(drainMillis)) {
+                        remove(eventName, dedicatedTopic);
+                    }
+                } else if (rate < demoteRate) {
+                    if (++dedicatedTopic.quietChecks >= demoteAfterChecks) {
+                        log.info("Demoting event type {} from its dedicated topic, rate {}/s", eventName, (long) rate);
+                        dedicatedTopic.drainingSinceNanos = now;
+                        changed = true;
+                    }
+                } else {
+                    dedicatedTopic.quietChecks = 0;
+                }
+            }
+
+            if (changed) {
+                eventDispatcher.dispatchEvent(new NamedEvent("GlobalEventsHandledUpdated"));
+            }
+        } catch (RuntimeException e) {
+            log.error("Error checking event type rates for dedicated topics", e);
+        }
+    }
+
+    private boolean promote(String eventName, double rate) {
+        String remoteServiceId = DedicatedTopicRoutes.dedicatedRemoteServiceId(serviceId, eventName);
+        try {
+            GlobalEventsConsumer consumer = new GlobalEventsConsumer(consumerFactory.apply(remoteServiceId), eventDispatcher);
+            consumer.setDedicatedTopicManager(this);
+            consumer.init();
+            dedicatedTopics.put(eventName, new DedicatedTopic(remoteServiceId, consumer));
+            log.info("Promoted event type {} to a dedicated topic for {}, rate {}/s", eventName, remoteServiceId, (long) rate);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to start consumer of dedicated topic for {}", remoteServiceId, e);
+            return false;
+        }
+    }
+
+    private void remove(String eventName, DedicatedTopic dedicatedTopic) {
+        dedicatedTopic.consumer.stop();
+        dedicatedTopics.remove(eventName);
+        try {
+            topicCleaner.accept(dedicatedTopic.remoteServiceId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to clean up dedicated topic for {}", dedicatedTopic.remoteServiceId, e);
+        }
+        log.info("Removed dedicated topic for {}", dedicatedTopic.remoteServiceId);
+    }
+
+    private static final class DedicatedTopic {
+        private final String remoteServiceId;
+        private final GlobalEventsConsumer consumer;
+        private int quietChecks;
+        private long drainingSinceNanos; // 0 while advertised
+
+        private DedicatedTopic(String remoteServiceId, GlobalEventsConsumer consumer) {
+            this.remoteServiceId = remoteServiceId;
+            this.consumer = consumer;
+        }
+    }
+}
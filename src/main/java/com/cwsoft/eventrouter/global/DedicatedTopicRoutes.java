@@ -0,0 +1,45 @@
+package com.cwsoft.eventrouter.global;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The event types remote services have promoted to dedicated topics, as advertised in their announcements, used by
+ * {@link GlobalHandler}s to send events of those types to the dedicated topic.
+ * <p>
+ * An event for a dedicated topic is sent with the remote service ID {@code <serviceId>_<eventType>}, so it goes to
+ * the topic {@code events_for_service_<serviceId>_<eventType>} rather than {@code events_for_service_<serviceId>}.
+ */
+public class DedicatedTopicRoutes {
+    private final Map<String, Set<String>> dedicatedEventsByService = new ConcurrentHashMap<>();
+
+    /**
+     * @return the remote service ID to send an event of the given type for the service to.
+     */
+    public String remoteServiceIdFor(String serviceId, String eventName) {
+        Set<String> dedicatedEvents = dedicatedEventsByService.get(serviceId);
+        return (dedicatedEvents != null && dedicatedEvents.contains(eventName))
+                ? dedicatedRemoteServiceId(serviceId, eventName)
+                : serviceId;
+    }
+
+    /**
+     * Sets the event types the service has dedicated topics for.
+     */
+    public void update(String serviceId, Collection<String> dedicatedEvents) {
+        if (dedicatedEvents == null || dedicatedEvents.isEmpty()) {
+            dedicatedEventsByService.remove(serviceId);
+        } else {
+            dedicatedEventsByService.put(serviceId, Set.copyOf(dedicatedEvents));
+        }
+    }
+
+    /**
+     * @return the remote service ID of the dedicated topic of an event type of a service.
+     */
+    public static String dedicatedRemoteServiceId(String serviceId, String eventName) {
+        return serviceId + "_" + eventName;
+    }
+}
@@ -0,0 +1,125 @@
+package com.cwsoft.eventrouter.global;
+
+import lombok.Builder;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Bounded window of the IDs of recently consumed global events, used by {@link GlobalEventsConsumer} to drop events
+ * delivered more than once, e.g. after a broker rebalance or a retry by the producer.
+ * <p>
+ * The window is split into {@code buckets} time buckets, each an open addressing hash set of up to
+ * {@code idsPerBucket} IDs held as primitive longs. IDs are added to the newest bucket; once it has been the newest for
+ * {@code window / buckets}, or is full, the oldest bucket is cleared and becomes the newest. An ID is remembered for at
+ * least {@code window} unless more than {@code (buckets - 1) * idsPerBucket} events arrive within it, so memory is
+ * fixed at about {@code 16 * buckets * idsPerBucket} bytes and checking an ID costs a probe of each bucket.
+ * <p>
+ * Not thread safe, each consumer has a window of its own.
+ */
+public class DuplicateWindow {
+    public static final Duration DEFAULT_WINDOW = Duration.ofMinutes(2);
+    public static final int DEFAULT_BUCKETS = 4;
+    public static final int DEFAULT_IDS_PER_BUCKET = 32_768;
+
+    private final long bucketNanos;
+    private final int idsPerBucket;
+    private final long[][] tables; // per bucket, the IDs by hash, 0 for an empty slot
+    private final int[] sizes;
+    private final int shift;
+    private int newest;
+    private long newestSinceNanos;
+
+    @Builder
+    private DuplicateWindow(Duration window, Integer buckets, Integer idsPerBucket) {
+        long windowNanos = (window == null) ? DEFAULT_WINDOW.toNanos() : window.toNanos();
+        int bucketCount = (buckets == null) ? DEFAULT_BUCKETS : buckets;
+        this.idsPerBucket = (idsPerBucket == null) ? DEFAULT_IDS_PER_BUCKET : idsPerBucket;
+
+        if (windowNanos <= 0) throw new IllegalArgumentException("window must be positive");
+        if (bucketCount < 2) throw new IllegalArgumentException("buckets must be at least 2");
+        if (this.idsPerBucket < 1 || this.idsPerBucket > (1 << 29))
+            throw new IllegalArgumentException("idsPerBucket must be between 1 and " + (1 << 29));
+
+        // tables at most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(this.idsPerBucket * 2 - 1) << 1;
+        this.bucketNanos = windowNanos / bucketCount;
+        this.tables = new long[bucketCount][capacity];
+        this.sizes = new int[bucketCount];
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        this.newestSinceNanos = System.nanoTime();
+    }
+
+    public static DuplicateWindow create() {
+        return builder().build();
+    }
+
+    /**
+     * Records the ID of a consumed event.
+     *
+     * @param eventId the event ID, 0 if the event has none, in which case it is never taken as a duplicate.
+     * @return true if the ID is already in the window, i.e. the event is a duplicate.
+     */
+    public boolean seen(long eventId) {
+        if (eventId == 0) return false;
+
+        long now = System.nanoTime();
+        long elapsedBuckets = (now - newestSinceNanos) / bucketNanos;
+        if (elapsedBuckets > 0) {
+            for (int i = 0; i < Math.min(elapsedBuckets, tables.length); i++) {
+                rotate();
+            }
+            newestSinceNanos = now;
+        }
+
+        int hash = hash(eventId);
+        for (long[] table : tables) {
+            if (contains(table, eventId, hash)) return true;
+        }
+
+        if (sizes[newest] >= idsPerBucket) {
+            rotate();
+            newestSinceNanos = now;
+        }
+        add(tables[newest], eventId, hash);
+        sizes[newest]++;
+        return false;
+    }
+
+    /**
+     * @return the number of IDs currently in the window.
+     */
+    public int size() {
+        return Arrays.stream(sizes).sum();
+    }
+
+    private void rotate() {
+        newest = (newest + 1) % tables.length;
+        if (sizes[newest] > 0) {
+            Arrays.fill(tables[newest], 0);
+            sizes[newest] = 0;
+        }
+    }
+
+    private int hash(long eventId) {
+        return (int) ((eventId * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private static boolean contains(long[] table, long eventId, int hash) {
+        int mask = table.length - 1;
+        for (int i = hash; ; i = (i + 1) & mask) {
+            long slot = table[i];
+            if (slot == eventId) return true;
+            if (slot == 0) return false;
+        }
+    }
+
+    private static void add(long[] table, long eventId, int hash) {
+        int mask = table.length - 1;
+        int i = hash;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = eventId;
+    }
+}
@@ -3,8 +3,15 @@ package com.cwsoft.eventrouter.global;
 import com.cwsoft.eventrouter.Event;
 import com.cwsoft.eventrouter.EventDispatcher;
 import com.cwsoft.eventrouter.EventHandler;
+import com.cwsoft.eventrouter.GlobalEvent;
+import com.cwsoft.eventrouter.TraceContext;
+import com.cwsoft.eventrouter.jfr.ConsumeJfrEvent;
+import com.cwsoft.eventrouter.metrics.GlobalConsumerMetrics;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
+import com.cwsoft.eventrouter.metrics.TraceMetrics;
 import com.cwsoft.messaging.ClosableConsumer;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Singleton;
@@ -16,6 +23,11 @@ import java.util.concurrent.Executors;
  * Consumes global event messages for events that occurred in remote services and dispatches them
  * locally to the handler which will have been annotated with @EventHandler(name = "someName", access = Access.GLOBAL).
  * The topic consumed from is named "events.dispatch.events_for_service_" + forServiceId.replace(" ", "_");
+ * The priority of a global event travels in its encoded form, so consumed events are queued on the matching
+ * priority lane of each local handler.
+ * <p>
+ * Events delivered more than once, e.g. after a broker rebalance or a retry by the producer, are recognised by their
+ * event ID in the {@link DuplicateWindow} and dropped before they are dispatched.
  */
 @Slf4j
 @Singleton
@@ -27,22 +39,54 @@ public class GlobalEventsConsumer {
 
     private final Duration consumeTimeout = Duration.ofSeconds(5); // Configurable timeout
     private final int initialBackoff = 1000; // Configurable backoff (in ms)
+    private final GlobalConsumerMetrics metrics = RouterMetrics.getInstance().getConsumer();
+    private final TraceMetrics traceMetrics = RouterMetrics.getInstance().getTrace();
+
+    /**
+     * Told of each event consumed, to measure the rates of event types, if set
+     */
+    @Setter
+    private DedicatedTopicManager dedicatedTopicManager;
+
+    /**
+     * The IDs of the events recently consumed, to drop duplicates, or null to dispatch every event consumed
+     */
+    @Setter
+    private DuplicateWindow duplicateWindow = DuplicateWindow.create();
+
+    private ExecutorService executorService;
+    private Thread shutdownHook;
 
     @EventHandler(name = "onStartup")
     public void init() {
         startConsumerThread();
     }
 
-    private void startConsumerThread() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                consumer.close();
-            } catch (Exception e) {
-                log.warn("Error while closing consumer", e);
-            }
-            executorService.shutdownNow();
-        }));
+    /**
+     * Stops consuming: closes the consumer and interrupts the consumer thread.
+     */
+    public synchronized void stop() {
+        if (executorService == null) return;
+
+        try {
+            consumer.close();
+        } catch (Exception e) {
+            log.warn("Error while closing consumer", e);
+        }
+        executorService.shutdownNow();
+        executorService = null;
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // stopping from the hook, as the JVM shuts down
+        }
+    }
+
+    private synchronized void startConsumerThread() {
+        executorService = Executors.newSingleThreadExecutor();
+        shutdownHook = new Thread(this::stop);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
         executorService.submit(this::runConsumer);
     }
 
@@ -57,15 +101,41 @@ public class GlobalEventsConsumer {
             try {
                 consumer.consume(consumeTimeout)
                         .ifPresent(event -> {
+                            if (isDuplicate(event)) {
+                                metrics.duplicateDropped();
+                                return;
+                            }
+
+                            TraceContext trace = event.getTrace();
+                            if (trace != null) {
+                                trace.markConsumed();
+                                if (trace.getProducedMicros() > 0) {
+                                    traceMetrics.consumed((trace.getConsumedMicros() - trace.getProducedMicros()) * 1_000);
+                                }
+                            }
+
+                            ConsumeJfrEvent jfrEvent = new ConsumeJfrEvent();
+                            jfrEvent.begin();
                             try {
+                                long startNanos = System.nanoTime();
                                 eventDispatcher.dispatchGlobalEventLocally(event);
+                                metrics.consumed(System.nanoTime() - startNanos);
+                                if (dedicatedTopicManager != null) dedicatedTopicManager.consumed(event.getName());
+
+                                if (jfrEvent.shouldCommit()) {
+                                    jfrEvent.eventName = event.getName();
+                                    jfrEvent.fromService = (event instanceof GlobalEvent) ? ((GlobalEvent<?>) event).getFromServiceId() : null;
+                                    jfrEvent.commit();
+                                }
                                 backoff[0] = initialBackoff; // Reset backoff on success
                             } catch (Exception dispatchError) {
                                 log.error("Error dispatching event {}", event, dispatchError);
+                                metrics.dispatchFailed();
                             }
                         });
             } catch (Exception e) {
                 log.error("Error consuming event, backing off for {}ms", backoff[0], e);
+                metrics.consumeFailed();
                 try {
                     Thread.sleep(backoff[0]);
                     backoff[0] = Math.min(maxBackoff, backoff[0] * 2); // Double the backoff time
@@ -78,4 +148,15 @@ public class GlobalEventsConsumer {
 
         log.info("runConsumer finishing");
     }
+
+    private boolean isDuplicate(Event event) {
+        if (duplicateWindow == null || !(event instanceof GlobalEvent)) return false;
+
+        GlobalEvent<?> globalEvent = (GlobalEvent<?>) event;
+        if (!duplicateWindow.seen(globalEvent.getEventId())) return false;
+
+        log.debug("Dropping duplicate {} event {} from {}", event.getName(),
+                Long.toHexString(globalEvent.getEventId()), globalEvent.getFromServiceId());
+        return true;
+    }
 }
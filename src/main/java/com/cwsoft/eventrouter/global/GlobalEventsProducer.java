@@ -1,29 +1,46 @@
 package com.cwsoft.eventrouter.global;
 
 import com.cwsoft.eventrouter.EventHandler;
+import com.cwsoft.eventrouter.PriorityLanes;
 import com.cwsoft.eventrouter.RemoteServiceEvent;
+import com.cwsoft.eventrouter.TraceContext;
+import com.cwsoft.eventrouter.jfr.PublishJfrEvent;
+import com.cwsoft.eventrouter.metrics.GlobalProducerMetrics;
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
 import com.cwsoft.messaging.Producer;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Singleton;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * Provides ability to publish global events for remote services. Handles retries for events marked as retryable
- * when the messaging system is temporarily unavailable.
+ * when the messaging system is temporarily unavailable. Queued retries are sent in priority order so that
+ * higher priority events are delivered first once messaging becomes available again.
+ * <p>
+ * Broadcast events, for which {@link RemoteServiceEvent#isBroadcast()} is true, are sent by the broadcast producer
+ * encoded as a {@link BroadcastEnvelope}, and are dropped while none is set.
  */
 @Slf4j
 @Singleton
 @RequiredArgsConstructor
 public class GlobalEventsProducer {
+    private static final int RETRY_QUEUE_CAPACITY = 500_000; // events, across all the priority lanes
 
     private final Producer<RemoteServiceEvent> producer;
-    private final BlockingQueue<RemoteServiceEvent> retryableQueue = new ArrayBlockingQueue<>(500_000);
+
+    /**
+     * Producer to {@value BroadcastEnvelope#TOPIC} of broadcast events, null if broadcasting isn't configured
+     */
+    @Setter
+    private volatile Producer<String> broadcastProducer;
+    private final PriorityLanes<RemoteServiceEvent> retryableQueue = PriorityLanes.withTotalCapacity(RETRY_QUEUE_CAPACITY);
+    private final GlobalProducerMetrics metrics = RouterMetrics.getInstance().getProducer();
 
     private volatile boolean messagingAvailable = true;
     private static final int RETRY_DELAY_MS = 5000;
@@ -34,18 +51,27 @@ public class GlobalEventsProducer {
     @EventHandler(name = "onStartup")
     public void init() {
         instanceOf = this;
+        metrics.setRetryQueueSize(retryableQueue::approximateSize);
         startProducer();
     }
 
+    /**
+     * @return true if a broadcast producer is set, so that broadcast events can be published.
+     */
+    public boolean canBroadcast() {
+        return broadcastProducer != null;
+    }
+
     public void publish(RemoteServiceEvent event) {
         try {
             if (!event.isRetryable() && !messagingAvailable) {
                 log.warn("Dropping non-retryable event as messaging is unavailable: {}", event);
+                metrics.dropped();
                 return;
             }
 
             if (!messagingAvailable) {
-                retryableQueue.put(event);
+                retryableQueue.put(event, event.getPriority());
             } else {
                 sendEvent(event);
             }
@@ -55,6 +81,40 @@ public class GlobalEventsProducer {
         }
     }
 
+    /**
+     * Publishes a batch of events. Availability of messaging is checked once for the batch and, should sending
+     * fail part way through, the remaining retryable events are queued for retry rather than each being attempted.
+     *
+     * @param events the events to publish, in order.
+     */
+    public void publishAll(List<RemoteServiceEvent> events) {
+        int sent = 0;
+
+        if (messagingAvailable) {
+            for (RemoteServiceEvent event : events) {
+                sendEvent(event);
+                sent++;
+                if (!messagingAvailable) break;
+            }
+        }
+
+        for (RemoteServiceEvent event : events.subList(sent, events.size())) {
+            if (!event.isRetryable()) {
+                log.warn("Dropping non-retryable event as messaging is unavailable: {}", event);
+                metrics.dropped();
+                continue;
+            }
+
+            try {
+                retryableQueue.put(event, event.getPriority());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while adding event to the retryable queue: {}", event, e);
+                return;
+            }
+        }
+    }
+
     private void startProducer() {
         ExecutorService executorService = Executors.newSingleThreadExecutor();
         Runtime.getRuntime().addShutdownHook(new Thread(executorService::shutdownNow));
@@ -72,9 +132,10 @@ public class GlobalEventsProducer {
                 if (!isMessagingAvailable()) {
                     log.warn("Messaging system unavailable, re-queueing event: {}", event);
                     Thread.sleep(RETRY_DELAY_MS);
-                    retryableQueue.put(event); // Re-queue the event for later retry.
+                    retryableQueue.put(event, event.getPriority()); // Re-queue the event for later retry.
                 } else {
-                    sendEvent(event);
+                    metrics.retried();
+                    sendEvent(event, true);
                 }
 
             } catch (InterruptedException e) {
@@ -87,16 +148,50 @@ public class GlobalEventsProducer {
     }
 
     private void sendEvent(RemoteServiceEvent event) {
+        sendEvent(event, false);
+    }
+
+    private void sendEvent(RemoteServiceEvent event, boolean retry) {
+        PublishJfrEvent jfrEvent = new PublishJfrEvent();
+        jfrEvent.begin();
+        boolean success = false;
+
         try {
-            producer.produce(event);
+            TraceContext trace = event.getEvent().getTrace();
+            if (trace != null) trace.markProduced();
+
+            long startNanos = System.nanoTime();
+            if (event.isBroadcast()) {
+                Producer<String> broadcast = broadcastProducer;
+                if (broadcast == null) {
+                    log.error("Dropping broadcast event as no broadcast producer is set: {}", event);
+                    metrics.dropped();
+                    return;
+                }
+                broadcast.produce(BroadcastEnvelope.encode(event));
+            } else {
+                producer.produce(event);
+            }
+            metrics.sent(System.nanoTime() - startNanos);
             messagingAvailable = true; // Mark as available on success.
+            success = true;
         } catch (Exception e) {
             log.error("Failed to send event, marking messaging as unavailable: {}", event, e);
+            metrics.failed();
             messagingAvailable = false;
             if (event.isRetryable()) {
-                retryableQueue.offer(event);
+                retryableQueue.offer(event, event.getPriority());
             }
         }
+
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.eventName = event.getEvent().getName();
+            jfrEvent.remoteService = event.getRemoteServiceId();
+            jfrEvent.retry = retry;
+            jfrEvent.queueDepth = retryableQueue.approximateSize();
+            jfrEvent.success = success;
+            jfrEvent.commit();
+        }
     }
 
     private boolean isMessagingAvailable() {
@@ -10,6 +10,9 @@ import lombok.Getter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 @EqualsAndHashCode (of = {"fromServiceId","toServiceId"})
 @ToString
@@ -19,6 +22,10 @@ public class GlobalHandler implements RemoteHandler {
     private final String fromServiceId; //  ServerId (UUID as string) or Service Name
     private final String toServiceId;  // ServerId (UUID as string) or Service Name
     private final String remoteServicesSite;
+    @ToString.Exclude
+    private final GlobalEventsProducer producer; // if null the GlobalEventsProducer instance is used
+    @ToString.Exclude
+    private final DedicatedTopicRoutes dedicatedTopicRoutes; // if null events are always sent to the service's topic
 
     @Override
     public <E extends NamedEvent> void handle(E e) {
@@ -28,15 +35,45 @@ public class GlobalHandler implements RemoteHandler {
 
             // note added this check for when we have a "targeted" service event i.e. an event is to be sent to specific service(s).
             if (globalEvent.getDestinationServices().isEmpty() || globalEvent.getDestinationServices().contains(toServiceId)) {
-                RemoteServiceEvent remoteServiceEvent = RemoteServiceEvent.builder().event(globalEvent).remoteServiceId(toServiceId).build();
+                RemoteServiceEvent remoteServiceEvent = RemoteServiceEvent.builder().event(globalEvent).remoteServiceId(remoteServiceIdFor(e)).build();
                 log.trace("Global handler {} dispatching event {} using GlobalEventsProducer", this, e);
-                GlobalEventsProducer.getInstanceOf().publish(remoteServiceEvent);
+                producer().publish(remoteServiceEvent);
             }
         } catch (Exception ex) {
             log.error("Error handling Global event {}", e, ex);
         }
     }
 
+    @Override
+    public void handleAll(List<? extends NamedEvent> events) {
+        List<RemoteServiceEvent> remoteServiceEvents = new ArrayList<>(events.size());
+
+        for (NamedEvent e : events) {
+            try {
+                GlobalEvent globalEvent = GlobalEvent.toGlobalEvent(e, fromServiceId);
+
+                if (globalEvent.getDestinationServices().isEmpty() || globalEvent.getDestinationServices().contains(toServiceId)) {
+                    remoteServiceEvents.add(RemoteServiceEvent.builder().event(globalEvent).remoteServiceId(remoteServiceIdFor(e)).build());
+                }
+            } catch (Exception ex) {
+                log.error("Error handling Global event {}", e, ex);
+            }
+        }
+
+        if (!remoteServiceEvents.isEmpty()) {
+            log.trace("Global handler {} dispatching {} events using GlobalEventsProducer", this, remoteServiceEvents.size());
+            producer().publishAll(remoteServiceEvents);
+        }
+    }
+
+    private String remoteServiceIdFor(NamedEvent e) {
+        return (dedicatedTopicRoutes != null) ? dedicatedTopicRoutes.remoteServiceIdFor(toServiceId, e.getName()) : toServiceId;
+    }
+
+    private GlobalEventsProducer producer() {
+        return (producer != null) ? producer : GlobalEventsProducer.getInstanceOf();
+    }
+
     @Override
     public String getRemoteService() {
         return toServiceId;
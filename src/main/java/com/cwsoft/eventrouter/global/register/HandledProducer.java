@@ -2,25 +2,38 @@ package com.cwsoft.eventrouter.global.register;
 
 import com.cwsoft.eventrouter.EventHandler;
 import com.cwsoft.eventrouter.EventHandlers;
+import com.cwsoft.eventrouter.global.DedicatedTopicManager;
 import com.cwsoft.eventrouter.global.register.data.EventsHandledByService;
 import com.cwsoft.messaging.Producer;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Singleton;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Produces message about global events handled by this service,
  * intended to inform other services about this service's event-handling capabilities.
+ * <p>
+ * Updates are debounced: all the changes within {@code debounceMillis} of the first are announced together. Each
+ * announcement carries the epoch of this instance and an increasing version. When {@code deltas} is enabled only the
+ * added and removed events are announced, with a full announcement every {@code fullAnnouncementIntervalMillis} and
+ * after any failure to produce, so that other services converge. Deltas are off by default as services that don't
+ * understand them would take a delta to be the full set of events.
  */
 @Slf4j
 @Singleton
 @RequiredArgsConstructor
 public class HandledProducer {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+    public static final long DEFAULT_FULL_ANNOUNCEMENT_INTERVAL_MILLIS = 300_000;
 
     @NonNull
     private final Producer<EventsHandledByService> producer;
@@ -31,6 +44,23 @@ public class HandledProducer {
     @NonNull
     private final String serviceSiteName;
 
+    @Setter
+    private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+    @Setter
+    private boolean deltas = false;
+    @Setter
+    private long fullAnnouncementIntervalMillis = DEFAULT_FULL_ANNOUNCEMENT_INTERVAL_MILLIS;
+    @Setter
+    private String host; // advertised when this service accepts global events over shared memory, otherwise null
+    @Setter
+    private DedicatedTopicManager dedicatedTopicManager; // advertises the events with dedicated topics, if set
+
+    private final long epoch = System.currentTimeMillis();
+    private long version = 0;
+    private Set<String> lastAnnouncedEvents; // the events as of the last announcement produced, null if none
+    private Set<String> lastAnnouncedDedicatedEvents = Set.of();
+    private boolean announcementScheduled = false;
+
     private volatile EventsHandledByService latestData;
 
     private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor();
@@ -50,8 +80,13 @@ public class HandledProducer {
         }
 
         log.info("Initializing HandledProducer...");
-        produceGlobalEventsHandledByThisService();
+        announce(true);
         scheduleRetryTask();
+
+        if (deltas) {
+            retryExecutor.scheduleWithFixedDelay(() -> announce(true),
+                    fullAnnouncementIntervalMillis, fullAnnouncementIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @EventHandler(name = "onShutdown")
@@ -69,31 +104,103 @@ public class HandledProducer {
         }
     }
 
+    /**
+     * Schedules an announcement of the global events handled by this service, unless one is already scheduled, in
+     * which case the changes are announced together.
+     */
     @EventHandler(name = "GlobalEventsHandledUpdated")
-    public void produceGlobalEventsHandledByThisService() {
-        latestData = createGlobalEventsHandled();
-        attemptProduce();
+    public synchronized void produceGlobalEventsHandledByThisService() {
+        if (announcementScheduled) return;
+
+        announcementScheduled = true;
+        try {
+            retryExecutor.schedule(() -> announce(false), debounceMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            announcementScheduled = false;
+            log.warn("Not announcing global events handled, HandledProducer has been shut down");
+        }
     }
 
-    private EventsHandledByService createGlobalEventsHandled() {
-        return EventsHandledByService.builder()
-                .serviceId(serviceId)
-                .serviceSite(serviceSiteName)
-                .handledEvents(eventHandlers.getGlobalEventsHandled())
-                .build();
+    private synchronized void announce(boolean full) {
+        announcementScheduled = false;
+        Set<String> events = new LinkedHashSet<>(eventHandlers.getGlobalEventsHandled());
+        Set<String> dedicatedEvents = (dedicatedTopicManager == null) ? Set.of() : dedicatedTopicManager.getDedicatedEvents();
+        boolean dedicatedChanged = !dedicatedEvents.equals(lastAnnouncedDedicatedEvents);
+
+        // a delta is only sent on top of an announcement known to have been produced
+        boolean sendDelta = deltas && !full && lastAnnouncedEvents != null && latestData == null;
+
+        if (sendDelta) {
+            Set<String> addedEvents = new LinkedHashSet<>(events);
+            addedEvents.removeAll(lastAnnouncedEvents);
+            Set<String> removedEvents = new LinkedHashSet<>(lastAnnouncedEvents);
+            removedEvents.removeAll(events);
+
+            if (addedEvents.isEmpty() && removedEvents.isEmpty() && !dedicatedChanged) {
+                log.trace("No change to global events handled, nothing to announce");
+                return;
+            }
+
+            latestData = EventsHandledByService.builder()
+                    .serviceId(serviceId)
+                    .serviceSite(serviceSiteName)
+                    .host(host)
+                    .dedicatedEvents(dedicatedEvents)
+                    .epoch(epoch)
+                    .version(version + 1)
+                    .delta(true)
+                    .baseVersion(version)
+                    .addedEvents(addedEvents)
+                    .removedEvents(removedEvents)
+                    .build();
+        } else {
+            latestData = EventsHandledByService.builder()
+                    .serviceId(serviceId)
+                    .serviceSite(serviceSiteName)
+                    .host(host)
+                    .dedicatedEvents(dedicatedEvents)
+                    .handledEvents(events)
+                    .epoch(epoch)
+                    .version(version + 1)
+                    .build();
+        }
+
+        version++;
+        lastAnnouncedEvents = events;
+        lastAnnouncedDedicatedEvents = dedicatedEvents;
+        attemptProduce();
     }
 
-    private void attemptProduce() {
+    private synchronized void attemptProduce() {
         if (latestData == null) {
             return; // Nothing to send
         }
         try {
             producer.produce(latestData);
-            log.info("Successfully produced global events handled by this service.");
+            log.info("Successfully produced global events handled by this service, version {}{}", latestData.getVersion(),
+                    latestData.isDelta() ? " (delta)" : "");
             latestData = null; // Clear the data after successful send
             currentRetryIntervalMs = INITIAL_RETRY_INTERVAL_MS; // Reset retry interval on success
         } catch (Exception e) {
             log.warn("Failed to produce message, will retry later. Error: {}", e.getMessage());
+            toFullAnnouncement();
+        }
+    }
+
+    /*
+     * a delta that failed to be produced is replaced by a full announcement, as other services may have missed it.
+     */
+    private void toFullAnnouncement() {
+        if (latestData != null && latestData.isDelta()) {
+            latestData = EventsHandledByService.builder()
+                    .serviceId(serviceId)
+                    .serviceSite(serviceSiteName)
+                    .host(host)
+                    .dedicatedEvents(lastAnnouncedDedicatedEvents)
+                    .handledEvents(lastAnnouncedEvents)
+                    .epoch(epoch)
+                    .version(latestData.getVersion())
+                    .build();
         }
     }
 
@@ -106,7 +213,7 @@ public class HandledProducer {
         }, INITIAL_RETRY_INTERVAL_MS, INITIAL_RETRY_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
-    private void attemptProduceWithExponentialBackoff() {
+    private synchronized void attemptProduceWithExponentialBackoff() {
         if (latestData == null) {
             return; // Nothing to retry
         }
@@ -118,6 +225,7 @@ public class HandledProducer {
             currentRetryIntervalMs = INITIAL_RETRY_INTERVAL_MS; // Reset retry interval on success
         } catch (Exception e) {
             log.warn("Retry failed: {}", e.getMessage());
+            toFullAnnouncement();
             increaseRetryInterval();
         }
     }
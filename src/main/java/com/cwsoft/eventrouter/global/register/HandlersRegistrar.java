@@ -2,14 +2,20 @@ package com.cwsoft.eventrouter.global.register;
 
 import com.cwsoft.eventrouter.EventHandler;
 import com.cwsoft.eventrouter.EventHandlers;
+import com.cwsoft.eventrouter.RegistryTransaction;
 import com.cwsoft.eventrouter.RemoteHandler;
+import com.cwsoft.eventrouter.global.BroadcastHandler;
+import com.cwsoft.eventrouter.global.DedicatedTopicRoutes;
+import com.cwsoft.eventrouter.global.GlobalEventsProducer;
 import com.cwsoft.eventrouter.global.GlobalHandler;
 import com.cwsoft.eventrouter.global.register.data.EventsHandledByRemoteServices;
 import com.cwsoft.eventrouter.global.register.data.EventsHandledByService;
 import com.cwsoft.eventrouter.global.register.persistence.RemoteServiceHandledEventsStore;
 import com.cwsoft.messaging.Stream;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Singleton;
@@ -25,6 +31,9 @@ import java.util.Set;
  * - Listen for a service registration event to initialize the service's site name.
  * - Register initial event handlers for remote services based on saved state.
  * - Dynamically update handlers when changes are detected in the events handled by remote services.
+ * <p>
+ * Announcements may be deltas of the events added and removed, which are applied on top of the announcement they are
+ * based on. Out of date announcements, and deltas that don't apply, are ignored until the next full announcement.
  */
 @Slf4j
 @Singleton
@@ -61,6 +70,32 @@ public class HandlersRegistrar {
     @NonNull
     private final String serviceSiteName;
 
+    /**
+     * The producer used by the global handlers registered for remote services, if null the GlobalEventsProducer
+     * instance is used
+     */
+    @Setter
+    private GlobalEventsProducer globalEventsProducer;
+
+    /**
+     * The number of subscribing remote services from which a global event is sent once to the broadcast topic rather
+     * than to each service, 0 to never broadcast. Only to be set once all services consume the broadcast topic, and
+     * ignored unless the {@link GlobalEventsProducer} has a broadcast producer.
+     */
+    @Setter
+    private int broadcastThreshold = 0;
+
+    /**
+     * The event types remote services consume from dedicated topics, followed by the global handlers
+     */
+    @Getter
+    private final DedicatedTopicRoutes dedicatedTopicRoutes = new DedicatedTopicRoutes();
+
+    /**
+     * The events handled by remote services as currently known
+     */
+    private volatile EventsHandledByRemoteServices remoteServices = new EventsHandledByRemoteServices();
+
     /**
      * Flag to indicate if the stream is active
      */
@@ -81,6 +116,18 @@ public class HandlersRegistrar {
         }
 
         log.info("Initializing HandlersRegistrar...");
+        GlobalEventsProducer producer = (globalEventsProducer == null) ? GlobalEventsProducer.getInstanceOf() : globalEventsProducer;
+        if (broadcastThreshold > 0 && (producer == null || !producer.canBroadcast())) {
+            log.warn("Not broadcasting global events as the GlobalEventsProducer has no broadcast producer, " +
+                    "sending them to each remote service instead");
+        } else if (broadcastThreshold > 0) {
+            log.info("Broadcasting global events with {} or more remote subscribers", broadcastThreshold);
+            eventHandlers.setBroadcast(BroadcastHandler.builder()
+                    .fromServiceId(serviceId)
+                    .fromServiceSite(serviceSiteName)
+                    .producer(globalEventsProducer)
+                    .build(), broadcastThreshold);
+        }
         startHandledByRemoteServicesConsumer();
     }
 
@@ -99,6 +146,7 @@ public class HandlersRegistrar {
 
         // Fetch the current state of event handlers from the store
         EventsHandledByRemoteServices currentEventsHandledByRemoteServices = handledEventsStore.fetch();
+        remoteServices = currentEventsHandledByRemoteServices;
 
         // Register handlers based on the saved state
         registerHandlers(currentEventsHandledByRemoteServices);
@@ -109,9 +157,17 @@ public class HandlersRegistrar {
                     try {
                         var currentRemoteServiceHandledEvents = currentEventsHandledByRemoteServices
                                 .get(remoteServiceId, remoteServiceHandledEvents.getServiceSite());
-                        updateHandlersForService(currentRemoteServiceHandledEvents, remoteServiceHandledEvents);
-                        currentEventsHandledByRemoteServices.put(remoteServiceHandledEvents);
-                        handledEventsStore.save(currentEventsHandledByRemoteServices);
+                        var newRemoteServiceHandledEvents = remoteServiceHandledEvents.applyTo(currentRemoteServiceHandledEvents);
+                        if (newRemoteServiceHandledEvents == null) {
+                            log.debug("Ignoring out of date or unapplicable announcement version {} (delta {}) from remoteServiceId {}, current version is {}",
+                                    remoteServiceHandledEvents.getVersion(), remoteServiceHandledEvents.isDelta(), remoteServiceId,
+                                    currentRemoteServiceHandledEvents.getVersion());
+                            return;
+                        }
+                        dedicatedTopicRoutes.update(remoteServiceId, newRemoteServiceHandledEvents.getDedicatedEvents());
+                        updateHandlersForService(currentRemoteServiceHandledEvents, newRemoteServiceHandledEvents);
+                        currentEventsHandledByRemoteServices.put(newRemoteServiceHandledEvents);
+                        handledEventsStore.saveChanged(currentEventsHandledByRemoteServices, newRemoteServiceHandledEvents);
                     } catch (Exception e) {
                         log.error("Error processing events for remoteServiceId {}", remoteServiceId, e);
                         stopStreamWithError(e);
@@ -147,6 +203,15 @@ public class HandlersRegistrar {
         }
     }
 
+    /**
+     * @return the host advertised by the remote service, or null if it isn't known or the service doesn't accept
+     * events over shared memory.
+     */
+    public String getRemoteServiceHost(String remoteServiceId) {
+        EventsHandledByService remoteService = remoteServices.find(remoteServiceId);
+        return (remoteService == null) ? null : remoteService.getHost();
+    }
+
     private static final int MAX_RESTART_ATTEMPTS = 5;
     private int restartAttempts = 0;
 
@@ -188,26 +253,32 @@ public class HandlersRegistrar {
     }
 
     /**
-     * Registers initial event handlers for remote services based on the saved state.
+     * Registers initial event handlers for remote services based on the saved state, as a single registry change.
      *
      * @param currentEventsHandledByRemoteServices the current state of events handled by remote services
      */
     private void registerHandlers(EventsHandledByRemoteServices currentEventsHandledByRemoteServices) {
+        RegistryTransaction transaction = new RegistryTransaction();
+
         currentEventsHandledByRemoteServices.forEach(remoteServiceHandledEvents -> {
-            remoteServiceHandledEvents.getHandledEvents()
-                    .forEach(event -> eventHandlers.add(
-                            event,
-                            GlobalHandler.builder()
-                                    .fromServiceId(serviceId)
-                                    .toServiceId(remoteServiceHandledEvents.getServiceId())
-                                    .remoteServicesSite(remoteServiceHandledEvents.getServiceSite())
-                                    .build()
-                    ));
+            dedicatedTopicRoutes.update(remoteServiceHandledEvents.getServiceId(), remoteServiceHandledEvents.getDedicatedEvents());
+            GlobalHandler globalHandler = GlobalHandler.builder()
+                    .fromServiceId(serviceId)
+                    .toServiceId(remoteServiceHandledEvents.getServiceId())
+                    .remoteServicesSite(remoteServiceHandledEvents.getServiceSite())
+                    .producer(globalEventsProducer)
+                    .dedicatedTopicRoutes(dedicatedTopicRoutes)
+                    .build();
+            remoteServiceHandledEvents.getHandledEvents().forEach(event -> transaction.add(event, globalHandler));
         });
+
+        long version = eventHandlers.apply(transaction);
+        log.debug("Registered {} remote service handlers, registry version is {}", transaction.size(), version);
     }
 
     /**
-     * Updates the event handlers for a specific remote service by comparing new and existing events.
+     * Updates the event handlers for a specific remote service by comparing new and existing events. The additions and
+     * removals are applied to the registry as a single change.
      *
      * @param currentEventsHandled the current set of events handled by the remote service
      * @param newEventsHandled     the updated set of events handled by the remote service
@@ -234,30 +305,32 @@ public class HandlersRegistrar {
             Set<String> deletedEvents = new HashSet<>(currentEventsHandled.getHandledEvents());
             deletedEvents.removeAll(newEventsHandled.getHandledEvents());
 
+            GlobalHandler globalHandler = GlobalHandler.builder()
+                    .fromServiceId(serviceId)
+                    .toServiceId(remoteServiceId)
+                    .remoteServicesSite(remoteSiteName)
+                    .producer(globalEventsProducer)
+                    .dedicatedTopicRoutes(dedicatedTopicRoutes)
+                    .build();
+
+            RegistryTransaction transaction = new RegistryTransaction();
+
             // Add new events to the handlers
             if (!addedEvents.isEmpty()) {
                 log.trace("Adding the following events: {}", addedEvents);
-                addedEvents.forEach(event -> eventHandlers.add(
-                        event,
-                        GlobalHandler.builder()
-                                .fromServiceId(serviceId)
-                                .toServiceId(remoteServiceId)
-                                .remoteServicesSite(remoteSiteName)
-                                .build()
-                ));
+                addedEvents.forEach(event -> transaction.add(event, globalHandler));
             }
 
             // Remove deleted events from the handlers
             if (!deletedEvents.isEmpty()) {
                 log.trace("Removing the following events: {}", deletedEvents);
-                deletedEvents.forEach(event -> eventHandlers.remove(
-                        event,
-                        GlobalHandler.builder()
-                                .fromServiceId(serviceId)
-                                .toServiceId(remoteServiceId)
-                                .remoteServicesSite(remoteSiteName)
-                                .build()
-                ));
+                deletedEvents.forEach(event -> transaction.remove(event, globalHandler));
+            }
+
+            if (!transaction.isEmpty()) {
+                long version = eventHandlers.apply(transaction);
+                log.debug("Applied {} handler changes for remoteServiceId {}, registry version is {}",
+                        transaction.size(), remoteServiceId, version);
             }
         } else {
             // Remote service site is not in the same branch
@@ -1,23 +1,35 @@
 package com.cwsoft.eventrouter.global.register.data;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Thread-safe map of remote service IDs to the events handled by the service. Iteration is weakly consistent, it
+ * doesn't fail if services are put at the same time.
+ */
 public class EventsHandledByRemoteServices implements Iterable<EventsHandledByService> {
     private final Map<String, EventsHandledByService> handledEventsMap;
 
     public EventsHandledByRemoteServices() {
-        this.handledEventsMap = new HashMap<>();
+        this.handledEventsMap = new ConcurrentHashMap<>();
     }
 
     public EventsHandledByService get(String serviceId, String serviceSite) {
-        if (handledEventsMap.containsKey(serviceId)) return handledEventsMap.get(serviceId);
+        EventsHandledByService eventsHandledByService = handledEventsMap.get(serviceId);
+        if (eventsHandledByService != null) return eventsHandledByService;
         return EventsHandledByService.builder()
                 .serviceId(serviceId)
                 .serviceSite(serviceSite).build();
     }
 
+    /**
+     * @return the events handled by the service, or null if the service isn't known.
+     */
+    public EventsHandledByService find(String serviceId) {
+        return handledEventsMap.get(serviceId);
+    }
+
     public void put(EventsHandledByService remoteServiceHandledEvents) {
         handledEventsMap.put(remoteServiceHandledEvents.getServiceId(), remoteServiceHandledEvents);
     }
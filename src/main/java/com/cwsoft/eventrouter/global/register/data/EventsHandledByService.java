@@ -1,30 +1,75 @@
 package com.cwsoft.eventrouter.global.register.data;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Getter;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Represents the global events handled by a service.
+ * <p>
+ * Announcements carry the epoch (start time) of the announcing service instance and a version that increases with
+ * each announcement of that instance. A full announcement lists all the handled events; a delta lists the events
+ * added and removed since the announcement with version {@code baseVersion}, and only applies on top of it.
+ * <p>
+ * A service that accepts global events over shared memory also announces its host, so that services on the same host
+ * can send to it directly, and the event types it has promoted to dedicated topics of their own. Both are given in
+ * full in every announcement, deltas included.
  */
 @Getter
 public class EventsHandledByService {
     private final String serviceId;          // The ID of the service
     private final String serviceSite;        // The location/site of the service
     private final Collection<String> handledEvents; // The global events handled by the service
+    private final long epoch;                // start time of the announcing service instance, 0 if not known
+    private final long version;              // version of the announcement within the epoch, 0 if not versioned
+    private final boolean delta;             // true if only the added and removed events are given
+    private final long baseVersion;          // for a delta, the version it applies to
+    private final Collection<String> addedEvents;
+    private final Collection<String> removedEvents;
+    private final String host;               // the host the service runs on, if it accepts events over shared memory
+    private final Collection<String> dedicatedEvents; // the handled events the service consumes from dedicated topics
 
-    @Builder
     public EventsHandledByService(String serviceId, String serviceSite, Collection<String> handledEvents) {
+        this(serviceId, serviceSite, handledEvents, 0, 0, false, 0, null, null, null, null);
+    }
+
+    @Builder
+    @JsonCreator
+    public EventsHandledByService(@JsonProperty("serviceId") String serviceId,
+                                  @JsonProperty("serviceSite") String serviceSite,
+                                  @JsonProperty("handledEvents") Collection<String> handledEvents,
+                                  @JsonProperty("epoch") long epoch,
+                                  @JsonProperty("version") long version,
+                                  @JsonProperty("delta") boolean delta,
+                                  @JsonProperty("baseVersion") long baseVersion,
+                                  @JsonProperty("addedEvents") Collection<String> addedEvents,
+                                  @JsonProperty("removedEvents") Collection<String> removedEvents,
+                                  @JsonProperty("host") String host,
+                                  @JsonProperty("dedicatedEvents") Collection<String> dedicatedEvents) {
         if (serviceId == null || serviceId.isBlank())
             throw new IllegalArgumentException("Service ID cannot be null or blank");
         if (serviceSite == null || serviceSite.isBlank())
             throw new IllegalArgumentException("Service site cannot be null or blank");
+        if (delta && version <= baseVersion)
+            throw new IllegalArgumentException("The version of a delta must be greater than its base version");
 
         this.serviceId = serviceId;
         this.serviceSite = serviceSite;
         this.handledEvents = (handledEvents != null) ? handledEvents : new ArrayList<>();
+        this.epoch = epoch;
+        this.version = version;
+        this.delta = delta;
+        this.baseVersion = baseVersion;
+        this.addedEvents = (addedEvents != null) ? addedEvents : new ArrayList<>();
+        this.removedEvents = (removedEvents != null) ? removedEvents : new ArrayList<>();
+        this.host = host;
+        this.dedicatedEvents = (dedicatedEvents != null) ? dedicatedEvents : new ArrayList<>();
     }
 
     /**
@@ -35,4 +80,38 @@ public class EventsHandledByService {
     public int size() {
         return (handledEvents != null) ? handledEvents.size() : 0;
     }
+
+    /**
+     * Works out the events handled by the service once this announcement is received, given the current state.
+     *
+     * @param current the events handled by the service as currently known.
+     * @return the full state after this announcement, or null if this announcement is out of date or is a delta that
+     * doesn't apply to the current state, in which case it should be ignored until the next full announcement.
+     */
+    public EventsHandledByService applyTo(EventsHandledByService current) {
+        if (version == 0 || current.version == 0) {
+            return delta ? null : this; // unversioned, the latest announcement wins
+        }
+
+        if (epoch < current.epoch || (epoch == current.epoch && version <= current.version)) {
+            return null;
+        }
+
+        if (!delta) return this;
+        if (epoch != current.epoch || baseVersion != current.version) return null;
+
+        Set<String> events = new LinkedHashSet<>(current.handledEvents);
+        events.removeAll(removedEvents);
+        events.addAll(addedEvents);
+
+        return EventsHandledByService.builder()
+                .serviceId(serviceId)
+                .serviceSite(serviceSite)
+                .handledEvents(events)
+                .epoch(epoch)
+                .version(version)
+                .host(host)
+                .dedicatedEvents(dedicatedEvents)
+                .build();
+    }
 }
@@ -0,0 +1,288 @@
+package com.cwsoft.eventrouter.global.register.persistence;
+
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByRemoteServices;
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByService;
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByServiceSerde;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * File based store of the events handled by remote services.
+ * <p>
+ * Changes are appended to a log ({@value #LOG_FILE}), one record per changed service, and the log is compacted into a
+ * snapshot ({@value #SNAPSHOT_FILE}) once it holds more than {@code compactAfterRecords} records. At startup the
+ * snapshot is read through a memory mapping and the log replayed on top of it; a record torn by a crash is dropped.
+ * <p>
+ * Saving doesn't write to the files. The latest state of each changed service is kept until the next flush, every
+ * {@code flushInterval}, on the store's own thread, so a burst of changes to the same service is written once. Saving
+ * all services replaces the stored services at the next flush, which compacts the log into a snapshot of them.
+ * <p>
+ * Records are {@code [length][crc32][json]}, the json being as written by {@link EventsHandledByServiceSerde}.
+ */
+@Slf4j
+public class FileRemoteServiceHandledEventsStore implements RemoteServiceHandledEventsStore, AutoCloseable {
+    static final String SNAPSHOT_FILE = "remote-services.snapshot";
+    static final String LOG_FILE = "remote-services.log";
+    private static final int SNAPSHOT_MAGIC = 0x43575253; // "CWRS"
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final int compactAfterRecords;
+    private final boolean fsync;
+
+    /**
+     * The state as last written to the files, the services saved by {@link #save} to replace it, null if none, and the
+     * changes not yet written.
+     */
+    private final Map<String, EventsHandledByService> persisted = new LinkedHashMap<>();
+    private Map<String, EventsHandledByService> replacement;
+    private final Map<String, EventsHandledByService> pending = new ConcurrentHashMap<>();
+    private boolean compactRequested = false;
+
+    private FileChannel logChannel;
+    private int logRecords;
+
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "remote-services-store-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Builder
+    private FileRemoteServiceHandledEventsStore(Path directory, Duration flushInterval, Integer compactAfterRecords, boolean fsync) {
+        if (directory == null) throw new IllegalArgumentException("directory must not be null");
+
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.logFile = directory.resolve(LOG_FILE);
+        this.compactAfterRecords = (compactAfterRecords == null) ? 10_000 : compactAfterRecords;
+        this.fsync = fsync;
+
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open remote services store in " + directory, ex);
+        }
+
+        long flushMillis = (flushInterval == null) ? 1000 : flushInterval.toMillis();
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static FileRemoteServiceHandledEventsStore open(Path directory) {
+        return builder().directory(directory).build();
+    }
+
+    @Override
+    public synchronized EventsHandledByRemoteServices fetch() {
+        EventsHandledByRemoteServices all = new EventsHandledByRemoteServices();
+        ((replacement == null) ? persisted : replacement).values().forEach(all::put);
+        pending.values().forEach(all::put);
+        return all;
+    }
+
+    /**
+     * Saves the state of all services, replacing the services stored, including those missing from the state given,
+     * and compacting the log at the next flush.
+     */
+    @Override
+    public synchronized void save(EventsHandledByRemoteServices eventsHandledByRemoteServices) {
+        Map<String, EventsHandledByService> services = new LinkedHashMap<>();
+        eventsHandledByRemoteServices.forEach(service -> services.put(service.getServiceId(), service));
+        replacement = services;
+        pending.clear();
+    }
+
+    @Override
+    public void saveChanged(EventsHandledByRemoteServices eventsHandledByRemoteServices, EventsHandledByService changed) {
+        pending.put(changed.getServiceId(), changed);
+    }
+
+    /**
+     * Writes the pending changes to the log, and compacts the log if all services were saved or it has grown past its
+     * limit.
+     */
+    public synchronized void flush() throws IOException {
+        if (replacement != null) {
+            persisted.clear();
+            persisted.putAll(replacement);
+            replacement = null;
+            compactRequested = true;
+        }
+
+        if (!pending.isEmpty()) {
+            List<EventsHandledByService> changes = new ArrayList<>(pending.size());
+            for (String serviceId : new ArrayList<>(pending.keySet())) {
+                EventsHandledByService change = pending.remove(serviceId);
+                if (change != null) changes.add(change);
+            }
+            append(changes);
+        }
+
+        if (compactRequested || logRecords > Math.max(compactAfterRecords, persisted.size())) {
+            compact();
+        }
+    }
+
+    @Override
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            flushQuietly();
+            try {
+                if (logChannel != null) logChannel.close();
+            } catch (IOException ex) {
+                log.warn("Failed to close {}", logFile, ex);
+            }
+        }
+    }
+
+    private synchronized void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException ex) {
+            log.error("Failed to flush remote services store {}, will retry", logFile, ex);
+        }
+    }
+
+    private void load() throws IOException {
+        if (Files.exists(snapshotFile)) {
+            try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.remaining() < 12 || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_FORMAT) {
+                    throw new IOException("Not a remote services snapshot: " + snapshotFile);
+                }
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    EventsHandledByService service = readRecord(buffer);
+                    if (service == null) throw new IOException("Corrupt remote services snapshot: " + snapshotFile);
+                    persisted.put(service.getServiceId(), service);
+                }
+            }
+        }
+
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validLength = 0;
+        if (logChannel.size() > 0) {
+            // read rather than mapped, as a mapped file can't be truncated on some platforms
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(logChannel.size()));
+            while (buffer.hasRemaining() && logChannel.read(buffer, buffer.position()) >= 0) {
+            }
+            buffer.flip();
+            EventsHandledByService service;
+            while ((service = readRecord(buffer)) != null) {
+                persisted.put(service.getServiceId(), service);
+                logRecords++;
+                validLength = buffer.position();
+            }
+        }
+
+        if (validLength < logChannel.size()) {
+            log.warn("Dropping {} bytes of incomplete records at the end of {}", logChannel.size() - validLength, logFile);
+            logChannel.truncate(validLength);
+        }
+        logChannel.position(validLength);
+
+        log.info("Loaded {} remote services from {} ({} log records)", persisted.size(), snapshotFile.getParent(), logRecords);
+    }
+
+    private void append(List<EventsHandledByService> changes) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>(changes.size());
+        changes.forEach(change -> records.add(encodeRecord(change)));
+
+        ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+        long remaining = Arrays.stream(buffers).mapToLong(ByteBuffer::remaining).sum();
+        while (remaining > 0) {
+            remaining -= logChannel.write(buffers);
+        }
+        if (fsync) logChannel.force(false);
+
+        changes.forEach(change -> persisted.put(change.getServiceId(), change));
+        logRecords += changes.size();
+    }
+
+    private void compact() throws IOException {
+        Path tempFile = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(12).putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_FORMAT).putInt(persisted.size()).flip();
+            channel.write(header);
+            for (EventsHandledByService service : persisted.values()) {
+                ByteBuffer record = encodeRecord(service);
+                while (record.hasRemaining()) channel.write(record);
+            }
+            channel.force(true);
+        }
+
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logChannel.truncate(0);
+        logChannel.position(0);
+        if (fsync) logChannel.force(true);
+
+        log.debug("Compacted {} log records into a snapshot of {} remote services", logRecords, persisted.size());
+        logRecords = 0;
+        compactRequested = false;
+    }
+
+    private static ByteBuffer encodeRecord(EventsHandledByService service) {
+        byte[] json = EventsHandledByServiceSerde.serialize(service).getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE + json.length)
+                .putInt(json.length)
+                .putInt((int) crc.getValue())
+                .put(json)
+                .flip();
+    }
+
+    /*
+     * the record at the buffer's position, or null if there isn't a complete and intact one.
+     */
+    private static EventsHandledByService readRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_HEADER_SIZE) return null;
+
+        int start = buffer.position();
+        int length = buffer.getInt();
+        int expectedCrc = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            buffer.position(start);
+            return null;
+        }
+
+        byte[] json = new byte[length];
+        buffer.get(json);
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        if ((int) crc.getValue() != expectedCrc) {
+            buffer.position(start);
+            return null;
+        }
+
+        return EventsHandledByServiceSerde.deserialize(new String(json, StandardCharsets.UTF_8));
+    }
+}
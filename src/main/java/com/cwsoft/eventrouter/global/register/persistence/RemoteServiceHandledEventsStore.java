@@ -1,8 +1,20 @@
 package com.cwsoft.eventrouter.global.register.persistence;
 
 import com.cwsoft.eventrouter.global.register.data.EventsHandledByRemoteServices;
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByService;
 
 public interface RemoteServiceHandledEventsStore {
     EventsHandledByRemoteServices fetch();
     void save (EventsHandledByRemoteServices eventsHandledByRemoteServices);
+
+    /**
+     * Saves the state after a change to the events handled by one service. Stores that can persist the change on its
+     * own override this, by default the whole state is saved.
+     *
+     * @param eventsHandledByRemoteServices the events handled by all remote services, including the change.
+     * @param changed                       the events now handled by the service that changed.
+     */
+    default void saveChanged(EventsHandledByRemoteServices eventsHandledByRemoteServices, EventsHandledByService changed) {
+        save(eventsHandledByRemoteServices);
+    }
 }
@@ -0,0 +1,179 @@
+package com.cwsoft.eventrouter.index;
+
+import com.cwsoft.eventrouter.Access;
+import com.cwsoft.eventrouter.EventHandler;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Annotation processor that generates a {@link HandlerIndex} for each package containing methods annotated with
+ * {@link EventHandler}, and lists them in {@code META-INF/services/com.cwsoft.eventrouter.index.HandlerIndex}.
+ * <p>
+ * The processor is picked up by javac from the event router jar on the class path. If the build sets
+ * {@code annotationProcessorPaths} the event router has to be added to them.
+ * <p>
+ * Methods that can be called from the generated class (not private, in a class that is not private) get a
+ * {@link HandlerInvoker} that calls the method directly; other methods are invoked by reflection as before.
+ * <p>
+ * The service file is written from the classes generated in a single compilation, so incremental builds that only
+ * recompile some of the packages need a clean build to bring the index up to date.
+ */
+@SupportedAnnotationTypes({"com.cwsoft.eventrouter.EventHandler", "com.cwsoft.eventrouter.Handlers"})
+public class EventHandlerIndexProcessor extends AbstractProcessor {
+    static final String INDEX_CLASS_NAME = "EventRouterHandlerIndex";
+    static final String SERVICE_FILE = "META-INF/services/" + HandlerIndex.class.getName();
+    private static final Set<ElementKind> INDEXED_KINDS = EnumSet.of(ElementKind.CLASS, ElementKind.ENUM, ElementKind.RECORD);
+
+    private final Set<String> generatedIndexes = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+
+        Map<PackageElement, Set<ExecutableElement>> handlersByPackage = new LinkedHashMap<>();
+        Elements elements = processingEnv.getElementUtils();
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.METHOD || !INDEXED_KINDS.contains(element.getEnclosingElement().getKind())) {
+                    continue; // beans are scanned along their superclasses, so methods of interfaces are never found
+                }
+                handlersByPackage.computeIfAbsent(elements.getPackageOf(element), k -> new LinkedHashSet<>())
+                        .add((ExecutableElement) element);
+            }
+        }
+
+        handlersByPackage.forEach(this::writeIndex);
+        return false;
+    }
+
+    private void writeIndex(PackageElement packageElement, Set<ExecutableElement> methods) {
+        String packageName = packageElement.getQualifiedName().toString();
+        String className = INDEX_CLASS_NAME;
+        for (int round = 2; generatedIndexes.contains(qualified(packageName, className)); round++) {
+            className = INDEX_CLASS_NAME + round; // another round of processing found handlers in the same package
+        }
+        String qualifiedName = qualified(packageName, className);
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(className).append(" implements ").append(HandlerIndex.class.getName()).append(" {\n")
+                .append("    @Override\n")
+                .append("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("    public java.util.List<").append(IndexedHandler.class.getName()).append("> handlers() {\n")
+                .append("        return java.util.List.of(\n")
+                .append(methods.stream().map(this::indexedHandler).collect(Collectors.joining(",\n")))
+                .append(");\n")
+                .append("    }\n")
+                .append("}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, methods.toArray(new Element[0])).openWriter()) {
+            writer.write(source.toString());
+            generatedIndexes.add(qualifiedName);
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write event handler index " + qualifiedName + ": " + ex);
+        }
+    }
+
+    private String indexedHandler(ExecutableElement method) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        TypeElement declaringClass = (TypeElement) method.getEnclosingElement();
+
+        List<String> parameterTypes = method.getParameters().stream()
+                .map(parameter -> types.erasure(parameter.asType()).toString())
+                .toList();
+
+        String specs = Arrays.stream(method.getAnnotationsByType(EventHandler.class))
+                .map(this::spec)
+                .collect(Collectors.joining(",\n                        "));
+
+        return "            new " + IndexedHandler.class.getName() + "("
+                + elements.getConstantExpression(elements.getBinaryName(declaringClass).toString()) + ", "
+                + elements.getConstantExpression(method.getSimpleName().toString()) + ",\n"
+                + "                    new String[]{" + parameterTypes.stream().map(elements::getConstantExpression).collect(Collectors.joining(", ")) + "},\n"
+                + "                    java.util.List.of(\n                        " + specs + "),\n"
+                + "                    " + invoker(method, declaringClass, parameterTypes) + ")";
+    }
+
+    private String spec(EventHandler annotation) {
+        Elements elements = processingEnv.getElementUtils();
+        String enumPackage = Access.class.getPackageName() + ".";
+
+        return "new " + EventHandlerSpec.class.getName() + "("
+                + "new String[]{" + Arrays.stream(annotation.name()).map(elements::getConstantExpression).collect(Collectors.joining(", ")) + "}, "
+                + "new " + Access.class.getName() + "[]{" + Arrays.stream(annotation.access()).map(access -> Access.class.getName() + "." + access.name()).collect(Collectors.joining(", ")) + "}, "
+                + enumPackage + "Priority." + annotation.priority().name() + ", "
+                + enumPackage + "ExecutionMode." + annotation.mode().name() + ", "
+                + annotation.concurrency() + ", "
+                + elements.getConstantExpression(annotation.orderingKey()) + ")";
+    }
+
+    private String invoker(ExecutableElement method, TypeElement declaringClass, List<String> parameterTypes) {
+        if (method.getModifiers().contains(Modifier.PRIVATE) || !isAccessible(declaringClass) || parameterTypes.size() > 1) {
+            return "null";
+        }
+
+        String call = (method.getModifiers().contains(Modifier.STATIC) ? declaringClass.getQualifiedName() + "." : "((" + declaringClass.getQualifiedName() + ") bean).")
+                + method.getSimpleName()
+                + (parameterTypes.isEmpty() ? "()" : "((" + parameterTypes.get(0) + ") argument)");
+
+        return "(bean, argument) -> " + call;
+    }
+
+    private boolean isAccessible(TypeElement type) {
+        for (Element element = type; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement()) {
+            if (!(element instanceof TypeElement typeElement)
+                    || typeElement.getNestingKind() == NestingKind.LOCAL
+                    || typeElement.getNestingKind() == NestingKind.ANONYMOUS
+                    || typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeServiceFile() {
+        if (generatedIndexes.isEmpty()) return;
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = file.openWriter()) {
+                for (String index : generatedIndexes) {
+                    writer.write(index);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + SERVICE_FILE + ": " + ex);
+        }
+    }
+
+    private static String qualified(String packageName, String className) {
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+}
@@ -0,0 +1,38 @@
+package com.cwsoft.eventrouter.index;
+
+import com.cwsoft.eventrouter.Access;
+import com.cwsoft.eventrouter.EventHandler;
+import com.cwsoft.eventrouter.ExecutionMode;
+import com.cwsoft.eventrouter.Priority;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * The values of one {@link EventHandler} annotation, either read from the annotation or from the generated index.
+ */
+@Getter
+@ToString
+public class EventHandlerSpec {
+    private final List<String> names;
+    private final List<Access> access;
+    private final Priority priority;
+    private final ExecutionMode mode;
+    private final int concurrency;
+    private final String orderingKey;
+
+    public EventHandlerSpec(String[] names, Access[] access, Priority priority, ExecutionMode mode, int concurrency, String orderingKey) {
+        this.names = List.of(names);
+        this.access = List.of(access);
+        this.priority = priority;
+        this.mode = mode;
+        this.concurrency = concurrency;
+        this.orderingKey = orderingKey;
+    }
+
+    public static EventHandlerSpec of(EventHandler annotation) {
+        return new EventHandlerSpec(annotation.name(), annotation.access(), annotation.priority(), annotation.mode(),
+                annotation.concurrency(), annotation.orderingKey());
+    }
+}
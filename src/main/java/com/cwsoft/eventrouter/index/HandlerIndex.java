@@ -0,0 +1,11 @@
+package com.cwsoft.eventrouter.index;
+
+import java.util.List;
+
+/**
+ * Service provider interface implemented by the classes generated by {@link EventHandlerIndexProcessor}, one per
+ * package containing event handlers, and listed in {@code META-INF/services/com.cwsoft.eventrouter.index.HandlerIndex}.
+ */
+public interface HandlerIndex {
+    List<IndexedHandler> handlers();
+}
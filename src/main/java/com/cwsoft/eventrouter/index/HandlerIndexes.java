@@ -0,0 +1,122 @@
+package com.cwsoft.eventrouter.index;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.security.CodeSource;
+import java.util.*;
+
+/**
+ * The handler indexes generated at compile time and found on the class path, used by {@code EventHandlers} in place
+ * of scanning the methods of every bean.
+ * <p>
+ * An index covers the classes from the same code source (jar or classes directory) as the index, so classes compiled
+ * without the processor are still scanned. Setting the system property {@value #IGNORE_PROPERTY} to true ignores the
+ * indexes altogether.
+ */
+@Slf4j
+public class HandlerIndexes {
+    public static final String IGNORE_PROPERTY = "eventrouter.index.ignore";
+
+    private static final HandlerIndexes NONE = new HandlerIndexes(Map.of(), Set.of(), Set.of());
+
+    private final Map<Class<?>, List<HandlerMethod>> methodsByClass;
+    private final Set<String> indexedLocations;
+    private final Set<Class<?>> unresolved;
+
+    private HandlerIndexes(Map<Class<?>, List<HandlerMethod>> methodsByClass, Set<String> indexedLocations, Set<Class<?>> unresolved) {
+        this.methodsByClass = methodsByClass;
+        this.indexedLocations = indexedLocations;
+        this.unresolved = unresolved;
+    }
+
+    public static HandlerIndexes none() {
+        return NONE;
+    }
+
+    /**
+     * Loads the indexes visible to the given class loader.
+     */
+    public static HandlerIndexes load(ClassLoader classLoader) {
+        if (Boolean.getBoolean(IGNORE_PROPERTY)) {
+            log.info("Ignoring event handler indexes, {} is set", IGNORE_PROPERTY);
+            return NONE;
+        }
+
+        Map<Class<?>, List<HandlerMethod>> methodsByClass = new HashMap<>();
+        Set<String> indexedLocations = new HashSet<>();
+        Set<Class<?>> unresolved = new HashSet<>();
+
+        for (HandlerIndex index : ServiceLoader.load(HandlerIndex.class, classLoader)) {
+            String location = locationOf(index.getClass());
+            if (location == null) {
+                log.warn("Ignoring event handler index {}, its location is unknown", index.getClass().getName());
+                continue;
+            }
+
+            indexedLocations.add(location);
+            ClassLoader indexLoader = index.getClass().getClassLoader();
+
+            for (IndexedHandler indexed : index.handlers()) {
+                Class<?> declaringClass;
+                try {
+                    declaringClass = Class.forName(indexed.getDeclaringClassName(), false, indexLoader);
+                } catch (ClassNotFoundException | LinkageError ex) {
+                    log.warn("Event handler index {} refers to class {} which can't be loaded", index.getClass().getName(), indexed.getDeclaringClassName());
+                    continue;
+                }
+
+                Method method = find(declaringClass, indexed);
+                if (method == null) {
+                    log.warn("Event handler index {} is out of date, no method {} in {}, the class will be scanned",
+                            index.getClass().getName(), indexed.getMethodName(), declaringClass.getName());
+                    unresolved.add(declaringClass);
+                    continue;
+                }
+
+                methodsByClass.computeIfAbsent(declaringClass, k -> new ArrayList<>())
+                        .add(new HandlerMethod(method, indexed.getSpecs(), indexed.getInvoker()));
+            }
+        }
+
+        if (indexedLocations.isEmpty()) return NONE;
+
+        log.info("Loaded event handler indexes for {} classes from {}", methodsByClass.size(), indexedLocations);
+        return new HandlerIndexes(methodsByClass, indexedLocations, unresolved);
+    }
+
+    /**
+     * @return true if the handler methods declared by the class are known from an index, and the class doesn't need
+     * to be scanned.
+     */
+    public boolean covers(Class<?> clazz) {
+        if (indexedLocations.isEmpty() || unresolved.contains(clazz)) return false;
+        String location = locationOf(clazz);
+        return location != null && indexedLocations.contains(location);
+    }
+
+    /**
+     * @return the indexed handler methods declared by the class (not its superclasses).
+     */
+    public List<HandlerMethod> methodsOf(Class<?> clazz) {
+        return methodsByClass.getOrDefault(clazz, List.of());
+    }
+
+    private static Method find(Class<?> declaringClass, IndexedHandler indexed) {
+        for (Method method : declaringClass.getDeclaredMethods()) {
+            if (method.getName().equals(indexed.getMethodName()) && parameterTypeNames(method).equals(indexed.getParameterTypeNames())) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> parameterTypeNames(Method method) {
+        return Arrays.stream(method.getParameterTypes()).map(Class::getCanonicalName).toList();
+    }
+
+    private static String locationOf(Class<?> clazz) {
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        return (codeSource == null || codeSource.getLocation() == null) ? null : codeSource.getLocation().toString();
+    }
+}
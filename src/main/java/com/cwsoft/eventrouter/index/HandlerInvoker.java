@@ -0,0 +1,15 @@
+package com.cwsoft.eventrouter.index;
+
+/**
+ * Calls a handler method directly, without reflection. Implementations are generated by
+ * {@link EventHandlerIndexProcessor}.
+ */
+@FunctionalInterface
+public interface HandlerInvoker {
+    /**
+     * @param bean     the bean declaring the handler method.
+     * @param argument the argument for the handler method: the event, or its payload if the method declares the
+     *                 payload type. Ignored if the method has no parameter.
+     */
+    void invoke(Object bean, Object argument) throws Exception;
+}
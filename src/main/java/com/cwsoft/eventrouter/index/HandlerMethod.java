@@ -0,0 +1,11 @@
+package com.cwsoft.eventrouter.index;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * A method annotated with {@code @EventHandler} together with its annotation values and, when found in the index,
+ * its generated invoker.
+ */
+public record HandlerMethod(Method method, List<EventHandlerSpec> specs, HandlerInvoker invoker) {
+}
@@ -0,0 +1,29 @@
+package com.cwsoft.eventrouter.index;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * An entry of a generated {@link HandlerIndex}: a method annotated with {@code @EventHandler}, identified by the
+ * binary name of its class, its name and the canonical names of its parameter types.
+ */
+@Getter
+@ToString(exclude = "invoker")
+public class IndexedHandler {
+    private final String declaringClassName;
+    private final String methodName;
+    private final List<String> parameterTypeNames;
+    private final List<EventHandlerSpec> specs;
+    private final HandlerInvoker invoker; // null if the method can't be called from generated code, e.g. it is private
+
+    public IndexedHandler(String declaringClassName, String methodName, String[] parameterTypeNames,
+                          List<EventHandlerSpec> specs, HandlerInvoker invoker) {
+        this.declaringClassName = declaringClassName;
+        this.methodName = methodName;
+        this.parameterTypeNames = List.of(parameterTypeNames);
+        this.specs = specs;
+        this.invoker = invoker;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This sub-package of the event router contains the compile time index of event handlers: an annotation processor
+ * that generates the index and the classes used to read it at startup in place of scanning every bean.
+ */
+package com.cwsoft.eventrouter.index;
@@ -0,0 +1,20 @@
+package com.cwsoft.eventrouter.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Local dispatch of a global event consumed by the GlobalEventsConsumer
+ */
+@Name("com.cwsoft.eventrouter.Consume")
+@Label("Consume")
+@Category("Event Router")
+@Description("Local dispatch of a global event consumed by the GlobalEventsConsumer")
+@Enabled(false)
+@StackTrace(false)
+public final class ConsumeJfrEvent extends Event {
+    @Label("Event Name")
+    public String eventName;
+
+    @Label("From Service")
+    public String fromService;
+}
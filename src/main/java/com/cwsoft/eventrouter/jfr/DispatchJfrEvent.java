@@ -0,0 +1,20 @@
+package com.cwsoft.eventrouter.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * EventDispatcher.dispatchEvent of an event to its matching handlers
+ */
+@Name("com.cwsoft.eventrouter.Dispatch")
+@Label("Dispatch")
+@Category("Event Router")
+@Description("EventDispatcher.dispatchEvent of an event to its matching handlers")
+@Enabled(false)
+@StackTrace(false)
+public final class DispatchJfrEvent extends Event {
+    @Label("Event Name")
+    public String eventName;
+
+    @Label("Handlers")
+    public int handlers;
+}
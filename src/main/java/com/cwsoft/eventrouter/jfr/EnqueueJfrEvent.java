@@ -0,0 +1,26 @@
+package com.cwsoft.eventrouter.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Adding an event to the mailbox of a local handler, the duration includes any time blocked on a full mailbox
+ */
+@Name("com.cwsoft.eventrouter.Enqueue")
+@Label("Enqueue")
+@Category("Event Router")
+@Description("Adding an event to the mailbox of a local handler, the duration includes any time blocked on a full mailbox")
+@Enabled(false)
+@StackTrace(false)
+public final class EnqueueJfrEvent extends Event {
+    @Label("Event Name")
+    public String eventName;
+
+    @Label("Handler")
+    public String handler;
+
+    @Label("Priority")
+    public String priority;
+
+    @Label("Queue Depth")
+    public int queueDepth;
+}
@@ -0,0 +1,31 @@
+package com.cwsoft.eventrouter.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Invocation of a local handler method
+ */
+@Name("com.cwsoft.eventrouter.Invoke")
+@Label("Invoke")
+@Category("Event Router")
+@Description("Invocation of a local handler method")
+@Enabled(false)
+@StackTrace(false)
+public final class InvokeJfrEvent extends Event {
+    @Label("Event Name")
+    public String eventName;
+
+    @Label("Handler")
+    public String handler;
+
+    @Label("Queue Depth")
+    public int queueDepth;
+
+    @Label("Wait Time")
+    @Description("Time the event waited in the mailbox before the invocation, 0 if not timed")
+    @Timespan(Timespan.NANOSECONDS)
+    public long waitTime;
+
+    @Label("Failed")
+    public boolean failed;
+}
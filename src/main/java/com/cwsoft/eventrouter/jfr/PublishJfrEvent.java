@@ -0,0 +1,30 @@
+package com.cwsoft.eventrouter.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Sending a global event to a remote service by the GlobalEventsProducer
+ */
+@Name("com.cwsoft.eventrouter.Publish")
+@Label("Publish")
+@Category("Event Router")
+@Description("Sending a global event to a remote service by the GlobalEventsProducer")
+@Enabled(false)
+@StackTrace(false)
+public final class PublishJfrEvent extends Event {
+    @Label("Event Name")
+    public String eventName;
+
+    @Label("Remote Service")
+    public String remoteService;
+
+    @Label("Retry")
+    @Description("True if the event was sent from the retry queue")
+    public boolean retry;
+
+    @Label("Retry Queue Depth")
+    public int queueDepth;
+
+    @Label("Success")
+    public boolean success;
+}
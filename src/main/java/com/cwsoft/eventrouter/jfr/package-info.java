@@ -0,0 +1,9 @@
+/**
+ * This sub-package of the event router contains the Java Flight Recorder events emitted by the router.
+ * <p>
+ * All events are disabled by default and cost next to nothing until enabled, e.g.
+ * {@code -XX:StartFlightRecording:+com.cwsoft.eventrouter.Invoke#enabled=true,+com.cwsoft.eventrouter.Enqueue#enabled=true}
+ * or by enabling the "Event Router" category in JDK Mission Control. As they are ordinary JFR events, they are
+ * recorded with thread and timestamps and so can be correlated with GC, lock and thread-park events.
+ */
+package com.cwsoft.eventrouter.jfr;
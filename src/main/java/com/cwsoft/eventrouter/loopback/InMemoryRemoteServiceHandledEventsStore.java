@@ -0,0 +1,29 @@
+package com.cwsoft.eventrouter.loopback;
+
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByRemoteServices;
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByService;
+import com.cwsoft.eventrouter.global.register.persistence.RemoteServiceHandledEventsStore;
+
+/**
+ * Store of the events handled by remote services that keeps them in memory only, for simulated services.
+ */
+public class InMemoryRemoteServiceHandledEventsStore implements RemoteServiceHandledEventsStore {
+    private final EventsHandledByRemoteServices saved = new EventsHandledByRemoteServices();
+
+    @Override
+    public EventsHandledByRemoteServices fetch() {
+        EventsHandledByRemoteServices copy = new EventsHandledByRemoteServices();
+        saved.forEach(copy::put);
+        return copy;
+    }
+
+    @Override
+    public void save(EventsHandledByRemoteServices eventsHandledByRemoteServices) {
+        eventsHandledByRemoteServices.forEach(saved::put);
+    }
+
+    @Override
+    public void saveChanged(EventsHandledByRemoteServices eventsHandledByRemoteServices, EventsHandledByService changed) {
+        saved.put(changed);
+    }
+}
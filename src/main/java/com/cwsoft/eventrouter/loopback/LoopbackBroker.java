@@ -0,0 +1,244 @@
+package com.cwsoft.eventrouter.loopback;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-JVM message broker behind the loopback messaging.
+ * <p>
+ * Messages are sent to named topics. Each consumer group subscribed to a topic gets every message, spread over the
+ * group's partitions by the hash of the message key, and the consumers of a group share its partitions. Messages on a
+ * compacted topic are also kept, latest per key, and delivered to groups that subscribe later.
+ * <p>
+ * Latency, failures and outages can be injected, and changed while running: messages are delivered no earlier than
+ * {@code latency} after being sent, sends fail with probability {@code failureRate}, and while the broker is not
+ * available sends and consumes fail with a {@link LoopbackUnavailableException}. When a partition is full the message
+ * is dropped for that group and counted.
+ */
+@Slf4j
+public class LoopbackBroker {
+    private final int partitions;
+    private final int partitionCapacity;
+    private volatile long latencyNanos;
+    private volatile double failureRate;
+    private volatile boolean available = true;
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @Builder
+    private LoopbackBroker(Integer partitions, Integer partitionCapacity, Duration latency, double failureRate) {
+        this.partitions = (partitions == null) ? 1 : partitions;
+        this.partitionCapacity = (partitionCapacity == null) ? 100_000 : partitionCapacity;
+        this.latencyNanos = (latency == null) ? 0 : latency.toNanos();
+        this.failureRate = failureRate;
+
+        if (this.partitions < 1) throw new IllegalArgumentException("partitions must be at least 1");
+        if (this.partitionCapacity < 1) throw new IllegalArgumentException("partitionCapacity must be at least 1");
+    }
+
+    public static LoopbackBroker create() {
+        return builder().build();
+    }
+
+    /**
+     * Marks a topic as compacted, so that the latest message for each key is delivered to groups subscribing later.
+     */
+    public LoopbackBroker compacted(String topic) {
+        topic(topic).compacted = true;
+        return this;
+    }
+
+    /**
+     * Sends a message to all the groups subscribed to a topic.
+     *
+     * @throws LoopbackUnavailableException if the broker is unavailable or the send fails by injection.
+     */
+    public void send(String topic, String key, Object value) {
+        if (!available) {
+            failed.increment();
+            throw new LoopbackUnavailableException("Loopback broker is unavailable");
+        }
+
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            failed.increment();
+            throw new LoopbackUnavailableException("Injected failure sending to " + topic);
+        }
+
+        long deliverAtNanos = (latencyNanos == 0) ? 0 : System.nanoTime() + latencyNanos;
+        topic(topic).send(new Message(key, value, deliverAtNanos));
+        sent.increment();
+    }
+
+    /**
+     * Subscribes a consumer to a topic as a member of a group. Consumers of the same group share its messages.
+     */
+    public Subscription subscribe(String topic, String group) {
+        return topic(topic).group(group);
+    }
+
+    /**
+     * Deletes a topic along with the messages waiting to be consumed from it. Consumers still subscribed are left
+     * with nothing more to consume.
+     */
+    public void delete(String topic) {
+        if (topics.remove(topic) != null) {
+            log.info("Deleted loopback topic {}", topic);
+        }
+    }
+
+    public void setAvailable(boolean available) {
+        log.info("Loopback broker is now {}", available ? "available" : "unavailable");
+        this.available = available;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setLatency(Duration latency) {
+        this.latencyNanos = latency.toNanos();
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of messages waiting to be consumed across all topics and groups.
+     */
+    public long getDepth() {
+        return topics.values().stream()
+                .flatMap(topic -> topic.groups.values().stream())
+                .mapToLong(Subscription::getDepth)
+                .sum();
+    }
+
+    private Topic topic(String name) {
+        return topics.computeIfAbsent(name, Topic::new);
+    }
+
+    private final class Topic {
+        private final String name;
+        private final Map<String, Subscription> groups = new ConcurrentHashMap<>();
+        private final Map<String, Message> latestByKey = new ConcurrentHashMap<>();
+        private volatile boolean compacted;
+
+        private Topic(String name) {
+            this.name = name;
+        }
+
+        private void send(Message message) {
+            if (compacted && message.key() != null) {
+                latestByKey.put(message.key(), message);
+            }
+            for (Subscription group : groups.values()) {
+                group.offer(message);
+            }
+        }
+
+        private Subscription group(String groupName) {
+            return groups.computeIfAbsent(groupName, k -> {
+                Subscription group = new Subscription(name + "/" + groupName);
+                latestByKey.values().forEach(group::offer);
+                return group;
+            });
+        }
+    }
+
+    /**
+     * The partitions of a consumer group of a topic.
+     */
+    public final class Subscription {
+        @Getter
+        private final String name;
+        private final ArrayBlockingQueue<Message>[] queues;
+        private final Semaphore messages = new Semaphore(0);
+        private final AtomicInteger nextPartition = new AtomicInteger();
+        private final AtomicInteger roundRobin = new AtomicInteger();
+
+        @SuppressWarnings("unchecked")
+        private Subscription(String name) {
+            this.name = name;
+            this.queues = new ArrayBlockingQueue[partitions];
+            for (int i = 0; i < partitions; i++) {
+                queues[i] = new ArrayBlockingQueue<>(partitionCapacity);
+            }
+        }
+
+        /**
+         * Takes the next message, waiting up to the timeout for one to arrive and then until it is due.
+         *
+         * @return the message value, or null if there is none within the timeout.
+         * @throws LoopbackUnavailableException if the broker is unavailable.
+         */
+        public Object poll(Duration timeout) throws InterruptedException {
+            if (!available) throw new LoopbackUnavailableException("Loopback broker is unavailable");
+            if (!messages.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) return null;
+
+            int start = nextPartition.getAndIncrement();
+            for (int i = 0; ; i++) {
+                Message message = queues[Math.floorMod(start + i, queues.length)].poll();
+                if (message != null) {
+                    awaitDelivery(message);
+                    return message.value();
+                }
+            }
+        }
+
+        public int getDepth() {
+            return messages.availablePermits();
+        }
+
+        private void offer(Message message) {
+            int partition = (message.key() == null)
+                    ? Math.floorMod(roundRobin.getAndIncrement(), queues.length)
+                    : Math.floorMod(message.key().hashCode(), queues.length);
+
+            if (queues[partition].offer(message)) {
+                messages.release();
+            } else {
+                dropped.increment();
+                log.warn("Loopback partition {} of {} is full, dropping message", partition, name);
+            }
+        }
+
+        private void awaitDelivery(Message message) throws InterruptedException {
+            long waitNanos;
+            while (message.deliverAtNanos() != 0 && (waitNanos = message.deliverAtNanos() - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+        }
+    }
+
+    private record Message(String key, Object value, long deliverAtNanos) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.cwsoft.eventrouter.loopback;
+
+import com.cwsoft.messaging.ClosableConsumer;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Consumer of the messages of a loopback topic, as they were sent, as a member of a group.
+ */
+public class LoopbackConsumer<T> implements ClosableConsumer<T> {
+    private final LoopbackBroker.Subscription subscription;
+    private volatile boolean closed = false;
+
+    public LoopbackConsumer(LoopbackBroker broker, String topic, String group) {
+        this.subscription = broker.subscribe(topic, group);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<T> consume(Duration timeout) {
+        if (closed) {
+            Thread.currentThread().interrupt(); // ends the consuming loop
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.ofNullable((T) subscription.poll(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,41 @@
+package com.cwsoft.eventrouter.loopback;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.NamedEvent;
+import com.cwsoft.messaging.ClosableConsumer;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Consumer of the global events for a service from its loopback topic.
+ */
+public class LoopbackEventsConsumer implements ClosableConsumer<Event> {
+    private final LoopbackBroker.Subscription subscription;
+    private volatile boolean closed = false;
+
+    public LoopbackEventsConsumer(LoopbackBroker broker, String serviceId) {
+        this.subscription = broker.subscribe(LoopbackTopics.eventsFor(serviceId), serviceId);
+    }
+
+    @Override
+    public Optional<Event> consume(Duration timeout) {
+        if (closed) {
+            Thread.currentThread().interrupt(); // ends the consuming loop
+            return Optional.empty();
+        }
+
+        try {
+            Object encoded = subscription.poll(timeout);
+            return (encoded == null) ? Optional.empty() : Optional.ofNullable((Event) NamedEvent.decode((String) encoded));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cwsoft.eventrouter.loopback;
+
+import com.cwsoft.eventrouter.RemoteServiceEvent;
+import com.cwsoft.eventrouter.global.SerializationException;
+import com.cwsoft.messaging.Producer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Producer of global events to the loopback topic of the remote service they are for. Events are sent encoded, as they
+ * would be over the real messaging, so that consumers decode them. Broadcast events are sent by the broadcast producer
+ * of the {@link com.cwsoft.eventrouter.global.GlobalEventsProducer} instead.
+ */
+public class LoopbackEventsProducer implements Producer<RemoteServiceEvent> {
+    private final LoopbackBroker broker;
+
+    public LoopbackEventsProducer(LoopbackBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public void produce(RemoteServiceEvent remoteServiceEvent) {
+        if (remoteServiceEvent.isBroadcast())
+            throw new IllegalArgumentException("Broadcast events are sent to " + LoopbackTopics.BROADCAST + " by the broadcast producer");
+
+        String encoded;
+        try {
+            encoded = remoteServiceEvent.getEvent().encode();
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Failed to encode event " + remoteServiceEvent.getEvent().getName(), e);
+        }
+
+        broker.send(LoopbackTopics.eventsFor(remoteServiceEvent.getRemoteServiceId()), remoteServiceEvent.getEvent().getName(), encoded);
+    }
+}
@@ -0,0 +1,25 @@
+package com.cwsoft.eventrouter.loopback;
+
+import com.cwsoft.messaging.Producer;
+
+import java.util.function.Function;
+
+/**
+ * Producer of messages to a loopback topic, keyed by the given function.
+ */
+public class LoopbackProducer<T> implements Producer<T> {
+    private final LoopbackBroker broker;
+    private final String topic;
+    private final Function<T, String> keyFunction;
+
+    public LoopbackProducer(LoopbackBroker broker, String topic, Function<T, String> keyFunction) {
+        this.broker = broker;
+        this.topic = topic;
+        this.keyFunction = keyFunction;
+    }
+
+    @Override
+    public void produce(T message) {
+        broker.send(topic, keyFunction.apply(message), message);
+    }
+}
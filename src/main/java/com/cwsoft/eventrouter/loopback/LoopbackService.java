@@ -0,0 +1,132 @@
+package com.cwsoft.eventrouter.loopback;
+
+import com.cwsoft.eventrouter.EventDispatcher;
+import com.cwsoft.eventrouter.EventHandlers;
+import com.cwsoft.eventrouter.LocalHandlerFactory;
+import com.cwsoft.eventrouter.NamedEvent;
+import com.cwsoft.eventrouter.ThreadLocalHandlerFactory;
+import com.cwsoft.eventrouter.global.BroadcastEnvelope;
+import com.cwsoft.eventrouter.global.BroadcastEventsConsumer;
+import com.cwsoft.eventrouter.global.BroadcastFilter;
+import com.cwsoft.eventrouter.global.DedicatedTopicManager;
+import com.cwsoft.eventrouter.global.GlobalEventsConsumer;
+import com.cwsoft.eventrouter.global.GlobalEventsProducer;
+import com.cwsoft.eventrouter.global.register.HandledProducer;
+import com.cwsoft.eventrouter.global.register.HandlersRegistrar;
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByService;
+import com.cwsoft.eventrouter.global.register.persistence.RemoteServiceHandledEventsStore;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A service simulated in the JVM: its own handlers and dispatcher, wired to the other services through a
+ * {@link LoopbackBroker} by the same global producer, consumer and handled events registration as a real service.
+ * Every service consumes the broadcast topic, and broadcasts events with {@code broadcastThreshold} or more remote
+ * subscribers if it is set. If {@code promoteRate} is set, event types received at that rate or more are promoted to
+ * dedicated topics (see {@link DedicatedTopicManager}).
+ * <pre>
+ * LoopbackBroker broker = LoopbackBroker.create();
+ * LoopbackService orders = LoopbackService.builder().serviceId("orders").broker(broker).build();
+ * orders.start(List.of(new OrderHandlers()));
+ * </pre>
+ */
+@Slf4j
+@Getter
+public class LoopbackService {
+    private final String serviceId;
+    private final String site;
+    private final LoopbackBroker broker;
+    private final EventHandlers eventHandlers;
+    private final EventDispatcher eventDispatcher;
+    private final GlobalEventsProducer globalEventsProducer;
+    private final GlobalEventsConsumer globalEventsConsumer;
+    private final GlobalEventsConsumer broadcastEventsConsumer;
+    private final HandledProducer handledProducer;
+    private final HandlersRegistrar handlersRegistrar;
+    private final DedicatedTopicManager dedicatedTopicManager; // null unless promoteRate is set
+
+    private final LoopbackEventsConsumer eventsConsumer;
+    private final LoopbackConsumer<String> broadcastConsumer;
+    private final LoopbackStream<String, EventsHandledByService> handledStream;
+
+    @Builder
+    private LoopbackService(String serviceId, String site, LoopbackBroker broker, LocalHandlerFactory handlerFactory,
+                            RemoteServiceHandledEventsStore handledEventsStore, int broadcastThreshold,
+                            double promoteRate) {
+        if (serviceId == null || serviceId.isBlank()) throw new IllegalArgumentException("serviceId must not be blank");
+        if (broker == null) throw new IllegalArgumentException("broker must not be null");
+
+        this.serviceId = serviceId;
+        this.site = (site == null) ? "loopback" : site;
+        this.broker = broker.compacted(LoopbackTopics.HANDLED_EVENTS);
+
+        eventHandlers = new EventHandlers();
+        eventHandlers.setHandlerFactory((handlerFactory == null) ? new ThreadLocalHandlerFactory() : handlerFactory);
+        eventDispatcher = new EventDispatcher();
+        eventDispatcher.setEventHandlers(eventHandlers);
+
+        globalEventsProducer = new GlobalEventsProducer(new LoopbackEventsProducer(broker));
+        globalEventsProducer.setBroadcastProducer(
+                new LoopbackProducer<>(broker, LoopbackTopics.BROADCAST, message -> BroadcastEnvelope.peek(message).eventName()));
+        eventsConsumer = new LoopbackEventsConsumer(broker, serviceId);
+        globalEventsConsumer = new GlobalEventsConsumer(eventsConsumer, eventDispatcher);
+        broadcastConsumer = new LoopbackConsumer<>(broker, LoopbackTopics.BROADCAST, serviceId);
+        broadcastEventsConsumer = new GlobalEventsConsumer(
+                new BroadcastEventsConsumer(broadcastConsumer, new BroadcastFilter(serviceId, this.site, eventHandlers)),
+                eventDispatcher);
+
+        handledProducer = new HandledProducer(
+                new LoopbackProducer<>(broker, LoopbackTopics.HANDLED_EVENTS, EventsHandledByService::getServiceId),
+                eventHandlers, serviceId, this.site);
+        handledStream = new LoopbackStream<>(broker, LoopbackTopics.HANDLED_EVENTS, serviceId, EventsHandledByService::getServiceId);
+        handlersRegistrar = new HandlersRegistrar(eventHandlers, handledStream,
+                (handledEventsStore == null) ? new InMemoryRemoteServiceHandledEventsStore() : handledEventsStore,
+                serviceId, this.site);
+        handlersRegistrar.setGlobalEventsProducer(globalEventsProducer);
+        handlersRegistrar.setBroadcastThreshold(broadcastThreshold);
+
+        if (promoteRate > 0) {
+            dedicatedTopicManager = new DedicatedTopicManager(serviceId, eventDispatcher,
+                    remoteServiceId -> new LoopbackEventsConsumer(broker, remoteServiceId));
+            dedicatedTopicManager.setPromoteRate(promoteRate);
+            dedicatedTopicManager.setDemoteRate(promoteRate / 10);
+            dedicatedTopicManager.setTopicCleaner(remoteServiceId -> broker.delete(LoopbackTopics.eventsFor(remoteServiceId)));
+            globalEventsConsumer.setDedicatedTopicManager(dedicatedTopicManager);
+            handledProducer.setDedicatedTopicManager(dedicatedTopicManager);
+        } else {
+            dedicatedTopicManager = null;
+        }
+    }
+
+    /**
+     * Registers the handlers of the given beans, along with those of the messaging components, and starts the
+     * service by dispatching "onStartup".
+     */
+    public void start(Collection<?> beans) {
+        List<Object> allBeans = new ArrayList<>(beans);
+        allBeans.add(globalEventsProducer);
+        allBeans.add(globalEventsConsumer);
+        allBeans.add(broadcastEventsConsumer);
+        allBeans.add(handledProducer);
+        allBeans.add(handlersRegistrar);
+        if (dedicatedTopicManager != null) allBeans.add(dedicatedTopicManager);
+
+        eventHandlers.init(() -> allBeans);
+        eventDispatcher.dispatchEvent(new NamedEvent("onStartup"));
+        log.info("Loopback service {} started with {} beans", serviceId, beans.size());
+    }
+
+    public void stop() {
+        eventDispatcher.dispatchEvent(new NamedEvent("onShutdown"));
+        handlersRegistrar.stopStream();
+        globalEventsConsumer.stop();
+        broadcastEventsConsumer.stop();
+        eventHandlers.unregisterAll(EventHandlers.DEFAULT_DRAIN_TIMEOUT);
+        log.info("Loopback service {} stopped", serviceId);
+    }
+}
@@ -0,0 +1,95 @@
+package com.cwsoft.eventrouter.loopback;
+
+import com.cwsoft.messaging.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Stream of the messages of a loopback topic, consumed as a group on a thread of its own once started. Each stream
+ * should have its own group so that it sees every message.
+ */
+@Slf4j
+public class LoopbackStream<K, V> implements Stream<K, V> {
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+    private final LoopbackBroker broker;
+    private final String topic;
+    private final String group;
+    private final Function<V, K> keyFunction;
+    private final List<BiPredicate<? super K, ? super V>> filters = new ArrayList<>();
+    private BiConsumer<? super K, ? super V> action = (k, v) -> {};
+    private volatile Thread thread;
+
+    public LoopbackStream(LoopbackBroker broker, String topic, String group, Function<V, K> keyFunction) {
+        this.broker = broker;
+        this.topic = topic;
+        this.group = group;
+        this.keyFunction = keyFunction;
+    }
+
+    @Override
+    public LoopbackStream<K, V> filter(BiPredicate<? super K, ? super V> predicate) {
+        filters.add(predicate);
+        return this;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        this.action = action;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (thread != null) return;
+
+        LoopbackBroker.Subscription subscription = broker.subscribe(topic, group);
+        thread = new Thread(() -> run(subscription), "loopback-stream-" + group);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread running = thread;
+        thread = null;
+        if (running == null) return;
+
+        running.interrupt();
+        try {
+            running.join(POLL_TIMEOUT.toMillis() * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run(LoopbackBroker.Subscription subscription) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                V value = (V) subscription.poll(POLL_TIMEOUT);
+                if (value == null) continue;
+
+                K key = keyFunction.apply(value);
+                if (filters.stream().allMatch(filter -> filter.test(key, value))) {
+                    action.accept(key, value);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (LoopbackUnavailableException e) {
+                try {
+                    Thread.sleep(POLL_TIMEOUT.toMillis());
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            } catch (RuntimeException e) {
+                log.error("Error processing message from loopback topic {}", topic, e);
+            }
+        }
+    }
+}
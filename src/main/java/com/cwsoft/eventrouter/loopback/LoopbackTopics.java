@@ -0,0 +1,21 @@
+package com.cwsoft.eventrouter.loopback;
+
+import com.cwsoft.eventrouter.global.BroadcastEnvelope;
+
+/**
+ * Names of the topics used by the loopback messaging, matching those used over the real messaging.
+ */
+public final class LoopbackTopics {
+    public static final String HANDLED_EVENTS = "events.dispatch.events_handled_by_service";
+    public static final String BROADCAST = BroadcastEnvelope.TOPIC;
+
+    private LoopbackTopics() {
+    }
+
+    /**
+     * @return the topic of the global events for the given service.
+     */
+    public static String eventsFor(String serviceId) {
+        return "events.dispatch.events_for_service_" + serviceId.replace(" ", "_");
+    }
+}
@@ -0,0 +1,10 @@
+package com.cwsoft.eventrouter.loopback;
+
+/**
+ * Thrown by the loopback messaging when the broker is unavailable or a failure has been injected.
+ */
+public class LoopbackUnavailableException extends RuntimeException {
+    public LoopbackUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This sub-package of the event router contains an in-JVM implementation of the messaging interfaces, so that many
+ * services, each with its own dispatcher and handlers, can be run and load tested in one JVM without a broker.
+ */
+package com.cwsoft.eventrouter.loopback;
@@ -0,0 +1,50 @@
+package com.cwsoft.eventrouter.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics for the consumer of global events.
+ */
+public class GlobalConsumerMetrics {
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder consumeFailures = new LongAdder();
+    private final LongAdder dispatchFailures = new LongAdder();
+    private final LongAdder duplicatesDropped = new LongAdder();
+    @Getter
+    private final Histogram dispatchTime = new Histogram();
+
+    public void consumed(long dispatchNanos) {
+        consumed.increment();
+        dispatchTime.record(dispatchNanos);
+    }
+
+    public void consumeFailed() {
+        consumeFailures.increment();
+    }
+
+    public void dispatchFailed() {
+        dispatchFailures.increment();
+    }
+
+    public void duplicateDropped() {
+        duplicatesDropped.increment();
+    }
+
+    public long getConsumed() {
+        return consumed.sum();
+    }
+
+    public long getConsumeFailures() {
+        return consumeFailures.sum();
+    }
+
+    public long getDispatchFailures() {
+        return dispatchFailures.sum();
+    }
+
+    public long getDuplicatesDropped() {
+        return duplicatesDropped.sum();
+    }
+}
@@ -0,0 +1,60 @@
+package com.cwsoft.eventrouter.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics for the producer of global events.
+ */
+public class GlobalProducerMetrics {
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    @Getter
+    private final Histogram sendTime = new Histogram();
+    private volatile IntSupplier retryQueueSize = () -> 0;
+
+    public void sent(long sendNanos) {
+        sent.increment();
+        sendTime.record(sendNanos);
+    }
+
+    public void failed() {
+        failed.increment();
+    }
+
+    public void retried() {
+        retried.increment();
+    }
+
+    public void dropped() {
+        dropped.increment();
+    }
+
+    public void setRetryQueueSize(IntSupplier retryQueueSize) {
+        this.retryQueueSize = retryQueueSize;
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getRetryQueueSize() {
+        return retryQueueSize.getAsInt();
+    }
+}
@@ -0,0 +1,94 @@
+package com.cwsoft.eventrouter.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics for one local handler: the depth of its mailbox, the time events wait in the mailbox and the time taken
+ * by the handler method.
+ */
+public class HandlerMetrics implements HandlerMetricsMXBean {
+    @Getter
+    private final String name;
+    private final IntSupplier queueDepth;
+
+    private final LongAccumulator queueHighWaterMark = new LongAccumulator(Math::max, 0);
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    @Getter
+    private final Histogram waitTime = new Histogram();
+    @Getter
+    private final Histogram executionTime = new Histogram();
+
+    HandlerMetrics(String name, IntSupplier queueDepth) {
+        this.name = name;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Records the depth of the mailbox after an event has been added to it.
+     */
+    public void enqueued(int depth) {
+        queueHighWaterMark.accumulate(depth);
+    }
+
+    /**
+     * Records an invocation of the handler.
+     *
+     * @param waitNanos      the time the event waited in the mailbox.
+     * @param executionNanos the time taken by the handler.
+     * @param failed         true if the handler threw an exception.
+     */
+    public void invoked(long waitNanos, long executionNanos, boolean failed) {
+        invocations.increment();
+        if (failed) failures.increment();
+        waitTime.record(waitNanos);
+        executionTime.record(executionNanos);
+    }
+
+    /**
+     * Records an invocation of the handler for an event whose wait in the mailbox was not timed, the wait time being
+     * sampled for events dispatched synchronously.
+     *
+     * @param executionNanos the time taken by the handler.
+     * @param failed         true if the handler threw an exception.
+     */
+    public void invoked(long executionNanos, boolean failed) {
+        invocations.increment();
+        if (failed) failures.increment();
+        executionTime.record(executionNanos);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public long getQueueHighWaterMark() {
+        return queueHighWaterMark.get();
+    }
+
+    @Override
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getWaitTimeNanos() {
+        return waitTime.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getExecutionTimeNanos() {
+        return executionTime.snapshot();
+    }
+}
@@ -0,0 +1,18 @@
+package com.cwsoft.eventrouter.metrics;
+
+/**
+ * JMX view of the metrics of a local handler, registered as {@code com.cwsoft.eventrouter:type=Handler,name=...}.
+ */
+public interface HandlerMetricsMXBean {
+    int getQueueDepth();
+
+    long getQueueHighWaterMark();
+
+    long getInvocations();
+
+    long getFailures();
+
+    HistogramSnapshot getWaitTimeNanos();
+
+    HistogramSnapshot getExecutionTimeNanos();
+}
@@ -0,0 +1,21 @@
+package com.cwsoft.eventrouter.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Point in time summary of a {@link Histogram}. A java bean so that it maps to composite data over JMX.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class HistogramSnapshot {
+    private final long count;
+    private final double mean;
+    private final long max;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+}
@@ -0,0 +1,10 @@
+package com.cwsoft.eventrouter.metrics;
+
+/**
+ * Service provider interface for publishing router metrics to a monitoring system.
+ * Implementations are either added with {@link RouterMetrics#startReporting(MetricsReporter, java.time.Duration)} or
+ * discovered through {@link java.util.ServiceLoader} by {@link RouterMetrics#startReporting(java.time.Duration)}.
+ */
+public interface MetricsReporter {
+    void report(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,33 @@
+package com.cwsoft.eventrouter.metrics;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point in time copy of all router metrics, handed to {@link MetricsReporter}s.
+ * Counts are cumulative since startup, rates can be derived by reporters from successive snapshots.
+ */
+public record MetricsSnapshot(Instant timestamp,
+                              Map<String, Long> dispatchCounts,
+                              List<Handler> handlers,
+                              Producer producer,
+                              Consumer consumer,
+                              Trace trace) {
+
+    public record Handler(String name, int queueDepth, long queueHighWaterMark, long invocations, long failures,
+                          HistogramSnapshot waitTimeNanos, HistogramSnapshot executionTimeNanos) {
+    }
+
+    public record Producer(long sent, long failed, long retried, long dropped, int retryQueueSize,
+                           HistogramSnapshot sendTimeNanos) {
+    }
+
+    public record Consumer(long consumed, long consumeFailures, long dispatchFailures, long duplicatesDropped,
+                           HistogramSnapshot dispatchTimeNanos) {
+    }
+
+    public record Trace(HistogramSnapshot brokerNanos, HistogramSnapshot consumerNanos, HistogramSnapshot queueNanos,
+                        HistogramSnapshot handlerNanos, HistogramSnapshot totalNanos) {
+    }
+}
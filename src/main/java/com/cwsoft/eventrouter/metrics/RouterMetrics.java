@@ -0,0 +1,233 @@
+package com.cwsoft.eventrouter.metrics;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Registry of the metrics recorded by the event router. Recording uses striped counters ({@link LongAdder}) and
+ * lock free {@link Histogram}s so it can be done on the dispatch and handler hot paths.
+ * <p>
+ * The metrics are exposed through JMX under the {@value #JMX_DOMAIN} domain (unless the system property
+ * {@code eventrouter.metrics.jmx} is false) and can be pushed periodically to {@link MetricsReporter}s.
+ */
+@Slf4j
+public class RouterMetrics implements RouterMetricsMXBean {
+    public static final String JMX_DOMAIN = "com.cwsoft.eventrouter";
+
+    private static final RouterMetrics instance = new RouterMetrics(Boolean.parseBoolean(System.getProperty("eventrouter.metrics.jmx", "true")));
+
+    /**
+     * @return the metrics registry of this service.
+     */
+    public static RouterMetrics getInstance() {
+        return instance;
+    }
+
+    private final boolean jmxEnabled;
+    private final Map<String, LongAdder> dispatchCounts = new ConcurrentHashMap<>();
+    private final Map<String, HandlerMetrics> handlers = new ConcurrentHashMap<>();
+    @Getter
+    private final GlobalProducerMetrics producer = new GlobalProducerMetrics();
+    @Getter
+    private final GlobalConsumerMetrics consumer = new GlobalConsumerMetrics();
+    @Getter
+    private final TraceMetrics trace = new TraceMetrics();
+
+    private ScheduledExecutorService reportingExecutor;
+
+    public RouterMetrics(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+        registerMBean("type=Router", this);
+        registerMBean("type=Trace", trace);
+    }
+
+    public void dispatched(String eventName) {
+        dispatched(eventName, 1);
+    }
+
+    public void dispatched(String eventName, int noOfEvents) {
+        LongAdder counter = dispatchCounts.get(eventName);
+        if (counter == null) counter = dispatchCounts.computeIfAbsent(eventName, name -> new LongAdder());
+        counter.add(noOfEvents);
+    }
+
+    /**
+     * Creates the metrics for a local handler. Handlers sharing a name, e.g. two instances of a class handling the same
+     * event, each get metrics of their own, those registered while the name is taken being named {@code "name (2)"},
+     * {@code "name (3)"} and so on.
+     *
+     * @param name       the name of the handler.
+     * @param queueDepth supplies the current depth of the handler's mailbox.
+     * @return the metrics of the handler, named as registered.
+     */
+    public HandlerMetrics registerHandler(String name, IntSupplier queueDepth) {
+        HandlerMetrics handlerMetrics = new HandlerMetrics(name, queueDepth);
+        for (int n = 2; handlers.putIfAbsent(handlerMetrics.getName(), handlerMetrics) != null; n++) {
+            handlerMetrics = new HandlerMetrics(name + " (" + n + ")", queueDepth);
+        }
+        if (!handlerMetrics.getName().equals(name)) {
+            log.debug("Handler metrics {} are already registered, registering as {}", name, handlerMetrics.getName());
+        }
+        registerMBean("type=Handler,name=" + ObjectName.quote(handlerMetrics.getName()), handlerMetrics);
+        return handlerMetrics;
+    }
+
+    public void unregisterHandler(HandlerMetrics handlerMetrics) {
+        if (handlers.remove(handlerMetrics.getName(), handlerMetrics)) {
+            unregisterMBean("type=Handler,name=" + ObjectName.quote(handlerMetrics.getName()));
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counts = new TreeMap<>();
+        dispatchCounts.forEach((eventName, counter) -> counts.put(eventName, counter.sum()));
+
+        return new MetricsSnapshot(
+                Instant.now(),
+                counts,
+                handlers.values().stream()
+                        .map(handler -> new MetricsSnapshot.Handler(handler.getName(), handler.getQueueDepth(),
+                                handler.getQueueHighWaterMark(), handler.getInvocations(), handler.getFailures(),
+                                handler.getWaitTimeNanos(), handler.getExecutionTimeNanos()))
+                        .toList(),
+                new MetricsSnapshot.Producer(producer.getSent(), producer.getFailed(), producer.getRetried(),
+                        producer.getDropped(), producer.getRetryQueueSize(), producer.getSendTime().snapshot()),
+                new MetricsSnapshot.Consumer(consumer.getConsumed(), consumer.getConsumeFailures(),
+                        consumer.getDispatchFailures(), consumer.getDuplicatesDropped(), consumer.getDispatchTime().snapshot()),
+                new MetricsSnapshot.Trace(trace.getBrokerNanos(), trace.getConsumerNanos(), trace.getQueueNanos(),
+                        trace.getHandlerNanos(), trace.getTotalNanos()));
+    }
+
+    /**
+     * Starts reporting to every {@link MetricsReporter} found by the {@link ServiceLoader}.
+     */
+    public void startReporting(Duration period) {
+        ServiceLoader.load(MetricsReporter.class).forEach(reporter -> startReporting(reporter, period));
+    }
+
+    public synchronized void startReporting(MetricsReporter reporter, Duration period) {
+        if (reportingExecutor == null) {
+            reportingExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "EVT-METRICS-REPORTER");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        log.info("Reporting router metrics to {} every {}", reporter.getClass().getName(), period);
+        reportingExecutor.scheduleAtFixedRate(() -> {
+            try {
+                reporter.report(snapshot());
+            } catch (Exception ex) {
+                log.warn("Metrics reporter {} failed", reporter, ex);
+            }
+        }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (reportingExecutor != null) {
+            reportingExecutor.shutdownNow();
+            reportingExecutor = null;
+        }
+    }
+
+    @Override
+    public Map<String, Long> getDispatchCounts() {
+        return snapshot().dispatchCounts();
+    }
+
+    @Override
+    public long getGlobalEventsSent() {
+        return producer.getSent();
+    }
+
+    @Override
+    public long getGlobalSendFailures() {
+        return producer.getFailed();
+    }
+
+    @Override
+    public long getGlobalSendRetries() {
+        return producer.getRetried();
+    }
+
+    @Override
+    public long getGlobalEventsDropped() {
+        return producer.getDropped();
+    }
+
+    @Override
+    public int getGlobalRetryQueueSize() {
+        return producer.getRetryQueueSize();
+    }
+
+    @Override
+    public HistogramSnapshot getGlobalSendTimeNanos() {
+        return producer.getSendTime().snapshot();
+    }
+
+    @Override
+    public long getGlobalEventsConsumed() {
+        return consumer.getConsumed();
+    }
+
+    @Override
+    public long getGlobalConsumeFailures() {
+        return consumer.getConsumeFailures();
+    }
+
+    @Override
+    public long getGlobalDispatchFailures() {
+        return consumer.getDispatchFailures();
+    }
+
+    @Override
+    public long getGlobalDuplicatesDropped() {
+        return consumer.getDuplicatesDropped();
+    }
+
+    @Override
+    public HistogramSnapshot getGlobalDispatchTimeNanos() {
+        return consumer.getDispatchTime().snapshot();
+    }
+
+    private void registerMBean(String keys, Object mBean) {
+        if (!jmxEnabled) return;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":" + keys);
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(mBean, objectName);
+        } catch (Exception ex) {
+            log.warn("Unable to register metrics MBean {}", keys, ex);
+        }
+    }
+
+    private void unregisterMBean(String keys) {
+        if (!jmxEnabled) return;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":" + keys);
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        } catch (Exception ex) {
+            log.warn("Unable to unregister metrics MBean {}", keys, ex);
+        }
+    }
+}
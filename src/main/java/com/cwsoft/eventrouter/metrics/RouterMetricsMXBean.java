@@ -0,0 +1,32 @@
+package com.cwsoft.eventrouter.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the router wide metrics, registered as {@code com.cwsoft.eventrouter:type=Router}.
+ */
+public interface RouterMetricsMXBean {
+    Map<String, Long> getDispatchCounts();
+
+    long getGlobalEventsSent();
+
+    long getGlobalSendFailures();
+
+    long getGlobalSendRetries();
+
+    long getGlobalEventsDropped();
+
+    int getGlobalRetryQueueSize();
+
+    HistogramSnapshot getGlobalSendTimeNanos();
+
+    long getGlobalEventsConsumed();
+
+    long getGlobalConsumeFailures();
+
+    long getGlobalDispatchFailures();
+
+    long getGlobalDuplicatesDropped();
+
+    HistogramSnapshot getGlobalDispatchTimeNanos();
+}
@@ -0,0 +1,22 @@
+package com.cwsoft.eventrouter.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reporter that logs a summary of the router metrics.
+ */
+@Slf4j
+public class Slf4jMetricsReporter implements MetricsReporter {
+
+    @Override
+    public void report(MetricsSnapshot snapshot) {
+        log.info("dispatch counts {}", snapshot.dispatchCounts());
+        snapshot.handlers().forEach(handler ->
+                log.info("handler {} depth {} (max {}) invocations {} failures {} wait p99 {}ns execution p99 {}ns",
+                        handler.name(), handler.queueDepth(), handler.queueHighWaterMark(), handler.invocations(),
+                        handler.failures(), handler.waitTimeNanos().getP99(), handler.executionTimeNanos().getP99()));
+        log.info("global producer {}", snapshot.producer());
+        log.info("global consumer {}", snapshot.consumer());
+        log.info("global event latency {}", snapshot.trace());
+    }
+}
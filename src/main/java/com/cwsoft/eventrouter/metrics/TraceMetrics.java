@@ -0,0 +1,59 @@
+package com.cwsoft.eventrouter.metrics;
+
+import lombok.Getter;
+
+/**
+ * Latency of global events on the receiving service, broken down by hop using the trace header of the event:
+ * <ul>
+ *     <li>broker - from being handed to the producer in the sending service to being consumed here</li>
+ *     <li>consumer - from being consumed to being queued for a local handler</li>
+ *     <li>queue - from being queued to the handler being invoked</li>
+ *     <li>handler - the time taken by the handler</li>
+ *     <li>total - from being dispatched in the sending service to the handler completing here</li>
+ * </ul>
+ * The broker and total hops span hosts so are subject to clock skew.
+ */
+@Getter
+public class TraceMetrics implements TraceMetricsMXBean {
+    private final Histogram broker = new Histogram();
+    private final Histogram consumer = new Histogram();
+    private final Histogram queue = new Histogram();
+    private final Histogram handler = new Histogram();
+    private final Histogram total = new Histogram();
+
+    public void consumed(long brokerNanos) {
+        broker.record(brokerNanos);
+    }
+
+    public void handled(long consumerNanos, long queueNanos, long handlerNanos, long totalNanos) {
+        consumer.record(consumerNanos);
+        queue.record(queueNanos);
+        handler.record(handlerNanos);
+        total.record(totalNanos);
+    }
+
+    @Override
+    public HistogramSnapshot getBrokerNanos() {
+        return broker.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getConsumerNanos() {
+        return consumer.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getQueueNanos() {
+        return queue.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getHandlerNanos() {
+        return handler.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getTotalNanos() {
+        return total.snapshot();
+    }
+}
@@ -0,0 +1,16 @@
+package com.cwsoft.eventrouter.metrics;
+
+/**
+ * JMX view of the per hop latency of global events, registered as {@code com.cwsoft.eventrouter:type=Trace}.
+ */
+public interface TraceMetricsMXBean {
+    HistogramSnapshot getBrokerNanos();
+
+    HistogramSnapshot getConsumerNanos();
+
+    HistogramSnapshot getQueueNanos();
+
+    HistogramSnapshot getHandlerNanos();
+
+    HistogramSnapshot getTotalNanos();
+}
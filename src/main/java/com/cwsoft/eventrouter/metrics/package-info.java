@@ -0,0 +1,5 @@
+/**
+ * This sub-package of the event router contains the metrics recorded by the router, exposed through JMX and
+ * pluggable reporters.
+ */
+package com.cwsoft.eventrouter.metrics;
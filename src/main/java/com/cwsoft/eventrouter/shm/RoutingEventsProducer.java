@@ -0,0 +1,67 @@
+package com.cwsoft.eventrouter.shm;
+
+import com.cwsoft.eventrouter.RemoteServiceEvent;
+import com.cwsoft.messaging.Producer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Producer of global events that sends over shared memory to services on this host and over the broker to all others.
+ * A service is on this host if its registration advertises the same host as this service. Events that can't be sent
+ * over shared memory, because the service has no ring or its ring is full, are sent over the broker, so events to a
+ * service on this host may arrive out of order while its ring is full. Broadcast events are for every service so are
+ * always sent over the broker.
+ */
+@Slf4j
+public class RoutingEventsProducer implements Producer<RemoteServiceEvent> {
+    private final Producer<RemoteServiceEvent> brokerProducer;
+    private final Producer<RemoteServiceEvent> sharedMemoryProducer;
+    private final String localHost;
+    private final Function<String, String> hostOfService;
+
+    private final LongAdder sentOverSharedMemory = new LongAdder();
+    private final LongAdder sentOverBroker = new LongAdder();
+
+    /**
+     * @param localHost     the host advertised by this service.
+     * @param hostOfService gives the host advertised by a remote service, or null if it isn't known, e.g.
+     *                      {@code HandlersRegistrar::getRemoteServiceHost}.
+     */
+    public RoutingEventsProducer(Producer<RemoteServiceEvent> brokerProducer, Producer<RemoteServiceEvent> sharedMemoryProducer,
+                                 String localHost, Function<String, String> hostOfService) {
+        if (brokerProducer == null || sharedMemoryProducer == null || hostOfService == null)
+            throw new IllegalArgumentException("brokerProducer, sharedMemoryProducer and hostOfService must not be null");
+        if (localHost == null || localHost.isBlank()) throw new IllegalArgumentException("localHost must not be blank");
+
+        this.brokerProducer = brokerProducer;
+        this.sharedMemoryProducer = sharedMemoryProducer;
+        this.localHost = localHost;
+        this.hostOfService = hostOfService;
+    }
+
+    @Override
+    public void produce(RemoteServiceEvent remoteServiceEvent) {
+        if (!remoteServiceEvent.isBroadcast() && localHost.equals(hostOfService.apply(remoteServiceEvent.getRemoteServiceId()))) {
+            try {
+                sharedMemoryProducer.produce(remoteServiceEvent);
+                sentOverSharedMemory.increment();
+                return;
+            } catch (SharedMemoryUnavailableException e) {
+                log.debug("Sending event for {} over the broker: {}", remoteServiceEvent.getRemoteServiceId(), e.getMessage());
+            }
+        }
+
+        brokerProducer.produce(remoteServiceEvent);
+        sentOverBroker.increment();
+    }
+
+    public long getSentOverSharedMemory() {
+        return sentOverSharedMemory.sum();
+    }
+
+    public long getSentOverBroker() {
+        return sentOverBroker.sum();
+    }
+}
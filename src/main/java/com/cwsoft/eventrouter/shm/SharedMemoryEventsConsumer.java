@@ -0,0 +1,83 @@
+package com.cwsoft.eventrouter.shm;
+
+import com.cwsoft.eventrouter.Event;
+import com.cwsoft.eventrouter.NamedEvent;
+import com.cwsoft.messaging.ClosableConsumer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Consumer of the global events for a service from its shared memory ring, which it creates. Waiting for an event
+ * spins briefly and then parks for short intervals, so an event is picked up within microseconds without holding a
+ * core while idle.
+ */
+@Slf4j
+public class SharedMemoryEventsConsumer implements ClosableConsumer<Event> {
+    private static final int SPINS = 1_000;
+    private static final long PARK_NANOS = 50_000;
+
+    private final SharedMemoryRing ring;
+    private volatile boolean closed = false;
+
+    public SharedMemoryEventsConsumer(Path directory, String serviceId) {
+        this(directory, serviceId, SharedMemoryRings.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the size of the ring in bytes, a power of two.
+     */
+    public SharedMemoryEventsConsumer(Path directory, String serviceId, int capacity) {
+        try {
+            Files.createDirectories(directory);
+            this.ring = SharedMemoryRing.createForConsumer(SharedMemoryRings.ringFor(directory, serviceId), capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create shared memory ring for " + serviceId + " in " + directory, e);
+        }
+    }
+
+    @Override
+    public Optional<Event> consume(Duration timeout) {
+        if (closed) {
+            Thread.currentThread().interrupt(); // ends the consuming loop
+            return Optional.empty();
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int spins = 0;
+        byte[] message;
+        while ((message = ring.poll()) == null) {
+            if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) return Optional.empty();
+
+            if (spins < SPINS) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+
+        return Optional.ofNullable((Event) NamedEvent.decode(new String(message, StandardCharsets.UTF_8)));
+    }
+
+    public long getDepth() {
+        return ring.getDepth();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            ring.close();
+        } catch (IOException e) {
+            log.warn("Failed to close shared memory ring {}", ring.getFile(), e);
+        }
+    }
+}
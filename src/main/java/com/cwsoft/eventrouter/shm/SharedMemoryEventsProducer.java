@@ -0,0 +1,81 @@
+package com.cwsoft.eventrouter.shm;
+
+import com.cwsoft.eventrouter.RemoteServiceEvent;
+import com.cwsoft.eventrouter.global.SerializationException;
+import com.cwsoft.messaging.Producer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Producer of global events to the shared memory rings of the services they are for. Rings are opened on first use, and
+ * opening a missing ring is retried no more than every 5 seconds.
+ */
+@Slf4j
+public class SharedMemoryEventsProducer implements Producer<RemoteServiceEvent>, AutoCloseable {
+    private final Path directory;
+    private static final long RETRY_OPEN_NANOS = 5_000_000_000L;
+
+    private final Map<String, SharedMemoryRing> rings = new ConcurrentHashMap<>();
+    private final Map<String, Long> retryOpenAt = new ConcurrentHashMap<>(); // services whose ring couldn't be opened
+
+    public SharedMemoryEventsProducer(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @throws SharedMemoryUnavailableException if the service has no ring or its ring is full.
+     */
+    @Override
+    public void produce(RemoteServiceEvent remoteServiceEvent) {
+        byte[] encoded;
+        try {
+            encoded = remoteServiceEvent.getEvent().encode().getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Failed to encode event " + remoteServiceEvent.getEvent().getName(), e);
+        }
+
+        if (!ring(remoteServiceEvent.getRemoteServiceId()).offer(encoded)) {
+            throw new SharedMemoryUnavailableException("Shared memory ring of " + remoteServiceEvent.getRemoteServiceId() + " is full");
+        }
+    }
+
+    @Override
+    public void close() {
+        rings.values().forEach(ring -> {
+            try {
+                ring.close();
+            } catch (IOException e) {
+                log.warn("Failed to close shared memory ring {}", ring.getFile(), e);
+            }
+        });
+        rings.clear();
+    }
+
+    private SharedMemoryRing ring(String serviceId) {
+        SharedMemoryRing ring = rings.get(serviceId);
+        if (ring != null) return ring;
+
+        Long retryAt = retryOpenAt.get(serviceId);
+        if (retryAt != null && System.nanoTime() - retryAt < 0) {
+            throw new SharedMemoryUnavailableException("No shared memory ring for " + serviceId);
+        }
+
+        return rings.computeIfAbsent(serviceId, k -> {
+            try {
+                SharedMemoryRing opened = SharedMemoryRing.openForProducer(SharedMemoryRings.ringFor(directory, serviceId));
+                retryOpenAt.remove(serviceId);
+                log.info("Sending global events for {} over shared memory ring {}", serviceId, opened.getFile());
+                return opened;
+            } catch (IOException e) {
+                retryOpenAt.put(serviceId, System.nanoTime() + RETRY_OPEN_NANOS);
+                throw new SharedMemoryUnavailableException("No shared memory ring for " + serviceId, e);
+            }
+        });
+    }
+}
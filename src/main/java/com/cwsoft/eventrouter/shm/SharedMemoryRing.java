@@ -0,0 +1,220 @@
+package com.cwsoft.eventrouter.shm;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ring buffer of messages in a memory mapped file, written by any number of producers, in any number of processes,
+ * and read by a single consumer.
+ * <p>
+ * Producers claim space by compare and swap on the producer position in the file header, so each claimed record has
+ * a single writer, then write the message and publish it by writing its length last, with release semantics. The
+ * consumer reads records in position order, zeroes them and publishes its own position, which is what producers
+ * check for free space. A record that would run past the end of the buffer is preceded by a padding record to the
+ * end. The consumer position is kept in the file, so a restarted consumer resumes where it left off.
+ * <p>
+ * Records are {@code [length][message]} aligned to 8 bytes, a negative length marking padding. A producer that dies
+ * between claiming and publishing a record stalls the ring until it is recreated.
+ */
+@Slf4j
+public class SharedMemoryRing implements AutoCloseable {
+    private static final int MAGIC = 0x43575352; // "CWSR"
+    private static final int FORMAT = 1;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int PRODUCER_POSITION_OFFSET = 64;  // own cache line, contended by producers
+    private static final int CONSUMER_POSITION_OFFSET = 128; // own cache line, written by the consumer
+    private static final int HEADER_SIZE = 256;
+    private static final int RECORD_HEADER_SIZE = 4;
+    private static final int ALIGNMENT = 8;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    @Getter
+    private final Path file;
+    @Getter
+    private final int capacity;
+    private final int mask;
+    private final FileChannel channel;
+    private final FileLock consumerLock; // null for producers
+    private final MappedByteBuffer buffer;
+
+    private SharedMemoryRing(Path file, FileChannel channel, FileLock consumerLock, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.channel = channel;
+        this.consumerLock = consumerLock;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Opens the ring in the given file as its consumer, creating it if it doesn't exist or isn't a ring of the given
+     * capacity.
+     *
+     * @param capacity the size of the buffer in bytes, a power of two.
+     * @throws IllegalStateException if the ring already has a consumer.
+     */
+    public static SharedMemoryRing createForConsumer(Path file, int capacity) throws IOException {
+        if (capacity < 1024 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two of at least 1024");
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) throw new IllegalStateException("Shared memory ring " + file + " already has a consumer");
+
+            boolean valid = channel.size() == HEADER_SIZE + capacity;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+            buffer.order(ByteOrder.nativeOrder());
+
+            if (valid && buffer.getInt(0) == MAGIC && buffer.getInt(4) == FORMAT && buffer.getInt(CAPACITY_OFFSET) == capacity) {
+                log.info("Opened shared memory ring {} at consumer position {}", file, (long) LONG.getVolatile(buffer, CONSUMER_POSITION_OFFSET));
+            } else {
+                for (int offset = 0; offset < HEADER_SIZE + capacity; offset += ALIGNMENT) {
+                    buffer.putLong(offset, 0);
+                }
+                buffer.putInt(4, FORMAT);
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                INT.setRelease(buffer, 0, MAGIC);
+                log.info("Created shared memory ring {} of {} bytes", file, capacity);
+            }
+
+            return new SharedMemoryRing(file, channel, lock, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing ring as a producer.
+     *
+     * @throws IOException if the file doesn't exist or isn't a ring.
+     */
+    public static SharedMemoryRing openForProducer(Path file) throws IOException {
+        if (!Files.exists(file)) throw new IOException("No shared memory ring " + file);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) throw new IOException("Not a shared memory ring: " + file);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if ((int) INT.getAcquire(buffer, 0) != MAGIC || buffer.getInt(4) != FORMAT || channel.size() != HEADER_SIZE + capacity) {
+                throw new IOException("Not a shared memory ring: " + file);
+            }
+
+            return new SharedMemoryRing(file, channel, null, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a message to the ring.
+     *
+     * @return false if there isn't room for the message until the consumer catches up.
+     */
+    public boolean offer(byte[] message) {
+        if (message.length == 0) throw new IllegalArgumentException("message must not be empty");
+
+        int recordSize = align(RECORD_HEADER_SIZE + message.length);
+        if (recordSize > capacity) throw new IllegalArgumentException("message of " + message.length + " bytes exceeds the ring capacity");
+
+        while (true) {
+            long position = (long) LONG.getVolatile(buffer, PRODUCER_POSITION_OFFSET);
+            int index = (int) (position & mask);
+            int toEnd = capacity - index;
+            int claim = (recordSize <= toEnd) ? recordSize : toEnd + recordSize;
+
+            if (position + claim - (long) LONG.getVolatile(buffer, CONSUMER_POSITION_OFFSET) > capacity) {
+                return false;
+            }
+
+            if (LONG.compareAndSet(buffer, PRODUCER_POSITION_OFFSET, position, position + claim)) {
+                if (claim != recordSize) {
+                    INT.setRelease(buffer, HEADER_SIZE + index, -toEnd);
+                    index = 0;
+                }
+                buffer.put(HEADER_SIZE + index + RECORD_HEADER_SIZE, message);
+                INT.setRelease(buffer, HEADER_SIZE + index, message.length);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes the next message, for the consumer only.
+     *
+     * @return the message, or null if there are none published.
+     */
+    public byte[] poll() {
+        long position = (long) LONG.getOpaque(buffer, CONSUMER_POSITION_OFFSET);
+
+        while (true) {
+            int index = (int) (position & mask);
+            int length = (int) INT.getAcquire(buffer, HEADER_SIZE + index);
+            if (length == 0) return null;
+
+            if (length < 0) {
+                zero(index, -length);
+                position += -length;
+                LONG.setRelease(buffer, CONSUMER_POSITION_OFFSET, position);
+                continue;
+            }
+
+            byte[] message = new byte[length];
+            buffer.get(HEADER_SIZE + index + RECORD_HEADER_SIZE, message);
+            int recordSize = align(RECORD_HEADER_SIZE + length);
+            zero(index, recordSize);
+            LONG.setRelease(buffer, CONSUMER_POSITION_OFFSET, position + recordSize);
+            return message;
+        }
+    }
+
+    /**
+     * @return the bytes claimed by producers and not yet consumed.
+     */
+    public long getDepth() {
+        return (long) LONG.getVolatile(buffer, PRODUCER_POSITION_OFFSET) - (long) LONG.getVolatile(buffer, CONSUMER_POSITION_OFFSET);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (consumerLock != null && consumerLock.isValid()) consumerLock.release();
+        channel.close();
+    }
+
+    /*
+     * records are zeroed once consumed so that any position can later be read as "nothing published" until written.
+     */
+    private void zero(int index, int size) {
+        for (int offset = 0; offset < size; offset += ALIGNMENT) {
+            buffer.putLong(HEADER_SIZE + index + offset, 0);
+        }
+    }
+
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
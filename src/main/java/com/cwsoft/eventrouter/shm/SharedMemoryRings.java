@@ -0,0 +1,41 @@
+package com.cwsoft.eventrouter.shm;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+
+/**
+ * Naming of the shared memory rings and of the host they are shared on.
+ */
+public final class SharedMemoryRings {
+    /**
+     * System property overriding the host advertised by services, for hosts whose services don't see the same host
+     * name, such as containers sharing a directory.
+     */
+    public static final String HOST_PROPERTY = "eventrouter.shm.host";
+    public static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+
+    private SharedMemoryRings() {
+    }
+
+    /**
+     * @return the ring file of the global events for the given service.
+     */
+    public static Path ringFor(Path directory, String serviceId) {
+        return directory.resolve("events_for_service_" + serviceId.replace(" ", "_") + ".ring");
+    }
+
+    /**
+     * @return the host advertised by services on this host, from {@value #HOST_PROPERTY} or else the host name.
+     */
+    public static String localHost() {
+        String host = System.getProperty(HOST_PROPERTY);
+        if (host != null && !host.isBlank()) return host;
+
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Can't determine the local host name, set " + HOST_PROPERTY, e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.cwsoft.eventrouter.shm;
+
+/**
+ * Thrown when a message can't be sent over shared memory: the destination has no ring, or its ring is full.
+ */
+public class SharedMemoryUnavailableException extends RuntimeException {
+    public SharedMemoryUnavailableException(String message) {
+        super(message);
+    }
+
+    public SharedMemoryUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
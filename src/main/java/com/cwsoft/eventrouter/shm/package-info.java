@@ -0,0 +1,10 @@
+/**
+ * This sub-package of the event router contains a shared memory transport for global events between services on the
+ * same host: a memory mapped ring buffer file per destination service in a directory shared by the services.
+ * <p>
+ * A service consumes its ring with a second {@code GlobalEventsConsumer} over a {@link
+ * com.cwsoft.eventrouter.shm.SharedMemoryEventsConsumer}, and advertises its host in its {@code HandledProducer}
+ * announcements. Its {@code GlobalEventsProducer} is given a {@link com.cwsoft.eventrouter.shm.RoutingEventsProducer},
+ * which sends over shared memory to services advertising the same host and over the broker otherwise.
+ */
+package com.cwsoft.eventrouter.shm;
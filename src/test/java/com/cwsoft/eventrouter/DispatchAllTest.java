@@ -0,0 +1,80 @@
+package com.cwsoft.eventrouter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DispatchAllTest {
+    private final List<String> sent = new ArrayList<>();
+    private EventHandlers eventHandlers;
+    private EventDispatcher eventDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        eventHandlers = new EventHandlers();
+        eventHandlers.setHandlerFactory(new ThreadLocalHandlerFactory());
+        eventDispatcher = new EventDispatcher();
+        eventDispatcher.setEventHandlers(eventHandlers);
+    }
+
+    @Test
+    void eventsOfDifferentNamesReachARemoteServiceInOrder() {
+        eventHandlers.add("OrderCreated", new RecordingRemoteHandler("billing"));
+        eventHandlers.add("OrderCancelled", new RecordingRemoteHandler("billing"));
+        eventHandlers.add("OrderCancelled", new RecordingRemoteHandler("shipping"));
+
+        eventDispatcher.dispatchAll(List.of(
+                new Event<>("OrderCreated", 1),
+                new Event<>("OrderCancelled", 1),
+                new Event<>("OrderCreated", 2)));
+
+        assertEquals(List.of("billing:OrderCreated:1", "billing:OrderCancelled:1", "billing:OrderCreated:2"),
+                sent.stream().filter(s -> s.startsWith("billing")).toList());
+        assertEquals(List.of("shipping:OrderCancelled:1"), sent.stream().filter(s -> s.startsWith("shipping")).toList());
+    }
+
+    @Test
+    void consecutiveEventsForAHandlerAreHandedOverInOneBatch() {
+        RecordingRemoteHandler billing = new RecordingRemoteHandler("billing");
+        eventHandlers.add("OrderCreated", billing);
+
+        List<DispatchNote> notes = eventDispatcher.dispatchAll(List.of(new Event<>("OrderCreated", 1), new Event<>("OrderCreated", 2)));
+
+        assertEquals(List.of(2), billing.batchSizes);
+        assertEquals(2, notes.size());
+    }
+
+    private class RecordingRemoteHandler implements RemoteHandler {
+        private final String remoteService;
+        private final List<Integer> batchSizes = new ArrayList<>();
+
+        private RecordingRemoteHandler(String remoteService) {
+            this.remoteService = remoteService;
+        }
+
+        @Override
+        public <E extends NamedEvent> void handle(E e) {
+            sent.add(remoteService + ":" + e.getName() + ":" + ((Event<?>) e).getSource());
+        }
+
+        @Override
+        public void handleAll(List<? extends NamedEvent> events) {
+            batchSizes.add(events.size());
+            events.forEach(this::handle);
+        }
+
+        @Override
+        public String getRemoteService() {
+            return remoteService;
+        }
+
+        @Override
+        public String getRemoteServicesSite() {
+            return "site.test";
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.cwsoft.eventrouter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class FlowEventPublisherTest {
+    private static final String EVENT = "FlowTestEvent";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private EventHandlers eventHandlers;
+    private EventDispatcher eventDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        eventHandlers = new EventHandlers();
+        eventHandlers.setHandlerFactory(new ThreadLocalHandlerFactory());
+        eventDispatcher = new EventDispatcher();
+        eventDispatcher.setEventHandlers(eventHandlers);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventHandlers.unregisterAll(Duration.ZERO);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void deliversOnlyTheEventsRequested() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+        publisher(10, FlowEventPublisher.DEFAULT_DEMAND_TIMEOUT).subscribe(subscriber);
+        awaitUntil(() -> subscriber.subscription != null);
+
+        for (int i = 0; i < 5; i++) {
+            eventDispatcher.dispatchEvent(new Event<>(EVENT, i));
+        }
+        awaitUntil(() -> subscriber.events.size() == 2);
+        Thread.sleep(100);
+        assertEquals(2, subscriber.events.size());
+
+        subscriber.subscription.request(3);
+        awaitUntil(() -> subscriber.events.size() == 5);
+        assertEquals(List.of(0, 1, 2, 3, 4), subscriber.sources());
+    }
+
+    @Test
+    void requestOfZeroSignalsErrorAndUnregisters() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher(10, FlowEventPublisher.DEFAULT_DEMAND_TIMEOUT).subscribe(subscriber);
+        awaitUntil(() -> subscriber.subscription != null);
+
+        subscriber.subscription.request(0);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> subscriber.done.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        awaitUntil(() -> flowHandlers() == 0);
+    }
+
+    @Test
+    void signalsAreSerialized() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher(16, FlowEventPublisher.DEFAULT_DEMAND_TIMEOUT).subscribe(subscriber);
+        awaitUntil(() -> subscriber.subscription != null);
+
+        int threads = 4;
+        int eventsPerThread = 1_000;
+        List<Thread> dispatchers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread dispatcher = new Thread(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    eventDispatcher.dispatchEvent(new Event<>(EVENT, i));
+                }
+            });
+            dispatchers.add(dispatcher);
+            dispatcher.start();
+        }
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.join();
+        }
+
+        awaitUntil(() -> subscriber.events.size() == threads * eventsPerThread);
+        assertFalse(subscriber.overlapped.get(), "signals overlapped");
+    }
+
+    @Test
+    void cancelStopsDeliveryAndUnregisters() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher(10, FlowEventPublisher.DEFAULT_DEMAND_TIMEOUT).subscribe(subscriber);
+        awaitUntil(() -> flowHandlers() == 1 && subscriber.subscription != null);
+
+        eventDispatcher.dispatchEvent(new Event<>(EVENT, 1));
+        awaitUntil(() -> subscriber.events.size() == 1);
+
+        subscriber.subscription.cancel();
+        subscriber.subscription.cancel(); // idempotent
+        awaitUntil(() -> flowHandlers() == 0);
+
+        eventDispatcher.dispatchEvent(new Event<>(EVENT, 2));
+        Thread.sleep(100);
+        assertEquals(1, subscriber.events.size());
+        assertFalse(subscriber.done.isDone());
+    }
+
+    @Test
+    void completesWhenUnregistered() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher(10, FlowEventPublisher.DEFAULT_DEMAND_TIMEOUT).subscribe(subscriber);
+        awaitUntil(() -> flowHandlers() == 1);
+
+        eventDispatcher.dispatchEvent(new Event<>(EVENT, 1));
+        assertEquals(1, eventDispatcher.unregister(subscriber));
+
+        subscriber.done.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1), subscriber.sources());
+        assertEquals(0, flowHandlers());
+    }
+
+    @Test
+    void eachSubscriptionIsAHandlerOfItsOwn() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        FlowEventPublisher publisher = publisher(10, FlowEventPublisher.DEFAULT_DEMAND_TIMEOUT);
+        publisher.subscribe(subscriber);
+        publisher.subscribe(subscriber);
+
+        assertEquals(2, flowHandlers());
+    }
+
+    @Test
+    void stalledSubscriberIsFailedAfterTheDemandTimeout() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher(1, Duration.ofMillis(100)).subscribe(subscriber);
+        awaitUntil(() -> subscriber.subscription != null);
+
+        long startNanos = System.nanoTime();
+        eventDispatcher.dispatchEvent(new Event<>(EVENT, 1));
+        eventDispatcher.dispatchEvent(new Event<>(EVENT, 2)); // waits for demand, then fails the subscriber
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> subscriber.done.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        awaitUntil(() -> flowHandlers() == 0);
+        assertTrue(subscriber.events.isEmpty());
+    }
+
+    private FlowEventPublisher publisher(int bufferSize, Duration demandTimeout) {
+        return FlowEventPublisher.builder()
+                .eventDispatcher(eventDispatcher)
+                .eventName(EVENT)
+                .bufferSize(bufferSize)
+                .demandTimeout(demandTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    private long flowHandlers() {
+        return eventHandlers.get(EVENT).stream().filter(handler -> handler instanceof FlowLocalHandler).count();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadlineNanos) fail("condition not met within 5s");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("interrupted");
+            }
+        }
+    }
+
+    /**
+     * Records the signals it gets, and whether any two of them overlapped.
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<NamedEvent> {
+        private final long initialRequest;
+        private final BlockingQueue<NamedEvent> events = new LinkedBlockingQueue<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final AtomicInteger inSignal = new AtomicInteger();
+        private final AtomicBoolean overlapped = new AtomicBoolean();
+        private volatile Flow.Subscription subscription;
+
+        private RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            enter();
+            this.subscription = subscription;
+            if (initialRequest > 0) subscription.request(initialRequest);
+            exit();
+        }
+
+        @Override
+        public void onNext(NamedEvent event) {
+            enter();
+            events.add(event);
+            Thread.onSpinWait();
+            exit();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            enter();
+            done.completeExceptionally(throwable);
+            exit();
+        }
+
+        @Override
+        public void onComplete() {
+            enter();
+            done.complete(null);
+            exit();
+        }
+
+        private List<Object> sources() {
+            return events.stream().map(event -> ((Event<?>) event).getSource()).toList();
+        }
+
+        private void enter() {
+            if (inSignal.incrementAndGet() != 1) overlapped.set(true);
+        }
+
+        private void exit() {
+            inSignal.decrementAndGet();
+        }
+    }
+}
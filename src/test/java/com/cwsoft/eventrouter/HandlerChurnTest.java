@@ -0,0 +1,148 @@
+package com.cwsoft.eventrouter;
+
+import com.cwsoft.eventrouter.metrics.RouterMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Leak check of the handler lifecycle: registering and unregistering handlers in rounds must leave no handler threads,
+ * no registry entries and no handler metrics behind. Each handler is registered twice, which must not create a second
+ * handler, and is sent an event before it is unregistered. Beans found by {@link EventHandlers#init(BeanSupplier)}
+ * whose method names an event more than once must likewise get one handler.
+ */
+class HandlerChurnTest {
+    private static final String EVENT_PREFIX = "ChurnEvent";
+    private static final int ROUNDS = 5;
+    private static final int HANDLERS_PER_ROUND = 20;
+
+    private EventHandlers eventHandlers;
+    private EventDispatcher eventDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        eventHandlers = new EventHandlers();
+        eventHandlers.setHandlerFactory(new ThreadLocalHandlerFactory());
+        eventDispatcher = new EventDispatcher();
+        eventDispatcher.setEventHandlers(eventHandlers);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventHandlers.unregisterAll(Duration.ZERO);
+    }
+
+    @Test
+    void churnLeavesNoThreadsRegistryEntriesOrMetrics() throws Exception {
+        for (int round = 1; round <= ROUNDS; round++) {
+            List<Receiver> receivers = new ArrayList<>(HANDLERS_PER_ROUND);
+            for (int i = 0; i < HANDLERS_PER_ROUND; i++) {
+                Receiver receiver = new Receiver();
+                eventDispatcher.registerLocalHandler(receiver, "onEvent", EVENT_PREFIX + i);
+                eventDispatcher.registerLocalHandler(receiver, "onEvent", EVENT_PREFIX + i); // must reuse the handler
+                receivers.add(receiver);
+            }
+
+            awaitHandlerThreads(HANDLERS_PER_ROUND); // registering twice must not start a second handler
+            assertEquals(HANDLERS_PER_ROUND, handlerMetrics());
+
+            for (int i = 0; i < HANDLERS_PER_ROUND; i++) {
+                eventDispatcher.dispatchEvent(new Event<>(EVENT_PREFIX + i, i));
+            }
+
+            int closed = 0;
+            for (Receiver receiver : receivers) {
+                closed += eventDispatcher.unregister(receiver);
+            }
+            assertEquals(HANDLERS_PER_ROUND, closed);
+            for (Receiver receiver : receivers) {
+                assertEquals(1, receiver.handled.sum(), "queued events are handled before the handler is closed");
+            }
+
+            awaitHandlerThreads(0);
+            assertEquals(0, handlerMetrics(), "round " + round + " left handler metrics");
+            assertTrue(eventHandlers.getLocalHandlers().isEmpty(), "round " + round + " left local handlers");
+            for (int i = 0; i < HANDLERS_PER_ROUND; i++) {
+                assertTrue(eventHandlers.get(EVENT_PREFIX + i).isEmpty(), "round " + round + " left a registry entry");
+            }
+        }
+    }
+
+    @Test
+    void initRegistersOneHandlerPerMethodAndEvent() throws Exception {
+        for (int round = 1; round <= ROUNDS; round++) {
+            AnnotatedReceiver receiver = new AnnotatedReceiver();
+            eventHandlers.init(() -> List.of(receiver));
+            eventHandlers.init(() -> List.of(receiver)); // must reuse the handler
+
+            awaitHandlerThreads(1); // a local and a global annotation for one event must not start a second handler
+            assertEquals(1, handlerMetrics());
+            assertEquals(1, eventHandlers.get(AnnotatedReceiver.EVENT_NAME).size());
+            assertEquals(List.copyOf(eventHandlers.get(AnnotatedReceiver.EVENT_NAME)),
+                    List.copyOf(eventHandlers.getGlobalHandler(AnnotatedReceiver.EVENT_NAME)));
+
+            eventDispatcher.dispatchEvent(new Event<>(AnnotatedReceiver.EVENT_NAME, round));
+            assertEquals(1, eventDispatcher.unregister(receiver));
+            assertEquals(1, receiver.handled.sum(), "queued events are handled before the handler is closed");
+
+            awaitHandlerThreads(0);
+            assertEquals(0, handlerMetrics(), "round " + round + " left handler metrics");
+            assertTrue(eventHandlers.get(AnnotatedReceiver.EVENT_NAME).isEmpty(), "round " + round + " left a registry entry");
+            assertTrue(eventHandlers.getGlobalHandler(AnnotatedReceiver.EVENT_NAME).isEmpty(), "round " + round + " left a global entry");
+        }
+    }
+
+    private static long handlerThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(Thread::isAlive)
+                .filter(thread -> thread.getName().startsWith("EVT-" + EVENT_PREFIX))
+                .count();
+    }
+
+    private static long handlerMetrics() {
+        return RouterMetrics.getInstance().snapshot().handlers().stream()
+                .filter(handler -> handler.name().startsWith(EVENT_PREFIX))
+                .count();
+    }
+
+    /*
+     * the threads are named once they have started, so their count settles shortly after the handlers are built.
+     */
+    private static void awaitHandlerThreads(long expected) throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (handlerThreads() != expected && System.nanoTime() < deadlineNanos) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertEquals(expected, handlerThreads(), "live handler threads");
+    }
+
+    public static class Receiver {
+        private final LongAdder handled = new LongAdder();
+
+        public void onEvent(Event<?> event) {
+            handled.increment();
+        }
+    }
+
+    public static class AnnotatedReceiver {
+        static final String EVENT_NAME = EVENT_PREFIX + "Init";
+
+        private final LongAdder handled = new LongAdder();
+
+        @EventHandler(name = EVENT_NAME, access = Access.LOCAL)
+        @EventHandler(name = EVENT_NAME, access = Access.GLOBAL)
+        public void onEvent(Event<?> event) {
+            handled.increment();
+        }
+    }
+}
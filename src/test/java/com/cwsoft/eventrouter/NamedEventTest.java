@@ -0,0 +1,65 @@
+package com.cwsoft.eventrouter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NamedEventTest {
+
+    @Test
+    void encodeCarriesTheLatestProduceTime() throws Exception {
+        GlobalEvent<?> event = GlobalEvent.toGlobalEvent(new Event<>("Encoded", 1), "service-a");
+        TraceContext trace = event.getTrace();
+
+        trace.markProduced();
+        long firstProduced = NamedEvent.decode(event.encode()).getTrace().getProducedMicros();
+        Thread.sleep(2);
+        trace.markProduced(); // e.g. produced again on a retry
+        long secondProduced = NamedEvent.decode(event.encode()).getTrace().getProducedMicros();
+
+        assertNotEquals(firstProduced, secondProduced);
+        assertEquals(trace.getProducedMicros(), secondProduced);
+    }
+
+    @Test
+    void encodeWithoutTraceHasNoTraceHeader() throws Exception {
+        NamedEvent event = new NamedEvent("Encoded");
+
+        NamedEvent decoded = NamedEvent.decode(event.encode());
+
+        assertEquals("Encoded", decoded.getName());
+        assertNull(decoded.getTrace());
+    }
+
+    @Test
+    void copiesOfOneDispatchShareATraceAndRedispatchStartsANewOne() {
+        Event<Integer> event = new Event<>("Traced", 1);
+
+        DispatchTraces enclosing = DispatchTraces.begin();
+        long firstTraceId;
+        try {
+            firstTraceId = GlobalEvent.toGlobalEvent(event, "service-a").getTrace().getTraceId();
+            assertEquals(firstTraceId, GlobalEvent.toGlobalEvent(event, "service-a").getTrace().getTraceId());
+        } finally {
+            DispatchTraces.end(enclosing);
+        }
+
+        assertNull(event.getTrace());
+        assertNotEquals(firstTraceId, GlobalEvent.toGlobalEvent(event, "service-a").getTrace().getTraceId());
+    }
+
+    @Test
+    void unknownPriorityIsIgnored() throws Exception {
+        String encoded = NamedEvent.namedBuilder().name("Prioritised").priority(Priority.HIGH).build().encode();
+
+        assertTrue(encoded.contains("\"pri\":\"HIGH\""));
+
+        NamedEvent decoded = NamedEvent.decode(encoded.replace("\"pri\":\"HIGH\"", "\"pri\":\"URGENT\""));
+
+        assertEquals("Prioritised", decoded.getName());
+        assertNull(decoded.getPriority());
+    }
+}
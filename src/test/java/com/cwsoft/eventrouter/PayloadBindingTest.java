@@ -0,0 +1,104 @@
+package com.cwsoft.eventrouter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PayloadBindingTest {
+
+    @Test
+    void eventAndNoParameterAreNotBound() throws Exception {
+        assertNull(PayloadBinding.of(Handlers.class.getMethod("onEvent", Event.class)));
+        assertNull(PayloadBinding.of(Handlers.class.getMethod("onObject", Object.class)));
+        assertNull(PayloadBinding.of(Handlers.class.getMethod("onNothing")));
+    }
+
+    @Test
+    void decodablePayloadsAreBound() throws Exception {
+        assertNotNull(PayloadBinding.of(Handlers.class.getMethod("onOrder", Order.class)));
+        assertNotNull(PayloadBinding.of(Handlers.class.getMethod("onOrders", List.class)));
+        assertNotNull(PayloadBinding.of(Handlers.class.getMethod("onMap", Map.class)));
+    }
+
+    @Test
+    void undecodablePayloadsAreRejected() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> PayloadBinding.of(Handlers.class.getMethod("onShape", Shape.class)));
+        assertThrows(IllegalArgumentException.class, () -> PayloadBinding.of(Handlers.class.getMethod("onShapes", List.class)));
+        assertThrows(IllegalArgumentException.class, () -> PayloadBinding.of(Handlers.class.getMethod("onPoint", Point.class)));
+    }
+
+    @Test
+    void localPayloadIsConvertedToTheBoundType() throws Exception {
+        PayloadBinding binding = PayloadBinding.of(Handlers.class.getMethod("onOrder", Order.class));
+
+        assertEquals(new Order("o-1", 3), binding.bind(new Event<>("OrderCreated", Map.of("id", "o-1", "quantity", 3))));
+    }
+
+    @Test
+    void overloadedPayloadMethodsAreAmbiguous() {
+        EventHandlers eventHandlers = new EventHandlers();
+        eventHandlers.setHandlerFactory(new ThreadLocalHandlerFactory());
+        EventDispatcher eventDispatcher = new EventDispatcher();
+        eventDispatcher.setEventHandlers(eventHandlers);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> eventDispatcher.registerLocalHandler(new Overloaded(), "onPayload", "PayloadEvent"));
+    }
+
+    public record Order(String id, int quantity) {
+    }
+
+    public interface Shape {
+    }
+
+    /**
+     * no default constructor, and more than one parameter to its only constructor.
+     */
+    public static class Point {
+        public Point(int x, int y) {
+        }
+    }
+
+    public static class Handlers {
+        public void onEvent(Event<?> event) {
+        }
+
+        public void onObject(Object event) {
+        }
+
+        public void onNothing() {
+        }
+
+        public void onOrder(Order order) {
+        }
+
+        public void onOrders(List<Order> orders) {
+        }
+
+        public void onMap(Map<String, Object> payload) {
+        }
+
+        public void onShape(Shape shape) {
+        }
+
+        public void onShapes(List<Shape> shapes) {
+        }
+
+        public void onPoint(Point point) {
+        }
+    }
+
+    public static class Overloaded {
+        public void onPayload(Order order) {
+        }
+
+        public void onPayload(String text) {
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.cwsoft.eventrouter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityLanesTest {
+
+    @Test
+    void singlePriorityCanUseTheWholeTotalCapacity() {
+        PriorityLanes<Integer> lanes = PriorityLanes.withTotalCapacity(10);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(lanes.offer(i, Priority.NORMAL));
+        }
+
+        assertFalse(lanes.offer(10, Priority.NORMAL));
+        assertFalse(lanes.offer(10, Priority.HIGH), "the capacity is shared by all the lanes");
+        assertEquals(10, lanes.size(Priority.NORMAL));
+    }
+
+    @Test
+    void takingAnItemMakesRoomInEveryLane() throws Exception {
+        PriorityLanes<Integer> lanes = PriorityLanes.withTotalCapacity(2);
+        lanes.put(1, Priority.LOW);
+        lanes.put(2, Priority.LOW);
+
+        assertEquals(1, (int) lanes.poll(1, TimeUnit.SECONDS));
+        assertTrue(lanes.offer(3, Priority.HIGH));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, lanes.drainTo(drained));
+        assertEquals(List.of(3, 2), drained);
+        assertTrue(lanes.offer(4, Priority.LOW) && lanes.offer(5, Priority.LOW));
+    }
+
+    @Test
+    void putAllWaitsForRoomAcrossTheLanes() throws Exception {
+        PriorityLanes<Integer> lanes = PriorityLanes.withTotalCapacity(4);
+        List<Integer> items = List.of(0, 1, 2, 3, 4, 5, 6, 7);
+
+        Thread producer = new Thread(() -> {
+            try {
+                lanes.putAll(items, Priority.NORMAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        List<Integer> taken = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            taken.add(lanes.take());
+        }
+        producer.join(5_000);
+
+        assertEquals(items, taken);
+        assertTrue(lanes.isEmpty());
+    }
+
+    @Test
+    void lanesBoundedOnTheirOwnFillSeparately() {
+        PriorityLanes<Integer> lanes = new PriorityLanes<>(2);
+
+        assertTrue(lanes.offer(1, Priority.NORMAL) && lanes.offer(2, Priority.NORMAL));
+        assertFalse(lanes.offer(3, Priority.NORMAL));
+        assertTrue(lanes.offer(4, Priority.HIGH));
+    }
+}
@@ -0,0 +1,119 @@
+package com.cwsoft.eventrouter;
+
+import com.cwsoft.eventrouter.global.GlobalHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemoteSubscribersTest {
+
+    @Test
+    void serviceIsInternedOnceAcrossEvents() {
+        RemoteSubscribers.Editor editor = RemoteSubscribers.EMPTY.edit();
+        assertTrue(editor.add("OrderCreated", service("billing")));
+        assertTrue(editor.add("OrderCancelled", service("billing")));
+        assertTrue(editor.add("OrderCreated", service("shipping")));
+        RemoteSubscribers subscribers = editor.build();
+
+        assertEquals(2, subscribers.serviceCount());
+        assertEquals(2, subscribers.eventCount());
+        assertEquals(2, RemoteSubscribers.count(subscribers.subscribersOf("OrderCreated")));
+        assertEquals(1, RemoteSubscribers.count(subscribers.subscribersOf("OrderCancelled")));
+        assertEquals(service("billing"), subscribers.service(0));
+        assertEquals(service("shipping"), subscribers.service(1));
+        assertTrue(RemoteSubscribers.isSet(subscribers.subscribersOf("OrderCancelled"), 0));
+    }
+
+    @Test
+    void addingAnExistingSubscriptionChangesNothing() {
+        RemoteSubscribers subscribers = with("OrderCreated", "billing");
+
+        RemoteSubscribers.Editor editor = subscribers.edit();
+        assertFalse(editor.add("OrderCreated", service("billing")));
+        assertFalse(editor.remove("OrderCancelled", service("billing")));
+        assertFalse(editor.remove("OrderCreated", service("shipping")));
+        assertSame(subscribers, editor.build());
+    }
+
+    @Test
+    void removingTheLastSubscriptionFreesTheIndexForReuse() {
+        RemoteSubscribers.Editor editor = RemoteSubscribers.EMPTY.edit();
+        editor.add("OrderCreated", service("billing"));
+        editor.add("OrderCreated", service("shipping"));
+        RemoteSubscribers subscribers = editor.build();
+
+        editor = subscribers.edit();
+        assertTrue(editor.remove("OrderCreated", service("billing")));
+        RemoteSubscribers removed = editor.build();
+        assertEquals(1, removed.serviceCount());
+        assertNull(removed.service(0));
+        assertFalse(removed.contains("OrderCreated", service("billing")));
+
+        editor = removed.edit();
+        editor.add("OrderCancelled", service("invoicing"));
+        RemoteSubscribers reused = editor.build();
+        assertEquals(service("invoicing"), reused.service(0));
+        assertTrue(reused.contains("OrderCancelled", service("invoicing")));
+        assertFalse(reused.contains("OrderCreated", service("invoicing")), "the freed index was cleared from other events");
+    }
+
+    @Test
+    void eventWithoutSubscribersIsRemoved() {
+        RemoteSubscribers.Editor editor = with("OrderCreated", "billing").edit();
+        editor.remove("OrderCreated", service("billing"));
+        RemoteSubscribers subscribers = editor.build();
+
+        assertNull(subscribers.subscribersOf("OrderCreated"));
+        assertEquals(0, subscribers.eventCount());
+        assertEquals(0, subscribers.serviceCount());
+    }
+
+    @Test
+    void editingLeavesTheOriginalUnchanged() {
+        RemoteSubscribers original = with("OrderCreated", "billing");
+        long[] originalBits = original.subscribersOf("OrderCreated").clone();
+
+        RemoteSubscribers.Editor editor = original.edit();
+        editor.add("OrderCreated", service("shipping"));
+        editor.remove("OrderCreated", service("billing"));
+        editor.build();
+
+        assertTrue(original.contains("OrderCreated", service("billing")));
+        assertFalse(original.contains("OrderCreated", service("shipping")));
+        assertEquals(1, original.serviceCount());
+        assertEquals(originalBits[0], original.subscribersOf("OrderCreated")[0]);
+    }
+
+    @Test
+    void subscribersSpanMoreThanOneWord() {
+        RemoteSubscribers.Editor editor = RemoteSubscribers.EMPTY.edit();
+        for (int i = 0; i < 70; i++) {
+            editor.add("OrderCreated", service("service-" + i));
+        }
+        editor.add("OrderCancelled", service("service-69"));
+        RemoteSubscribers subscribers = editor.build();
+
+        assertEquals(2, subscribers.subscribersOf("OrderCreated").length);
+        assertEquals(70, RemoteSubscribers.count(subscribers.subscribersOf("OrderCreated")));
+        assertTrue(RemoteSubscribers.isSet(subscribers.subscribersOf("OrderCancelled"), 69));
+        assertFalse(RemoteSubscribers.isSet(subscribers.subscribersOf("OrderCancelled"), 5));
+        assertTrue(subscribers.contains("OrderCreated", service("service-64")));
+    }
+
+    private static RemoteSubscribers with(String eventName, String serviceId) {
+        RemoteSubscribers.Editor editor = RemoteSubscribers.EMPTY.edit();
+        editor.add(eventName, service(serviceId));
+        return editor.build();
+    }
+
+    /*
+     * global handlers are equal by the services they go from and to.
+     */
+    private static RemoteHandler service(String serviceId) {
+        return GlobalHandler.builder().fromServiceId("router-test").toServiceId(serviceId).remoteServicesSite("site.test").build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.cwsoft.eventrouter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriberEndPointTest {
+    private static final String EVENT = "OptionsEvent";
+
+    private EventHandlers eventHandlers;
+
+    @BeforeEach
+    void setUp() {
+        eventHandlers = new EventHandlers();
+        eventHandlers.setHandlerFactory(new ThreadLocalHandlerFactory());
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventHandlers.unregisterAll(Duration.ZERO);
+    }
+
+    @Test
+    void orderingKeyWithoutConcurrencyIsRejected() throws Exception {
+        assertRejected(endPoint().orderingKey("orderId"));
+    }
+
+    @Test
+    void inlineWithConcurrencyIsRejected() throws Exception {
+        assertRejected(endPoint().mode(ExecutionMode.INLINE).concurrency(4).orderingKey("orderId"));
+    }
+
+    @Test
+    void concurrencyBelowOneIsRejected() throws Exception {
+        assertRejected(endPoint().concurrency(0));
+    }
+
+    @Test
+    void keyedConcurrencyIsRegistered() throws Exception {
+        eventHandlers.registerSubscriber(endPoint().concurrency(4).orderingKey("orderId").build());
+
+        assertEquals(1, eventHandlers.get(EVENT).size());
+        assertTrue(eventHandlers.get(EVENT).iterator().next() instanceof KeyedLocalHandler);
+    }
+
+    private void assertRejected(SubscriberEndPoint.SubscriberEndPointBuilder endPoint) {
+        assertThrows(IllegalArgumentException.class, () -> eventHandlers.registerSubscriber(endPoint.build()));
+        assertTrue(eventHandlers.get(EVENT).isEmpty());
+    }
+
+    private static SubscriberEndPoint.SubscriberEndPointBuilder endPoint() throws NoSuchMethodException {
+        return SubscriberEndPoint.builder()
+                .forEvent(EVENT)
+                .bean(new Receiver())
+                .method(Receiver.class.getMethod("onEvent", Event.class))
+                .access(Access.LOCAL);
+    }
+
+    public static class Receiver {
+        public void onEvent(Event<?> event) {
+        }
+    }
+}
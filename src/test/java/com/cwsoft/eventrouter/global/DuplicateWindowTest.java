@@ -0,0 +1,115 @@
+package com.cwsoft.eventrouter.global;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateWindowTest {
+
+    @Test
+    void idIsSeenOnlyOnce() {
+        DuplicateWindow window = DuplicateWindow.create();
+
+        assertFalse(window.seen(42));
+        assertTrue(window.seen(42));
+        assertTrue(window.seen(42));
+        assertEquals(1, window.size());
+    }
+
+    @Test
+    void eventWithoutAnIdIsNeverADuplicate() {
+        DuplicateWindow window = DuplicateWindow.create();
+
+        assertFalse(window.seen(0));
+        assertFalse(window.seen(0));
+        assertEquals(0, window.size());
+    }
+
+    @Test
+    void oldestBucketIsEvictedOnceTheNewestIsFull() {
+        DuplicateWindow window = countOnly(3, 4);
+        for (long id = 1; id <= 12; id++) {
+            assertFalse(window.seen(id));
+        }
+        assertEquals(12, window.size());
+        for (long id = 1; id <= 12; id++) {
+            assertTrue(window.seen(id), "id " + id + " is in one of the 3 full buckets");
+        }
+
+        assertFalse(window.seen(13)); // the newest bucket is full, so the oldest, holding 1 to 4, is cleared for it
+        assertEquals(9, window.size());
+        for (long id = 5; id <= 13; id++) {
+            assertTrue(window.seen(id), "id " + id + " is still in the window");
+        }
+        assertFalse(window.seen(4));
+        assertFalse(window.seen(1));
+    }
+
+    @Test
+    void idIsRememberedForTheIdsOfAllButOneBucketAfterIt() {
+        DuplicateWindow window = countOnly(4, 8);
+        window.seen(1_000);
+
+        // 1000 shares its bucket with 7 others, then 3 more buckets fill before its bucket is reused
+        for (long id = 1; id <= 7 + 3 * 8; id++) {
+            window.seen(id);
+        }
+        assertTrue(window.seen(1_000));
+
+        window.seen(100_000);
+        assertFalse(window.seen(1_000), "its bucket was reused for the next id");
+    }
+
+    @Test
+    void everyIdOfAFullBucketIsFound() {
+        DuplicateWindow window = countOnly(2, 64);
+        // the table of the bucket is half full, so some of the ids probe past others
+        for (long i = 1; i <= 64; i++) {
+            assertFalse(window.seen(i << 40));
+        }
+        for (long i = 1; i <= 64; i++) {
+            assertTrue(window.seen(i << 40));
+        }
+    }
+
+    @Test
+    void idsOfBucketsStillInTheWindowAreKeptAsTimePasses() throws InterruptedException {
+        DuplicateWindow window = DuplicateWindow.builder().window(Duration.ofSeconds(2)).buckets(2).build();
+        window.seen(1);
+
+        Thread.sleep(1_300); // past the 1s of the newest bucket, which rotates, but within the 2s window
+        assertFalse(window.seen(2));
+        assertTrue(window.seen(1));
+    }
+
+    @Test
+    void windowIsClearedOnceItHasPassed() throws InterruptedException {
+        DuplicateWindow window = DuplicateWindow.builder().window(Duration.ofMillis(200)).buckets(2).build();
+        window.seen(1);
+        window.seen(2);
+
+        Thread.sleep(500); // more buckets than there are have passed
+        assertFalse(window.seen(1));
+        assertEquals(1, window.size());
+        assertFalse(window.seen(2));
+    }
+
+    @Test
+    void invalidSizesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> DuplicateWindow.builder().buckets(1).build());
+        assertThrows(IllegalArgumentException.class, () -> DuplicateWindow.builder().idsPerBucket(0).build());
+        assertThrows(IllegalArgumentException.class, () -> DuplicateWindow.builder().window(Duration.ZERO).build());
+    }
+
+    /*
+     * a window too long to rotate by time during a test, so buckets are only rotated as they fill.
+     */
+    private static DuplicateWindow countOnly(int buckets, int idsPerBucket) {
+        return DuplicateWindow.builder().window(Duration.ofHours(1)).buckets(buckets).idsPerBucket(idsPerBucket).build();
+    }
+}
@@ -0,0 +1,183 @@
+package com.cwsoft.eventrouter.global.register.persistence;
+
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByRemoteServices;
+import com.cwsoft.eventrouter.global.register.data.EventsHandledByService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileRemoteServiceHandledEventsStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void changesAreReplayedFromTheLog() throws IOException {
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            store.saveChanged(null, service("billing", "OrderCreated"));
+            store.saveChanged(null, service("shipping", "OrderShipped"));
+            store.flush();
+            store.saveChanged(null, service("billing", "OrderCreated", "OrderCancelled"));
+            store.flush();
+        }
+
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            assertEquals(List.of("OrderCreated", "OrderCancelled"), handledEvents(store, "billing"));
+            assertEquals(List.of("OrderShipped"), handledEvents(store, "shipping"));
+        }
+        assertFalse(Files.exists(snapshotFile()), "3 records are below the compaction limit");
+    }
+
+    @Test
+    void tornRecordAtTheEndOfTheLogIsDropped() throws IOException {
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            store.saveChanged(null, service("billing", "OrderCreated"));
+            store.flush();
+        }
+        byte[] intact = Files.readAllBytes(logFile());
+
+        // a crash part way through writing the next record: its header and half of its json
+        byte[] torn = new byte[intact.length / 2];
+        System.arraycopy(intact, 0, torn, 0, torn.length);
+        Files.write(logFile(), torn, StandardOpenOption.APPEND);
+
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            assertEquals(List.of("OrderCreated"), handledEvents(store, "billing"));
+            assertArrayEquals(intact, Files.readAllBytes(logFile()), "the torn record is truncated");
+
+            store.saveChanged(null, service("shipping", "OrderShipped"));
+            store.flush();
+        }
+
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            assertEquals(List.of("OrderShipped"), handledEvents(store, "shipping"), "records appended after the truncation are read");
+        }
+    }
+
+    @Test
+    void recordFailingItsCrcAndThoseAfterItAreDropped() throws IOException {
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            store.saveChanged(null, service("billing", "OrderCreated"));
+            store.flush();
+            store.saveChanged(null, service("shipping", "OrderShipped"));
+            store.flush();
+            store.saveChanged(null, service("invoicing", "OrderInvoiced"));
+            store.flush();
+        }
+
+        byte[] log = Files.readAllBytes(logFile());
+        int firstRecordLength = 8 + ByteBuffer.wrap(log).getInt(0);
+        log[firstRecordLength + 8 + 2] ^= 0x20; // a byte of the json of the second record
+        Files.write(logFile(), log);
+
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            assertEquals(List.of("OrderCreated"), handledEvents(store, "billing"));
+            assertNull(store.fetch().find("shipping"));
+            assertNull(store.fetch().find("invoicing"));
+            assertEquals(firstRecordLength, Files.size(logFile()));
+        }
+    }
+
+    @Test
+    void logIsCompactedIntoASnapshotOncePastItsLimit() throws IOException {
+        try (FileRemoteServiceHandledEventsStore store = open(2)) {
+            store.saveChanged(null, service("billing", "OrderCreated"));
+            store.saveChanged(null, service("shipping", "OrderShipped"));
+            store.flush();
+            assertFalse(Files.exists(snapshotFile()));
+
+            store.saveChanged(null, service("billing", "OrderCreated", "OrderCancelled"));
+            store.flush();
+            assertTrue(Files.exists(snapshotFile()));
+            assertEquals(0, Files.size(logFile()));
+
+            store.saveChanged(null, service("shipping", "OrderShipped", "OrderReturned"));
+            store.flush();
+            assertTrue(Files.size(logFile()) > 0, "changes after the compaction go to the log");
+        }
+
+        try (FileRemoteServiceHandledEventsStore store = open(2)) {
+            assertEquals(List.of("OrderCreated", "OrderCancelled"), handledEvents(store, "billing"));
+            assertEquals(List.of("OrderShipped", "OrderReturned"), handledEvents(store, "shipping"), "the log is replayed over the snapshot");
+        }
+    }
+
+    @Test
+    void savingAllServicesCompactsAtTheNextFlush() throws IOException {
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            EventsHandledByRemoteServices all = new EventsHandledByRemoteServices();
+            all.put(service("billing", "OrderCreated"));
+            all.put(service("shipping", "OrderShipped"));
+            store.save(all);
+            store.flush();
+
+            assertTrue(Files.exists(snapshotFile()));
+            assertEquals(0, Files.size(logFile()));
+            assertFalse(Files.exists(directory.resolve(FileRemoteServiceHandledEventsStore.SNAPSHOT_FILE + ".tmp")));
+        }
+
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            assertEquals(List.of("OrderCreated"), handledEvents(store, "billing"));
+            assertEquals(List.of("OrderShipped"), handledEvents(store, "shipping"));
+        }
+    }
+
+    @Test
+    void savingAllServicesRemovesThoseMissingFromThem() throws IOException {
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            store.saveChanged(null, service("billing", "OrderCreated"));
+            store.saveChanged(null, service("shipping", "OrderShipped"));
+            store.flush();
+
+            EventsHandledByRemoteServices all = new EventsHandledByRemoteServices();
+            all.put(service("billing", "OrderCreated", "OrderCancelled"));
+            store.save(all);
+            assertNull(store.fetch().find("shipping"), "fetch sees the saved services before they are flushed");
+            store.flush();
+            store.saveChanged(null, service("invoicing", "OrderInvoiced"));
+            store.flush();
+        }
+
+        try (FileRemoteServiceHandledEventsStore store = open(100)) {
+            assertEquals(List.of("OrderCreated", "OrderCancelled"), handledEvents(store, "billing"));
+            assertNull(store.fetch().find("shipping"));
+            assertEquals(List.of("OrderInvoiced"), handledEvents(store, "invoicing"), "changes after the save are kept");
+        }
+    }
+
+    private FileRemoteServiceHandledEventsStore open(int compactAfterRecords) {
+        return FileRemoteServiceHandledEventsStore.builder()
+                .directory(directory)
+                .flushInterval(Duration.ofHours(1)) // flushed by the tests
+                .compactAfterRecords(compactAfterRecords)
+                .build();
+    }
+
+    private Path logFile() {
+        return directory.resolve(FileRemoteServiceHandledEventsStore.LOG_FILE);
+    }
+
+    private Path snapshotFile() {
+        return directory.resolve(FileRemoteServiceHandledEventsStore.SNAPSHOT_FILE);
+    }
+
+    private static List<String> handledEvents(FileRemoteServiceHandledEventsStore store, String serviceId) {
+        return List.copyOf(store.fetch().find(serviceId).getHandledEvents());
+    }
+
+    private static EventsHandledByService service(String serviceId, String... handledEvents) {
+        return new EventsHandledByService(serviceId, "site.test", List.of(handledEvents));
+    }
+}
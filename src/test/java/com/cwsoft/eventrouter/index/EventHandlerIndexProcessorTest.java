@@ -0,0 +1,78 @@
+package com.cwsoft.eventrouter.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventHandlerIndexProcessorTest {
+
+    @Test
+    void handlersOfRecordsAndEnumsAreIndexed(@TempDir Path dir) throws Exception {
+        Path sources = Files.createDirectories(dir.resolve("src/beans"));
+        Path classes = Files.createDirectories(dir.resolve("classes"));
+        Files.writeString(sources.resolve("PriceBean.java"), """
+                package beans;
+
+                public record PriceBean(String instrument) {
+                    @com.cwsoft.eventrouter.EventHandler(name = "PriceChanged")
+                    public void onPriceChanged(Object event) {
+                    }
+                }
+                """);
+        Files.writeString(sources.resolve("ModeBean.java"), """
+                package beans;
+
+                public enum ModeBean {
+                    INSTANCE;
+
+                    @com.cwsoft.eventrouter.EventHandler(name = "ModeChanged")
+                    void onModeChanged() {
+                    }
+                }
+                """);
+
+        compile(classes, sources.resolve("PriceBean.java"), sources.resolve("ModeBean.java"));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            HandlerIndexes indexes = HandlerIndexes.load(classLoader);
+            Class<?> priceBean = classLoader.loadClass("beans.PriceBean");
+            Class<?> modeBean = classLoader.loadClass("beans.ModeBean");
+
+            assertTrue(indexes.covers(priceBean));
+            assertEquals(List.of("onPriceChanged"), methodNames(indexes.methodsOf(priceBean)));
+            assertEquals("PriceChanged", indexes.methodsOf(priceBean).get(0).specs().get(0).getNames().get(0));
+            assertTrue(indexes.covers(modeBean));
+            assertEquals(List.of("onModeChanged"), methodNames(indexes.methodsOf(modeBean)));
+        }
+    }
+
+    private static void compile(Path classes, Path... sources) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    List.of("-d", classes.toString(), "-classpath", System.getProperty("java.class.path")),
+                    null, fileManager.getJavaFileObjects(sources));
+            task.setProcessors(List.of(new EventHandlerIndexProcessor()));
+            assertTrue(task.call(), () -> "Compilation failed: " + diagnostics.getDiagnostics());
+        }
+    }
+
+    private static List<String> methodNames(List<HandlerMethod> methods) {
+        return methods.stream().map(method -> method.method().getName()).toList();
+    }
+}
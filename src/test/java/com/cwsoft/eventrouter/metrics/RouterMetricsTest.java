@@ -0,0 +1,36 @@
+package com.cwsoft.eventrouter.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RouterMetricsTest {
+    private final RouterMetrics routerMetrics = new RouterMetrics(false);
+
+    @Test
+    void handlersSharingANameEachGetMetricsOfTheirOwn() {
+        HandlerMetrics first = routerMetrics.registerHandler("Order:Handler.onOrder", () -> 0);
+        HandlerMetrics second = routerMetrics.registerHandler("Order:Handler.onOrder", () -> 0);
+        first.invoked(10, false);
+        second.invoked(10, true);
+
+        assertEquals("Order:Handler.onOrder", first.getName());
+        assertEquals("Order:Handler.onOrder (2)", second.getName());
+        assertEquals(List.of(0L, 1L), routerMetrics.snapshot().handlers().stream()
+                .sorted(Comparator.comparing(MetricsSnapshot.Handler::name))
+                .map(MetricsSnapshot.Handler::failures)
+                .toList());
+
+        routerMetrics.unregisterHandler(first);
+        assertEquals(List.of("Order:Handler.onOrder (2)"), handlerNames());
+        routerMetrics.unregisterHandler(second);
+        assertEquals(List.of(), handlerNames());
+    }
+
+    private List<String> handlerNames() {
+        return routerMetrics.snapshot().handlers().stream().map(MetricsSnapshot.Handler::name).toList();
+    }
+}
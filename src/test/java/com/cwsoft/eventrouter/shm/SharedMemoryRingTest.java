@@ -0,0 +1,163 @@
+package com.cwsoft.eventrouter.shm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class SharedMemoryRingTest {
+    private static final int CAPACITY = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void messagesAreTakenInTheOrderOffered() throws Exception {
+        try (SharedMemoryRing consumer = SharedMemoryRing.createForConsumer(ringFile(), CAPACITY);
+             SharedMemoryRing producer = SharedMemoryRing.openForProducer(ringFile())) {
+            assertNull(consumer.poll());
+
+            assertTrue(producer.offer(message(0, 1, 5)));
+            assertTrue(producer.offer(message(0, 2, 17)));
+            assertEquals(16 + 24, consumer.getDepth(), "records are aligned to 8 bytes");
+
+            assertArrayEquals(message(0, 1, 5), consumer.poll());
+            assertArrayEquals(message(0, 2, 17), consumer.poll());
+            assertNull(consumer.poll());
+            assertEquals(0, consumer.getDepth());
+        }
+    }
+
+    @Test
+    void fullRingRejectsMessagesUntilTheConsumerCatchesUp() throws Exception {
+        try (SharedMemoryRing consumer = SharedMemoryRing.createForConsumer(ringFile(), CAPACITY);
+             SharedMemoryRing producer = SharedMemoryRing.openForProducer(ringFile())) {
+            int offered = 0;
+            while (producer.offer(message(0, offered, 120))) {
+                offered++;
+            }
+            assertEquals(CAPACITY / 128, offered);
+
+            assertArrayEquals(message(0, 0, 120), consumer.poll());
+            assertTrue(producer.offer(message(0, offered, 120)));
+            assertFalse(producer.offer(message(0, offered + 1, 120)));
+        }
+    }
+
+    @Test
+    void recordsWrapAroundTheEndOfTheBuffer() throws Exception {
+        try (SharedMemoryRing consumer = SharedMemoryRing.createForConsumer(ringFile(), CAPACITY);
+             SharedMemoryRing producer = SharedMemoryRing.openForProducer(ringFile())) {
+            // 100 byte records don't divide the buffer, so each lap ends with a padding record
+            for (int sequence = 0; sequence < 100; sequence++) {
+                assertTrue(producer.offer(message(0, sequence, 100)));
+                assertTrue(producer.offer(message(0, sequence, 300)));
+                assertArrayEquals(message(0, sequence, 100), consumer.poll());
+                assertArrayEquals(message(0, sequence, 300), consumer.poll());
+            }
+            assertNull(consumer.poll());
+            assertEquals(0, consumer.getDepth());
+        }
+    }
+
+    @Test
+    void contendedProducersWrapAroundWithoutLosingOrCorruptingMessages() throws Exception {
+        int producers = 4;
+        int messagesPerProducer = 5_000;
+
+        try (SharedMemoryRing consumer = SharedMemoryRing.createForConsumer(ringFile(), 4 * CAPACITY)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producerId = p;
+                Thread thread = new Thread(() -> {
+                    try (SharedMemoryRing producer = SharedMemoryRing.openForProducer(ringFile())) {
+                        for (int sequence = 0; sequence < messagesPerProducer; sequence++) {
+                            byte[] message = message(producerId, sequence, 8 + (sequence * 7) % 200);
+                            while (!producer.offer(message)) {
+                                Thread.yield(); // the ring is full
+                            }
+                        }
+                    } catch (Exception ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+
+            int[] nextSequence = new int[producers];
+            long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            for (int received = 0; received < producers * messagesPerProducer; ) {
+                byte[] message = consumer.poll();
+                if (message == null) {
+                    if (System.nanoTime() > deadlineNanos) fail("received only " + received + " messages");
+                    Thread.yield();
+                    continue;
+                }
+
+                ByteBuffer content = ByteBuffer.wrap(message);
+                int producerId = content.getInt();
+                int sequence = content.getInt();
+                assertEquals(nextSequence[producerId]++, sequence, "messages of producer " + producerId + " out of order");
+                assertArrayEquals(message(producerId, sequence, 8 + (sequence * 7) % 200), message);
+                received++;
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(consumer.poll());
+            assertEquals(0, consumer.getDepth());
+        }
+    }
+
+    @Test
+    void reopenedConsumerResumesWhereItLeftOff() throws Exception {
+        try (SharedMemoryRing consumer = SharedMemoryRing.createForConsumer(ringFile(), CAPACITY);
+             SharedMemoryRing producer = SharedMemoryRing.openForProducer(ringFile())) {
+            producer.offer(message(0, 1, 10));
+            producer.offer(message(0, 2, 10));
+            assertArrayEquals(message(0, 1, 10), consumer.poll());
+        }
+
+        try (SharedMemoryRing consumer = SharedMemoryRing.createForConsumer(ringFile(), CAPACITY)) {
+            assertArrayEquals(message(0, 2, 10), consumer.poll());
+            assertNull(consumer.poll());
+        }
+    }
+
+    @Test
+    void ringHasASingleConsumer() throws Exception {
+        try (SharedMemoryRing consumer = SharedMemoryRing.createForConsumer(ringFile(), CAPACITY)) {
+            assertThrows(IllegalStateException.class, () -> SharedMemoryRing.createForConsumer(ringFile(), CAPACITY));
+        }
+    }
+
+    private Path ringFile() {
+        return directory.resolve("ring");
+    }
+
+    /*
+     * the producer and sequence followed by a pattern derived from them, so that a torn or misplaced message shows.
+     */
+    private static byte[] message(int producerId, int sequence, int length) {
+        ByteBuffer message = ByteBuffer.allocate(length);
+        if (length >= 8) message.putInt(producerId).putInt(sequence);
+        while (message.hasRemaining()) {
+            message.put((byte) (producerId * 31 + sequence + message.position()));
+        }
+        return message.array();
+    }
+}